@@ -0,0 +1,112 @@
+package com.flippingutilities;
+
+import com.flippingutilities.db.TradePersister;
+import com.flippingutilities.model.AccountData;
+import com.flippingutilities.model.FlippingItem;
+import com.flippingutilities.model.OfferEvent;
+import com.google.gson.Gson;
+import net.runelite.api.GrandExchangeOfferState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading all accounts at startup against the number of accounts, once loading them one after the other and
+ * once loading them in parallel like DataHandler does. The accounts are synthetic and written to a temp directory. Run
+ * it with the jmh task or its main method.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccountLoadingBenchmark
+{
+	private static final int ITEMS_PER_ACCOUNT = 500;
+	private static final int OFFERS_PER_ITEM = 100;
+
+	@Param({"1", "2", "5", "10"})
+	public int accountCount;
+
+	//DataHandler uses up to four
+	@Param({"1", "4"})
+	public int threads;
+
+	private File directory;
+
+	@Setup
+	public void setUp() throws IOException
+	{
+		directory = Files.createTempDirectory("flipping-benchmark").toFile();
+		for (int i = 0; i < accountCount; i++)
+		{
+			writeAccount(directory, "account" + i);
+		}
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		Arrays.stream(directory.listFiles()).forEach(File::delete);
+		directory.delete();
+	}
+
+	@Benchmark
+	public Map<String, AccountData> load() throws IOException
+	{
+		return TradePersister.loadAllAccounts(directory, threads, AccountData::prepareTrades);
+	}
+
+	public static void main(String[] args) throws RunnerException
+	{
+		new Runner(new OptionsBuilder().include(AccountLoadingBenchmark.class.getSimpleName()).build()).run();
+	}
+
+	private static void writeAccount(File directory, String displayName) throws IOException
+	{
+		Instant baseTime = Instant.now();
+		AccountData accountData = new AccountData();
+		for (int itemId = 0; itemId < ITEMS_PER_ACCOUNT; itemId++)
+		{
+			FlippingItem item = new FlippingItem(itemId, "item " + itemId, 100, displayName);
+			for (int i = 0; i < OFFERS_PER_ITEM; i++)
+			{
+				boolean buy = i % 2 == 0;
+				OfferEvent offer = Utils.offer(buy, 10, 100 + i, baseTime.minus(OFFERS_PER_ITEM - i, ChronoUnit.MINUTES),
+					i % 8, buy ? GrandExchangeOfferState.BOUGHT : GrandExchangeOfferState.SOLD, 10);
+				offer.setItemId(itemId);
+				item.getHistory().getCompressedOfferEvents().add(offer);
+			}
+			accountData.getTrades().add(item);
+		}
+
+		try (Writer writer = Files.newBufferedWriter(new File(directory, displayName + ".json").toPath(), Charset.defaultCharset()))
+		{
+			new Gson().toJson(accountData, writer);
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package com.flippingutilities;
+
+import com.flippingutilities.model.HistoryManager;
+import com.flippingutilities.model.OfferEvent;
+import net.runelite.api.GrandExchangeOfferState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures getting the offers of an interval against the number of offers in an item's history, once scanning and
+ * copying the whole history like getIntervalsHistory used to and once with getIntervalsHistory. The interval is the
+ * last tenth of the history, about what the week interval covers for a long time flipper. Run it with the jmh task or
+ * its main method.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IntervalHistoryBenchmark
+{
+	@Param({"10000", "100000", "1000000"})
+	public int offerCount;
+
+	private List<OfferEvent> offers;
+	private HistoryManager historyManager;
+	private Instant startOfInterval;
+
+	@Setup
+	public void setUp()
+	{
+		Instant baseTime = Instant.now();
+		offers = new ArrayList<>();
+		for (int i = 0; i < offerCount; i++)
+		{
+			boolean buy = i % 2 == 0;
+			offers.add(Utils.offer(buy, 10, 100, baseTime.minus(offerCount - i, ChronoUnit.MINUTES), i % 8,
+				buy ? GrandExchangeOfferState.BOUGHT : GrandExchangeOfferState.SOLD, 10));
+		}
+		historyManager = new HistoryManager();
+		historyManager.setCompressedOfferEvents(offers);
+		startOfInterval = baseTime.minus(offerCount / 10, ChronoUnit.MINUTES);
+	}
+
+	//how getIntervalsHistory used to get the offers of an interval
+	@Benchmark
+	public List<OfferEvent> scan()
+	{
+		List<OfferEvent> result = new ArrayList<>();
+		for (OfferEvent offer : offers)
+		{
+			if (offer.getTime().isAfter(startOfInterval) && offer.isValidOfferEvent())
+			{
+				result.add(offer);
+			}
+		}
+		return result;
+	}
+
+	@Benchmark
+	public List<OfferEvent> view()
+	{
+		return historyManager.getIntervalsHistory(startOfInterval);
+	}
+
+	public static void main(String[] args) throws RunnerException
+	{
+		new Runner(new OptionsBuilder().include(IntervalHistoryBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,202 @@
+package com.flippingutilities;
+
+import com.flippingutilities.model.FlippingItem;
+import com.flippingutilities.model.OfferEvent;
+import com.flippingutilities.ui.statistics.TradeListSorter;
+import net.runelite.api.GrandExchangeOfferState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Measures sorting the items of the statistics tab by profit, profit each and ROI, once comparing the items' offers
+ * in every comparison like the stats panel used to and once with TradeListSorter. TradeListSorter is measured both on
+ * items whose interval stats haven't been cached yet and on items whose stats have, and both sorting all the items and
+ * just the first page. Run it with the jmh task or its main method.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StatsSortBenchmark
+{
+	private static final int ITEMS = 2000;
+	private static final int OFFERS_PER_ITEM = 500;
+	private static final int PAGE_SIZE = 20;
+
+	@Param({"Most Total Profit", "Most Profit Each", "Highest ROI"})
+	public String sort;
+
+	private Instant startOfInterval;
+	//their interval stats are cached by the first sort
+	private List<FlippingItem> items;
+
+	@Setup
+	public void setUp()
+	{
+		startOfInterval = Instant.now().minus(OFFERS_PER_ITEM / 2, ChronoUnit.MINUTES);
+		items = createItems();
+		if (!sortLikeBefore(items, sort, startOfInterval).equals(TradeListSorter.sort(items, sort, startOfInterval, ITEMS)))
+		{
+			throw new IllegalStateException("orders differ for " + sort);
+		}
+	}
+
+	/**
+	 * Copies of the items that haven't had their interval stats worked out yet, made again for every sort.
+	 */
+	@State(Scope.Thread)
+	public static class UncachedItems
+	{
+		private List<FlippingItem> items;
+
+		@Setup(Level.Invocation)
+		public void setUp(StatsSortBenchmark benchmark)
+		{
+			items = benchmark.items.stream().map(FlippingItem::clone).collect(Collectors.toList());
+		}
+	}
+
+	@Benchmark
+	public List<FlippingItem> old()
+	{
+		return sortLikeBefore(items, sort, startOfInterval);
+	}
+
+	@Benchmark
+	public List<FlippingItem> uncached(UncachedItems uncachedItems)
+	{
+		return TradeListSorter.sort(uncachedItems.items, sort, startOfInterval, ITEMS);
+	}
+
+	@Benchmark
+	public List<FlippingItem> cached()
+	{
+		return TradeListSorter.sort(items, sort, startOfInterval, ITEMS);
+	}
+
+	@Benchmark
+	public List<FlippingItem> page()
+	{
+		return TradeListSorter.sort(items, sort, startOfInterval, PAGE_SIZE);
+	}
+
+	public static void main(String[] args) throws RunnerException
+	{
+		new Runner(new OptionsBuilder().include(StatsSortBenchmark.class.getSimpleName()).build()).run();
+	}
+
+	private static List<FlippingItem> createItems()
+	{
+		Random random = new Random(0);
+		Instant baseTime = Instant.now();
+		List<FlippingItem> items = new ArrayList<>();
+		for (int itemId = 0; itemId < ITEMS; itemId++)
+		{
+			FlippingItem item = new FlippingItem(itemId, "item " + itemId, 100, "account");
+			List<OfferEvent> offers = new ArrayList<>();
+			for (int i = 0; i < OFFERS_PER_ITEM; i++)
+			{
+				boolean buy = random.nextBoolean();
+				OfferEvent offer = Utils.offer(buy, 1 + random.nextInt(100), 1000 + random.nextInt(200), baseTime.minus(OFFERS_PER_ITEM - i, ChronoUnit.MINUTES),
+					i % 8, buy ? GrandExchangeOfferState.BOUGHT : GrandExchangeOfferState.SOLD, 100);
+				offer.setItemId(itemId);
+				offer.setMadeBy("account");
+				offers.add(offer);
+			}
+			item.getHistory().setCompressedOfferEvents(offers);
+			items.add(item);
+		}
+		return items;
+	}
+
+	//how the stats panel sorted its items before TradeListSorter
+	private static List<FlippingItem> sortLikeBefore(List<FlippingItem> tradeList, String sort, Instant startOfInterval)
+	{
+		List<FlippingItem> result = new ArrayList<>(tradeList);
+		switch (sort)
+		{
+			case "Most Total Profit":
+				result.sort((item1, item2) ->
+				{
+					List<OfferEvent> intervalHistory1 = new ArrayList<>(item1.getIntervalHistory(startOfInterval));
+					List<OfferEvent> intervalHistory2 = new ArrayList<>(item2.getIntervalHistory(startOfInterval));
+					int flipped = compareFlipped(item1, intervalHistory1, item2, intervalHistory2);
+					if (flipped != 2)
+					{
+						return flipped;
+					}
+					return Long.compare(item1.currentProfit(intervalHistory1), item2.currentProfit(intervalHistory2));
+				});
+				break;
+
+			case "Most Profit Each":
+				result.sort((item1, item2) -> Integer.compare(profitEach(item1, startOfInterval), profitEach(item2, startOfInterval)));
+				break;
+
+			case "Highest ROI":
+				result.sort((item1, item2) ->
+				{
+					List<OfferEvent> intervalHistory1 = new ArrayList<>(item1.getIntervalHistory(startOfInterval));
+					List<OfferEvent> intervalHistory2 = new ArrayList<>(item2.getIntervalHistory(startOfInterval));
+					int flipped = compareFlipped(item1, intervalHistory1, item2, intervalHistory2);
+					if (flipped != 2)
+					{
+						return flipped;
+					}
+					return Float.compare((float) item1.currentProfit(intervalHistory1) / item1.getFlippedCashFlow(intervalHistory1, true),
+						(float) item2.currentProfit(intervalHistory2) / item2.getFlippedCashFlow(intervalHistory2, true));
+				});
+				break;
+		}
+		Collections.reverse(result);
+		return result;
+	}
+
+	//the interval histories are copied so the profit functions go through the offers, like they used to
+	private static int profitEach(FlippingItem item, Instant startOfInterval)
+	{
+		List<OfferEvent> intervalHistory = new ArrayList<>(item.getIntervalHistory(startOfInterval));
+		int quantity = item.countItemsFlipped(intervalHistory);
+		if (quantity == 0)
+		{
+			return 0;
+		}
+		return (int) item.currentProfit(intervalHistory) / quantity;
+	}
+
+	//returns 2 if both items were flipped and have to be compared by their stats
+	private static int compareFlipped(FlippingItem item1, List<OfferEvent> intervalHistory1, FlippingItem item2, List<OfferEvent> intervalHistory2)
+	{
+		boolean flipped1 = item1.getFlippedCashFlow(intervalHistory1, true) != 0 && item1.getFlippedCashFlow(intervalHistory1, false) != 0;
+		boolean flipped2 = item2.getFlippedCashFlow(intervalHistory2, true) != 0 && item2.getFlippedCashFlow(intervalHistory2, false) != 0;
+		if (flipped1 && flipped2)
+		{
+			return 2;
+		}
+		return Boolean.compare(flipped1, flipped2);
+	}
+}
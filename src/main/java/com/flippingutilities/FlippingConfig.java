@@ -110,6 +110,40 @@ public interface FlippingConfig extends Config
 	)
 	default boolean verboseViewEnabled() { return true; }
 
+	@ConfigItem(
+		keyName = "compactTradeFiles",
+		name = "Store trades in compact files",
+		description = "Store your trade history in a compact format that loads much faster. Turn this off to have it" +
+			" stored as readable JSON instead, for example to look through it yourself"
+	)
+	default boolean compactTradeFiles()
+	{
+		return true;
+	}
+
+	@ConfigItem(
+		keyName = "checkpointInterval",
+		name = "Save trades every",
+		description = "How often trades are saved while you play, so a crash doesn't lose them. They are also saved" +
+			" when you log out"
+	)
+	@Units(Units.MINUTES)
+	default int checkpointInterval()
+	{
+		return 5;
+	}
+
+	@ConfigItem(
+		keyName = "checkpointOfferCount",
+		name = "Save trades after this many offers",
+		description = "Save trades as soon as this many offers came in since they were last saved, regardless of how" +
+			" long ago that was"
+	)
+	default int checkpointOfferCount()
+	{
+		return 25;
+	}
+
 	@ConfigItem(
 			keyName = "slotTimerBuyTextColor",
 			name = "slot timer buy text color",
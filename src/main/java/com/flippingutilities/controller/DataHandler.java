@@ -26,13 +26,28 @@
 
 package com.flippingutilities.controller;
 
+import com.flippingutilities.db.JournalDelta;
+import com.flippingutilities.db.JournalEntry;
+import com.flippingutilities.db.PersistenceWriter;
 import com.flippingutilities.db.TradePersister;
 import com.flippingutilities.model.AccountData;
+import com.flippingutilities.model.AccountSummary;
 import com.flippingutilities.model.AccountWideData;
+import com.flippingutilities.model.FlippingItem;
+import com.flippingutilities.model.OfferEvent;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * Responsible for loading data from disk, handling any operations to access/change data during the plugin's life, and storing
@@ -40,12 +55,31 @@ import java.util.*;
  */
 @Slf4j
 public class DataHandler {
+    //the client is still running the game while accounts load, so don't take every core even if there are many accounts.
+    private static final int LOADING_THREADS = Math.min(4, Runtime.getRuntime().availableProcessors());
     FlippingPlugin plugin;
     private AccountWideData accountWideData;
-    private Map<String, AccountData> accountSpecificData = new HashMap<>();
+    //accounts are only loaded and published on the client thread, and only once they are prepared for it, but the
+    //panels look them up from the swing thread.
+    private Map<String, AccountData> accountSpecificData = new ConcurrentHashMap<>();
+    //accounts that only have their summary loaded as nothing has needed their full data yet. They are moved to
+    //accountSpecificData the first time something does.
+    private Map<String, AccountSummary> unloadedAccounts = new ConcurrentHashMap<>();
     private boolean accountWideDataChanged = false;
+    //accounts that need their whole data rewritten the next time data is stored
     private Set<String> accountsWithUnsavedChanges = new HashSet<>();
+    //accounts that only got new offers or had their state (last offers, session time, etc) changed. These are saved
+    //by appending to their journal.
+    private Set<String> accountsWithUnjournaledChanges = new HashSet<>();
+    private Map<String, List<JournalEntry>> unjournaledOffers = new HashMap<>();
+    //offers journaled and when data was stored since the last time it was stored, to decide when to checkpoint
+    private int offersSinceLastStore;
+    private Instant lastStoreTime = Instant.now();
+    //the earliest time anything has needed the history of accounts from. Older history segments aren't loaded.
+    private volatile Instant historyNeededSince;
     public String thisClientLastStored;
+    //storing only takes snapshots of the data, which this writes to disk in the background
+    private final PersistenceWriter persistenceWriter = new PersistenceWriter();
 
     public DataHandler(FlippingPlugin plugin) {
         this.plugin = plugin;
@@ -65,36 +99,231 @@ public class DataHandler {
         AccountData accountData = new AccountData();
         accountData.prepareForUse(plugin);
         accountSpecificData.put(displayName, accountData);
+        //an account is only found on load if it has a snapshot, so the first save can't just be a journal append.
+        accountsWithUnsavedChanges.add(displayName);
     }
 
     public void deleteAccount(String displayName) {
         log.info("deleting account: {}", displayName);
-        accountSpecificData.remove(displayName);
-        TradePersister.deleteFile(displayName + ".json");
+        AccountData accountData = accountSpecificData.remove(displayName);
+        if (accountData != null) {
+            plugin.getGeLimitTracker().untrackAll(accountData.getTrades());
+        }
+        unloadedAccounts.remove(displayName);
+        accountsWithUnsavedChanges.remove(displayName);
+        accountsWithUnjournaledChanges.remove(displayName);
+        unjournaledOffers.remove(displayName);
+        //after the pending writes, otherwise one of them could recreate the files after they are deleted
+        persistenceWriter.afterWrites(() -> {
+            TradePersister.deleteFile(displayName + ".json");
+            TradePersister.deleteFile(displayName + TradePersister.COMPACT_EXTENSION);
+            TradePersister.deleteFile(displayName + TradePersister.JOURNAL_EXTENSION);
+            TradePersister.deleteFile(displayName + TradePersister.SUMMARY_EXTENSION);
+            TradePersister.deleteSegments(displayName);
+            return null;
+        });
     }
 
-    public Collection<AccountData> getAllAccountData() {
-        accountsWithUnsavedChanges.addAll(accountSpecificData.keySet());
+    //is called if only the accounts that already have their full data loaded are needed
+    public Collection<AccountData> viewLoadedAccountData() {
         return accountSpecificData.values();
     }
 
-    public Collection<AccountData> viewAllAccountData() {
-        return accountSpecificData.values();
+    /**
+     * Makes sure the loaded accounts have all their offers from the given time on loaded, by loading the history
+     * segments they don't have loaded yet. Accounts that get loaded later on will also have those segments loaded.
+     * The segments are read in the background and added to the accounts on the client thread.
+     *
+     * @param since    the earliest time offers are needed from
+     * @param onLoaded run on the client thread once the history is added, if any had to be loaded
+     */
+    public void loadHistorySince(Instant since, Runnable onLoaded) {
+        if (historyNeededSince == null || since.isBefore(historyNeededSince)) {
+            historyNeededSince = since;
+        }
+        loadNeededHistory().thenAccept(loadedAny -> {
+            if (loadedAny) {
+                onLoaded.run();
+            }
+        });
+    }
+
+    /**
+     * Makes sure the loaded accounts have all of their history loaded, which changes that remove items or invalidate
+     * offers need. Only the segments of months that are fully loaded are rewritten when an account is stored, so
+     * without this the changes wouldn't reach the other segments and loading those later on would bring back the
+     * removed items and invalidated offers. Accounts that get loaded later on will also have all of their history loaded.
+     *
+     * @param onLoaded run on the client thread once the history is added
+     */
+    public void loadAllHistory(Runnable onLoaded) {
+        historyNeededSince = Instant.EPOCH;
+        loadNeededHistory().thenRun(onLoaded);
+    }
+
+    //completes on the client thread with whether any of the loaded accounts needed history to be loaded
+    private CompletableFuture<Boolean> loadNeededHistory() {
+        List<CompletableFuture<Boolean>> loads = new ArrayList<>();
+        accountSpecificData.forEach((displayName, accountData) -> loads.add(loadHistory(displayName, accountData)));
+        return CompletableFuture.allOf(loads.toArray(new CompletableFuture[0]))
+            .thenApply(v -> loads.stream().anyMatch(CompletableFuture::join));
+    }
+
+    public boolean hasUnloadedAccounts() {
+        return !unloadedAccounts.isEmpty();
+    }
+
+    /**
+     * @return whether only the summary of the account is loaded, so its full data has to be loaded before it's used
+     */
+    public boolean isUnloaded(String displayName) {
+        return unloadedAccounts.containsKey(displayName);
+    }
+
+    /**
+     * Loads the full data of all the accounts that only have their summary loaded, without holding up the calling
+     * thread. The loaded data is handed over on the client thread.
+     *
+     * @param executor the executor to load the data on
+     * @param onLoaded run on the client thread once the data is loaded
+     */
+    public void loadUnloadedAccountsInBackground(Executor executor, Runnable onLoaded) {
+        loadAccountsInBackground(new ArrayList<>(unloadedAccounts.keySet()), executor, onLoaded);
+    }
+
+    /**
+     * Loads the full data of an account that only has its summary loaded, without holding up the calling thread. The
+     * loaded data is handed over on the client thread.
+     *
+     * @param displayName the account to load
+     * @param executor    the executor to load the data on
+     * @param onLoaded    run on the client thread once the data is loaded
+     */
+    public void loadAccountInBackground(String displayName, Executor executor, Runnable onLoaded) {
+        loadAccountsInBackground(Collections.singletonList(displayName), executor, onLoaded);
+    }
+
+    /**
+     * Changes the full data of every account, loading the accounts that only have their summary loaded in the
+     * background first. All of the accounts' history is loaded before the changes are made, as they can remove items
+     * or invalidate offers (see {@link #loadAllHistory}). The changes are made on the client thread, which is the only
+     * thread accounts are loaded on.
+     *
+     * @param executor  the executor to load the accounts that aren't loaded on
+     * @param update    the change to make to each account's data
+     * @param onUpdated run on the client thread once every account is changed
+     */
+    public void updateAllAccountData(Executor executor, Consumer<AccountData> update, Runnable onUpdated) {
+        //the accounts that aren't loaded yet read all of their history in the background
+        historyNeededSince = Instant.EPOCH;
+        loadUnloadedAccountsInBackground(executor, () -> loadAllHistory(() -> {
+            accountSpecificData.values().forEach(update);
+            accountsWithUnsavedChanges.addAll(accountSpecificData.keySet());
+            onUpdated.run();
+        }));
+    }
+
+    /**
+     * Changes the full data of an account once all of its history is loaded, as the change can remove items or
+     * invalidate offers (see {@link #loadAllHistory}). Has to be called on the client thread.
+     *
+     * @param displayName the account to change
+     * @param update      the change to make to the account's data
+     * @param onUpdated   run on the client thread once the account is changed
+     */
+    public void updateAccountData(String displayName, Consumer<AccountData> update, Runnable onUpdated) {
+        loadIfUnloaded(displayName);
+        loadAllHistory(() -> {
+            AccountData accountData = accountSpecificData.get(displayName);
+            //the account could have been deleted in the meantime
+            if (accountData == null) {
+                return;
+            }
+            update.accept(accountData);
+            accountsWithUnsavedChanges.add(displayName);
+            onUpdated.run();
+        });
+    }
+
+    private void loadAccountsInBackground(List<String> displayNames, Executor executor, Runnable onLoaded) {
+        Instant historySince = historyNeededSince;
+        log.info("loading full data for {} in the background", displayNames);
+        executor.execute(() -> {
+            Map<String, AccountData> trades = readAccountsData(displayNames);
+            trades.forEach((displayName, accountData) -> readHistory(displayName, accountData, historySince));
+            plugin.getClientThread().invokeLater(() -> {
+                trades.forEach((displayName, accountData) -> {
+                    //the account might have been loaded or deleted in the meantime
+                    if (unloadedAccounts.remove(displayName) != null) {
+                        accountData.prepareForClient(plugin);
+                        accountSpecificData.put(displayName, accountData);
+                        //older history could have been needed since the account started loading
+                        loadHistory(displayName, accountData);
+                    }
+                });
+                onLoaded.run();
+            });
+        });
     }
 
     //calls it if data is going to be updated,
     public AccountData getAccountData(String displayName) {
+        loadIfUnloaded(displayName);
         accountsWithUnsavedChanges.add(displayName);
         return accountSpecificData.get(displayName);
     }
 
+    //calls it if only the account's state apart from its trades (last offers, slot timers, session time) is going
+    //to be updated. Those changes are cheap to save as they don't require rewriting the trades.
+    public AccountData getAccountState(String displayName) {
+        loadIfUnloaded(displayName);
+        accountsWithUnjournaledChanges.add(displayName);
+        return accountSpecificData.get(displayName);
+    }
+
+    /**
+     * Checks whether an account has ever traded an item, without loading the account's full data if only its
+     * summary is loaded.
+     *
+     * @param displayName the account to check
+     * @param itemId      the item to look for
+     * @return whether the account has a FlippingItem for the item
+     */
+    public boolean hasItem(String displayName, int itemId) {
+        if (unloadedAccounts.containsKey(displayName)) {
+            return unloadedAccounts.get(displayName).hasItem(itemId);
+        }
+        AccountData accountData = accountSpecificData.get(displayName);
+        return accountData != null && accountData.findItem(itemId).isPresent();
+    }
+
+    /**
+     * Records an offer that was just added to an account's trades so that it is saved by appending it to the
+     * account's journal instead of rewriting all of the account's trades.
+     *
+     * @param displayName the account the offer was made by
+     * @param itemName    name of the item the offer is for, needed to recreate the item if the offer is the first one for it
+     * @param offer       the offer that was added to the item's history
+     */
+    public void journalOffer(String displayName, String itemName, OfferEvent offer) {
+        AccountData accountData = accountSpecificData.get(displayName);
+        //the offer can still be invalidated before the entry is written
+        JournalEntry entry = JournalEntry.offer(accountData.nextJournalSequence(), itemName, offer.clone());
+        unjournaledOffers.computeIfAbsent(displayName, k -> new ArrayList<>()).add(entry);
+        accountsWithUnjournaledChanges.add(displayName);
+        offersSinceLastStore++;
+    }
+
     //is called if account data just needs to be viewed, not updated
     public AccountData viewAccountData(String displayName) {
+        loadIfUnloaded(displayName);
         return accountSpecificData.get(displayName);
     }
 
     public Set<String> getCurrentAccounts() {
-        return accountSpecificData.keySet();
+        Set<String> currentAccounts = new HashSet<>(accountSpecificData.keySet());
+        currentAccounts.addAll(unloadedAccounts.keySet());
+        return currentAccounts;
     }
 
     public void markDataAsHavingChanged(String displayName) {
@@ -106,14 +335,57 @@ public class DataHandler {
         }
     }
 
+    /**
+     * Makes every loaded account get rewritten the next time data is stored, for example so that they are converted
+     * to the format accounts are now stored in. Accounts that aren't loaded are converted the next time they are saved.
+     */
+    public void markLoadedAccountsAsHavingChanged() {
+        accountsWithUnsavedChanges.addAll(accountSpecificData.keySet());
+    }
+
+    /**
+     * Stores whatever changed since data was last stored if enough time passed or enough offers came in since then.
+     * This is what keeps a crash from losing everything since login, as data is otherwise only stored on logout and
+     * shutdown. Most of the time only new offers and account state changed, so a checkpoint is just an append to
+     * the journals of the accounts that changed, which is what is replayed when they are loaded after a crash.
+     *
+     * @param interval   the longest time changes go without being stored
+     * @param offerCount the most offers that go without being stored
+     */
+    public void checkpointIfNeeded(Duration interval, int offerCount) {
+        boolean hasChanges = !accountsWithUnsavedChanges.isEmpty() || !accountsWithUnjournaledChanges.isEmpty() || accountWideDataChanged;
+        if (!hasChanges) {
+            return;
+        }
+        if (offersSinceLastStore >= offerCount || !Instant.now().isBefore(lastStoreTime.plus(interval))) {
+            log.info("checkpointing after {} offers", offersSinceLastStore);
+            storeData();
+        }
+    }
+
+    /**
+     * Stores the data of the accounts that changed. The data is only copied on the calling thread, it is written to
+     * disk in the background shortly after.
+     */
     public void storeData() {
         log.info("storing data");
+        offersSinceLastStore = 0;
+        lastStoreTime = Instant.now();
         if (accountsWithUnsavedChanges.size() > 0) {
             log.info("accounts with unsaved changes are {}. Saving them.", accountsWithUnsavedChanges);
             accountsWithUnsavedChanges.forEach(accountName -> storeAccountData(accountName));
-            accountsWithUnsavedChanges.clear();
         }
 
+        //accounts that are getting rewritten don't need anything appended to their journal.
+        accountsWithUnjournaledChanges.removeAll(accountsWithUnsavedChanges);
+        if (accountsWithUnjournaledChanges.size() > 0) {
+            log.info("accounts with unjournaled changes are {}. Appending them to their journals.", accountsWithUnjournaledChanges);
+            accountsWithUnjournaledChanges.forEach(accountName -> journalAccountData(accountName));
+        }
+        accountsWithUnsavedChanges.clear();
+        accountsWithUnjournaledChanges.clear();
+        unjournaledOffers.clear();
+
         if (accountWideDataChanged) {
             log.info("account wide data changed, saving it.");
             storeAccountWideData();
@@ -121,30 +393,126 @@ public class DataHandler {
         }
     }
 
+    /**
+     * Writes everything stored so far to disk and stops the thread that does the writing. Anything stored
+     * afterwards isn't written.
+     *
+     * @return completes once everything is written to disk
+     */
+    public Future<?> shutdown() {
+        return persistenceWriter.shutdown();
+    }
+
     public void loadData() {
         try {
             log.info("initiating load");
             TradePersister.setup();
             accountWideData = fetchAccountWideData();
-            accountSpecificData = fetchAllAccountData();
+            accountSpecificData = new ConcurrentHashMap<>(fetchAllAccountData());
         }
         catch (IOException e) {
             log.info("error while loading data, setting accountwidedata and accountspecific to defaults", e);
             accountWideData = new AccountWideData();
             accountWideData.setDefaults();
-            accountSpecificData = new HashMap<>();
+            accountSpecificData = new ConcurrentHashMap<>();
+            unloadedAccounts = new ConcurrentHashMap<>();
             accountWideDataChanged = true;
         }
     }
 
+    /**
+     * Applies the entries another client appended to an account's journal since this client last read it, rather
+     * than reloading the whole account. The journal is read in the background and applied on the client thread.
+     *
+     * @param displayName the account whose journal changed
+     * @param onApplied   run on the client thread with what changed, or with null if the account has to be reloaded
+     *                    with {@link #loadAccountData(String, Runnable)} instead, either because it isn't loaded or
+     *                    because its journal was folded into its snapshot since it was last read
+     */
+    public void loadJournalDelta(String displayName, Consumer<JournalDelta> onApplied) {
+        AccountData accountData = accountSpecificData.get(displayName);
+        if (accountData == null) {
+            onApplied.accept(null);
+            return;
+        }
+
+        long offset = accountData.getJournalOffset();
+        List<JournalEntry> entries = new ArrayList<>();
+        onClientThread(persistenceWriter.afterWrites(() -> TradePersister.readJournal(displayName, offset, entries::add)), (journalOffset, error) -> {
+            if (error != null) {
+                log.info("couldn't read the journal of {}, reloading it fully. error = " + error, displayName);
+                onApplied.accept(null);
+            }
+            //the account could have been reloaded or stored while the journal was read, which changes where it has
+            //to be read from
+            else if (journalOffset < 0 || accountSpecificData.get(displayName) != accountData || accountData.getJournalOffset() != offset) {
+                onApplied.accept(null);
+            }
+            else {
+                accountData.setJournalOffset(journalOffset);
+                onApplied.accept(applyJournalEntries(displayName, accountData, entries));
+            }
+        });
+    }
+
+    private JournalDelta applyJournalEntries(String displayName, AccountData accountData, List<JournalEntry> entries) {
+        JournalDelta delta = new JournalDelta();
+        List<FlippingItem> addedItems = new ArrayList<>();
+        for (JournalEntry entry : entries) {
+            //this client's own entries and entries already in the snapshot
+            if (entry.getSequence() <= accountData.getJournalSequence()) {
+                continue;
+            }
+            int tradesBefore = accountData.getTrades().size();
+            entry.applyTo(accountData, displayName);
+            if (entry.getOffer() != null) {
+                delta.getOffers().add(entry.getOffer());
+                delta.getItemIds().add(entry.getOffer().getItemId());
+                if (accountData.getTrades().size() > tradesBefore) {
+                    addedItems.add(accountData.getTrades().get(0));
+                }
+            }
+            delta.setStateChanged(delta.isStateChanged() || entry.getState() != null);
+        }
+
+        delta.setAddedItems(!addedItems.isEmpty());
+        accountData.prepareItemsForClient(plugin, addedItems);
+        delta.getItemIds().forEach(itemId -> accountData.findItem(itemId).ifPresent(plugin.getGeLimitTracker()::track));
+        if (delta.isStateChanged()) {
+            //the slot timers from the journal don't have the client and plugin set
+            accountData.prepareSlotTimers(plugin);
+        }
+        log.info("applied {} offers from the journal of {}", delta.getOffers().size(), displayName);
+        return delta;
+    }
+
     public void loadAccountWideData() {
         log.info("updating account wide data");
         accountWideData = fetchAccountWideData();
     }
 
-    public void loadAccountData(String displayName) {
+    /**
+     * Reloads an account from disk after another client stored it. The files are read in the background, and the
+     * account is replaced on the client thread.
+     *
+     * @param displayName the account to reload
+     * @param onLoaded    run on the client thread once the account is reloaded
+     */
+    public void loadAccountData(String displayName, Runnable onLoaded) {
         log.info("loading data for {}", displayName);
-        accountSpecificData.put(displayName, fetchAccountData(displayName));
+        if (!unloadedAccounts.containsKey(displayName)) {
+            fetchAccountData(displayName, onLoaded);
+            return;
+        }
+        //if nothing needed the account's full data before, it doesn't need it now either. Just refresh the summary.
+        onClientThread(persistenceWriter.afterWrites(() -> TradePersister.loadSummary(displayName)), (summary, error) -> {
+            if (summary != null && unloadedAccounts.containsKey(displayName)) {
+                unloadedAccounts.put(displayName, summary);
+                onLoaded.run();
+                return;
+            }
+            fetchAccountData(displayName, onLoaded);
+        });
     }
 
     private AccountWideData fetchAccountWideData() {
@@ -165,14 +533,53 @@ public class DataHandler {
         }
     }
 
+    /**
+     * Only loads the summaries of accounts at startup. An account's full data is loaded the first time something
+     * needs it, so people with many accounts don't have to wait for, and keep in memory, the history of accounts
+     * they don't look at. Accounts that don't have an up to date summary yet are loaded fully.
+     *
+     * @return the data of the accounts that had to be loaded fully
+     */
     private Map<String, AccountData> fetchAllAccountData()
+    {
+        unloadedAccounts = new ConcurrentHashMap<>();
+        List<String> accountsWithoutSummaries = new ArrayList<>();
+        for (String displayName : TradePersister.listAccounts())
+        {
+            AccountSummary summary = TradePersister.loadSummary(displayName);
+            if (summary != null)
+            {
+                unloadedAccounts.put(displayName, summary);
+            }
+            else
+            {
+                accountsWithoutSummaries.add(displayName);
+            }
+        }
+        log.info("loaded summaries for {}, {} have no up to date summary", unloadedAccounts.keySet(), accountsWithoutSummaries);
+
+        Map<String, AccountData> trades = fetchAccountsData(accountsWithoutSummaries);
+        //so they don't have to be loaded fully on the next startup
+        trades.forEach((displayName, accountData) -> persistenceWriter.storeSummary(displayName, AccountSummary.of(accountData)));
+        return trades;
+    }
+
+    private Map<String, AccountData> fetchAccountsData(Collection<String> displayNames)
+    {
+        Map<String, AccountData> trades = readAccountsData(displayNames);
+        trades.forEach((displayName, accountData) -> readHistory(displayName, accountData, historyNeededSince));
+        trades.values().forEach(accountData -> accountData.prepareForClient(plugin));
+        return trades;
+    }
+
+    //loads the accounts and does everything to prepare them for use that doesn't need the client thread
+    private Map<String, AccountData> readAccountsData(Collection<String> displayNames)
     {
         try
         {
-            Map<String, AccountData> trades = TradePersister.loadAllAccounts();
-            trades.values().forEach(accountData -> {
+            Map<String, AccountData> trades = TradePersister.loadAccounts(displayNames, LOADING_THREADS, accountData -> {
                 accountData.startNewSession();
-                accountData.prepareForUse(plugin);
+                accountData.prepareTrades();
             });
             log.info("successfully loaded trades");
             return trades;
@@ -184,49 +591,180 @@ public class DataHandler {
         }
     }
 
-    private AccountData fetchAccountData(String displayName)
+    //loading an account uses the item manager, so this only happens on the client thread. The panels load accounts
+    //with loadAccountInBackground instead.
+    private void loadIfUnloaded(String displayName)
     {
+        if (unloadedAccounts.containsKey(displayName))
+        {
+            loadUnloadedAccounts(Collections.singleton(displayName));
+        }
+    }
+
+    private void loadUnloadedAccounts(Collection<String> displayNames)
+    {
+        if (displayNames.isEmpty())
+        {
+            return;
+        }
+        log.info("loading full data for {}", displayNames);
+        Map<String, AccountData> trades = fetchAccountsData(new ArrayList<>(displayNames));
+        accountSpecificData.putAll(trades);
+        //accounts that failed to load stay unloaded rather than being replaced with empty data that could be saved
+        //over their file.
+        unloadedAccounts.keySet().removeAll(trades.keySet());
+    }
+
+    /**
+     * Loads the history segments of an account that's in use that are needed to cover everything from
+     * {@link #historyNeededSince} on. The segments are read after the account's pending writes, in the background,
+     * and added to the account on the client thread.
+     *
+     * @return completes on the client thread with whether any history was added
+     */
+    private CompletableFuture<Boolean> loadHistory(String displayName, AccountData accountData)
+    {
+        YearMonth historyLoadedFrom = accountData.getHistoryLoadedFrom();
+        YearMonth historyNeededFrom = historyNeededFrom(historyNeededSince, historyLoadedFrom);
+        if (historyNeededFrom == null)
+        {
+            return CompletableFuture.completedFuture(false);
+        }
+
+        CompletableFuture<Boolean> loaded = new CompletableFuture<>();
+        onClientThread(persistenceWriter.afterWrites(() -> TradePersister.loadSegments(displayName, historyNeededFrom, historyLoadedFrom)), (segments, error) -> {
+            if (error != null)
+            {
+                log.info("couldn't load history segments for {}, error = " + error, displayName);
+                loaded.complete(false);
+                return;
+            }
+            //the account could have been reloaded in the meantime. Offers loaded by another call in the meantime are
+            //skipped by addOlderHistory.
+            if (accountSpecificData.get(displayName) != accountData)
+            {
+                loaded.complete(false);
+                return;
+            }
+            accountData.addOlderHistory(segments);
+            if (historyNeededFrom.isBefore(accountData.getHistoryLoadedFrom()))
+            {
+                accountData.setHistoryLoadedFrom(historyNeededFrom);
+            }
+            loaded.complete(true);
+        });
+        return loaded;
+    }
+
+    /**
+     * Loads the history segments an account that isn't in use yet needs to cover everything from the given time on,
+     * on the thread that's loading it. This client doesn't write the files of accounts it hasn't loaded, so they
+     * can be read right away.
+     */
+    private static void readHistory(String displayName, AccountData accountData, Instant historyNeededSince)
+    {
+        YearMonth historyLoadedFrom = accountData.getHistoryLoadedFrom();
+        YearMonth historyNeededFrom = historyNeededFrom(historyNeededSince, historyLoadedFrom);
+        if (historyNeededFrom == null)
+        {
+            return;
+        }
+
         try
         {
-            AccountData accountData = TradePersister.loadAccount(displayName);
-            accountData.prepareForUse(plugin);
-            return accountData;
+            accountData.addOlderHistory(TradePersister.loadSegments(displayName, historyNeededFrom, historyLoadedFrom));
+            accountData.setHistoryLoadedFrom(historyNeededFrom);
         }
         catch (IOException e)
         {
-            log.info("couldn't load trades for {}, e = " + e, displayName);
-            return new AccountData();
+            log.info("couldn't load history segments for {}, error = " + e, displayName);
         }
     }
 
-    private void storeAccountData(String displayName)
+    //the first month whose segment has to be loaded, or null if none have to be
+    private static YearMonth historyNeededFrom(Instant historyNeededSince, YearMonth historyLoadedFrom)
     {
-        try
+        if (historyNeededSince == null || historyLoadedFrom == null)
         {
-            AccountData data = accountSpecificData.get(displayName);
-            if (data == null)
+            return null;
+        }
+        YearMonth historyNeededFrom = TradePersister.monthOf(historyNeededSince);
+        return historyNeededFrom.isBefore(historyLoadedFrom) ? historyNeededFrom : null;
+    }
+
+    private void fetchAccountData(String displayName, Runnable onLoaded)
+    {
+        Instant historySince = historyNeededSince;
+        onClientThread(persistenceWriter.afterWrites(() -> {
+            AccountData accountData = TradePersister.loadAccount(displayName);
+            accountData.prepareTrades();
+            readHistory(displayName, accountData, historySince);
+            return accountData;
+        }), (accountData, error) -> {
+            if (error != null)
             {
-                log.info("for an unknown reason the data associated with {} has been set to null. Storing" +
-                        "an empty AccountData object instead.", displayName);
-                data = new AccountData();
+                log.info("couldn't load trades for {}, e = " + error, displayName);
+                accountData = new AccountData();
+            }
+            accountData.prepareForClient(plugin);
+            unloadedAccounts.remove(displayName);
+            AccountData previousData = accountSpecificData.put(displayName, accountData);
+            if (previousData != null) {
+                //the items loaded before are replaced by the ones just loaded
+                plugin.getGeLimitTracker().untrackAll(previousData.getTrades());
             }
-            thisClientLastStored = displayName;
-            TradePersister.storeTrades(displayName, data);
-            log.info("successfully stored trades for {}", displayName);
+            onLoaded.run();
+        });
+    }
+
+    //hands what a task on the writer's thread came up with over to the client thread, which is where the data is used
+    private <T> void onClientThread(CompletableFuture<T> task, BiConsumer<T, Throwable> consumer)
+    {
+        task.whenComplete((result, error) -> plugin.getClientThread().invokeLater(() -> consumer.accept(result, error)));
+    }
+
+    private void storeAccountData(String displayName)
+    {
+        if (unloadedAccounts.containsKey(displayName))
+        {
+            log.info("not storing {} as its data was never loaded", displayName);
+            return;
         }
-        catch (IOException e)
+        AccountData data = accountSpecificData.get(displayName);
+        if (data == null)
         {
-            log.info("couldn't store trades, error = " + e);
+            log.info("for an unknown reason the data associated with {} has been set to null. Storing" +
+                    "an empty AccountData object instead.", displayName);
+            data = new AccountData();
         }
+        thisClientLastStored = displayName;
+        persistenceWriter.storeAccount(displayName, data.snapshot(), AccountSummary.of(data));
+        //the journal is cut down to the entries after the snapshot once it's written, so it's read from the start again
+        data.setJournalOffset(0);
     }
 
-    private void storeAccountWideData() {
-        try {
-            TradePersister.storeTrades("accountwide", accountWideData);
-            log.info("successfully stored account wide data");
+    private void journalAccountData(String displayName)
+    {
+        AccountData data = accountSpecificData.get(displayName);
+        if (data == null)
+        {
+            return;
         }
-        catch (IOException e) {
-            log.info("couldn't store trades", e);
+
+        if (TradePersister.shouldCompactJournal(displayName))
+        {
+            log.info("journal for {} is large, compacting it into a snapshot", displayName);
+            storeAccountData(displayName);
+            return;
         }
+
+        List<JournalEntry> entries = new ArrayList<>(unjournaledOffers.getOrDefault(displayName, Collections.emptyList()));
+        entries.add(JournalEntry.state(data.nextJournalSequence(), data.copyWithoutTrades()));
+        thisClientLastStored = displayName;
+        persistenceWriter.appendToJournal(displayName, entries, AccountSummary.of(data));
+    }
+
+    private void storeAccountWideData() {
+        persistenceWriter.storeAccountWideData(TradePersister.toJsonTree(accountWideData));
     }
 }
@@ -27,6 +27,7 @@
 package com.flippingutilities.controller;
 
 import com.flippingutilities.FlippingConfig;
+import com.flippingutilities.db.JournalDelta;
 import com.flippingutilities.db.TradePersister;
 import com.flippingutilities.jobs.SlotStateSenderJob;
 import com.flippingutilities.model.*;
@@ -69,6 +70,7 @@ import net.runelite.http.api.item.ItemStats;
 import okhttp3.*;
 
 import javax.inject.Inject;
+import javax.swing.SwingUtilities;
 import java.awt.*;
 import java.awt.event.KeyEvent;
 import java.io.File;
@@ -81,6 +83,7 @@ import java.util.*;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 
@@ -145,6 +148,8 @@ public class FlippingPlugin extends Plugin {
     //through the dropdown menu
     @Getter
     private String accountCurrentlyViewed = ACCOUNT_WIDE;
+    //the view that was selected last, which can still be loading. The panels only switch to it once it's loaded.
+    private volatile String accountSelected = ACCOUNT_WIDE;
 
     //the display name of the currently logged in user. This is the only account that can actually receive offers
     //as this is the only account currently logged in.
@@ -157,11 +162,14 @@ public class FlippingPlugin extends Plugin {
     @Getter
     private List<OfferEvent> eventsReceivedBeforeFullLogin = new ArrayList<>();
 
-    //building the account wide trade list is an expensive operation so we store it in this variable and only recompute
-    //it if we have gotten an update since the last account wide trade list build.
-    @Setter
-    boolean updateSinceLastAccountWideBuild = true;
-    List<FlippingItem> prevBuiltAccountWideList;
+    //merging every account's items is an expensive operation, so the account wide trade list is kept and only the
+    //items that changed since it was last asked for are merged again.
+    @Getter
+    private final AccountWideTradeList accountWideTradeList = new AccountWideTradeList();
+
+    //resets the ge limits of the items whose limit refreshed, without checking every item each second
+    @Getter
+    private final GeLimitTracker geLimitTracker = new GeLimitTracker();
 
     //updates the cache by monitoring the directory and loading a file's contents into the cache if it has been changed
     private CacheUpdaterJob cacheUpdaterJob;
@@ -225,6 +233,7 @@ public class FlippingPlugin extends Plugin {
                     return false;
             }
 
+            TradePersister.setCompactFiles(config.compactTradeFiles());
             dataHandler.loadData();
             masterPanel.setupAccSelectorDropdown(dataHandler.getCurrentAccounts());
             generalRepeatingTasks = setupRepeatingTasks(1000);
@@ -252,6 +261,9 @@ public class FlippingPlugin extends Plugin {
             slotTimersTask.cancel(true);
             slotTimersTask = null;
         }
+        newOfferEventPipelineHandler.applyPendingOffers();
+        //anything that was stored before the plugin was turned off still has to be written
+        dataHandler.shutdown();
 
         clientToolbar.removeNavigation(navButton);
     }
@@ -265,7 +277,10 @@ public class FlippingPlugin extends Plugin {
             slotTimersTask.cancel(true);
             slotTimersTask = null;
         }
+        newOfferEventPipelineHandler.applyPendingOffers();
         dataHandler.storeData();
+        //the data is written in the background, the client waits for it before it exits
+        clientShutdownEvent.waitFor(dataHandler.shutdown());
         cacheUpdaterJob.stop();
         wikiDataFetcherJob.stop();
         slotStateSenderJob.stop();
@@ -340,6 +355,7 @@ public class FlippingPlugin extends Plugin {
         //was set.
         eventsReceivedBeforeFullLogin.forEach(newOfferEventPipelineHandler::onNewOfferEvent);
         eventsReceivedBeforeFullLogin.clear();
+        newOfferEventPipelineHandler.applyPendingOffers();
 
         if (dataHandler.getCurrentAccounts().size() > 1) {
             masterPanel.getAccountSelector().setVisible(true);
@@ -359,8 +375,10 @@ public class FlippingPlugin extends Plugin {
 
     public void handleLogout() {
         log.info("{} is logging out", currentlyLoggedInAccount);
+        //the offers from the last tick before logging out are for this account
+        newOfferEventPipelineHandler.applyPendingOffers();
 
-        dataHandler.getAccountData(currentlyLoggedInAccount).setLastSessionTimeUpdate(null);
+        dataHandler.getAccountState(currentlyLoggedInAccount).setLastSessionTimeUpdate(null);
         dataHandler.storeData();
 
         if (slotTimersTask != null && !slotTimersTask.isCancelled()) {
@@ -382,9 +400,10 @@ public class FlippingPlugin extends Plugin {
         return executor.scheduleAtFixedRate(() ->
         {
             try {
-                flippingPanel.updateTimerDisplays();
+                clientThread.invoke(this::expireGeLimits);
                 statPanel.updateTimeDisplay();
                 updateSessionTime();
+                checkpointData();
             } catch (ConcurrentModificationException e) {
                 log.info("concurrent modification exception. This is fine, will just restart tasks after delay." +
                         " Cancelling general repeating tasks and starting it again after 5000 ms delay");
@@ -399,6 +418,25 @@ public class FlippingPlugin extends Plugin {
         }, msStartDelay, 1000, TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * Resets the ge limits that refreshed and updates the panels showing them. The flipping panel's other times are
+     * updated by the panel itself, when they change. Runs on the client thread, as resetting the limits and merging
+     * the Accountwide items change the same histories new offers are added to.
+     */
+    private void expireGeLimits() {
+        List<FlippingItem> expiredItems = geLimitTracker.expire(Instant.now());
+        if (expiredItems.isEmpty()) {
+            return;
+        }
+        Set<Integer> itemIds = expiredItems.stream().map(FlippingItem::getItemId).collect(Collectors.toSet());
+        accountWideTradeList.itemsChanged(itemIds);
+        if (accountCurrentlyViewed.equals(ACCOUNT_WIDE)) {
+            //merges the items again, which updates the ones the panels show in place
+            createAccountWideList();
+        }
+        flippingPanel.refreshGeLimits(itemIds);
+    }
+
     /**
      * This method is invoked every time the plugin receives a GrandExchangeOfferChanged event which is
      * when the user set an offer, cancelled an offer, or when an offer was updated (items bought/sold partially
@@ -412,6 +450,15 @@ public class FlippingPlugin extends Plugin {
         newOfferEventPipelineHandler.onGrandExchangeOfferChanged(offerChangedEvent);
     }
 
+    /**
+     * The offers that came in during a tick are added to the trades lists together once it's over, so the panels are
+     * only refreshed once for all of them.
+     */
+    @Subscribe
+    public void onGameTick(GameTick gameTick) {
+        newOfferEventPipelineHandler.applyPendingOffers();
+    }
+
     public List<FlippingItem> getTradesForCurrentView() {
         return accountCurrentlyViewed.equals(ACCOUNT_WIDE) ? createAccountWideList() : dataHandler.getAccountData(accountCurrentlyViewed).getTrades();
     }
@@ -420,9 +467,23 @@ public class FlippingPlugin extends Plugin {
         return accountCurrentlyViewed.equals(ACCOUNT_WIDE) ? createAccountWideList() : dataHandler.viewAccountData(accountCurrentlyViewed).getTrades();
     }
 
+    /**
+     * Finds the item with the given id in the trades of the current view, without going through them.
+     */
+    public Optional<FlippingItem> findItemInCurrentView(int itemId) {
+        if (!accountCurrentlyViewed.equals(ACCOUNT_WIDE)) {
+            return dataHandler.viewAccountData(accountCurrentlyViewed).findItem(itemId);
+        }
+        if (dataHandler.getCurrentAccounts().size() == 0) {
+            return Optional.empty();
+        }
+        return accountWideTradeList.findItem(itemId, dataHandler.viewLoadedAccountData());
+    }
+
     public Duration viewAccumulatedTimeForCurrentView() {
         if (accountCurrentlyViewed.equals(ACCOUNT_WIDE)) {
-            return dataHandler.viewAllAccountData().stream().map(AccountData::getAccumulatedSessionTime).reduce(Duration.ZERO, (d1, d2) -> d1.plus(d2));
+            //accounts that aren't loaded yet haven't accumulated any session time since startup
+            return dataHandler.viewLoadedAccountData().stream().map(AccountData::getAccumulatedSessionTime).reduce(Duration.ZERO, (d1, d2) -> d1.plus(d2));
         } else {
             return dataHandler.viewAccountData(accountCurrentlyViewed).getAccumulatedSessionTime();
         }
@@ -436,12 +497,25 @@ public class FlippingPlugin extends Plugin {
         }
     }
 
+    /**
+     * Invoked when the stats panel's time interval changes, so that older history segments are loaded if the
+     * interval reaches back further than what's loaded. The stats panel is rebuilt again once they are.
+     *
+     * @param startOfInterval the start of the selected time interval
+     */
+    public void loadHistorySince(Instant startOfInterval) {
+        clientThread.invoke(() -> dataHandler.loadHistorySince(startOfInterval, () -> {
+            accountWideTradeList.invalidate();
+            statPanel.rebuild(viewTradesForCurrentView());
+        }));
+    }
+
     /**
      * Invoked when a user clicks the button to reset the session time in the statistics panel.
      */
     public void handleSessionTimeReset() {
         if (!accountCurrentlyViewed.equals(ACCOUNT_WIDE)) {
-            dataHandler.getAccountData(accountCurrentlyViewed).startNewSession();
+            dataHandler.getAccountState(accountCurrentlyViewed).startNewSession();
         }
     }
 
@@ -451,24 +525,28 @@ public class FlippingPlugin extends Plugin {
     }
 
     public void deleteRemovedItems(List<FlippingItem> currItems) {
+        List<FlippingItem> removedItems = new ArrayList<>();
         currItems.removeIf((item) ->
         {
+            boolean removed;
             if (item.getGeLimitResetTime() != null) {
                 Instant startOfRefresh = item.getGeLimitResetTime().minus(4, ChronoUnit.HOURS);
 
-                return !item.getValidFlippingPanelItem() && !item.hasValidOffers()
+                removed = !item.getValidFlippingPanelItem() && !item.hasValidOffers()
                         && (!Instant.now().isAfter(item.getGeLimitResetTime()) || item.getGeLimitResetTime().isBefore(startOfRefresh));
+            } else {
+                removed = !item.getValidFlippingPanelItem() && !item.hasValidOffers();
+            }
+            if (removed) {
+                removedItems.add(item);
             }
-            return !item.getValidFlippingPanelItem() && !item.hasValidOffers();
+            return removed;
         });
+        geLimitTracker.untrackAll(removedItems);
     }
 
     public void truncateTradeList() {
-        if (accountCurrentlyViewed.equals(ACCOUNT_WIDE)) {
-            dataHandler.getAllAccountData().forEach(accountData -> deleteRemovedItems(accountData.getTrades()));
-        } else {
-            deleteRemovedItems(getTradesForCurrentView());
-        }
+        updateCurrentView(accountData -> deleteRemovedItems(accountData.getTrades()));
     }
 
     /**
@@ -481,12 +559,35 @@ public class FlippingPlugin extends Plugin {
      */
     public void changeView(String selectedName) {
         log.info("changing view to {}", selectedName);
+        accountSelected = selectedName;
 
         List<FlippingItem> tradesListToDisplay;
+        if (!selectedName.equals(ACCOUNT_WIDE) && dataHandler.isUnloaded(selectedName) && !client.isClientThread()) {
+            //accounts are only loaded on the client thread, and this is the swing thread. Rather than hold up the
+            //panel until the account is loaded, switch to it once it is, unless another view was selected since then.
+            dataHandler.loadAccountInBackground(selectedName, executor, () -> {
+                if (selectedName.equals(accountSelected)) {
+                    changeView(selectedName);
+                }
+            });
+            return;
+        }
         if (selectedName.equals(ACCOUNT_WIDE)) {
+            if (dataHandler.hasUnloadedAccounts()) {
+                //the account wide list needs the full data of every account. Rather than hold up the panel until all
+                //of it is loaded, show the accounts that are loaded now and rebuild once the rest are.
+                dataHandler.loadUnloadedAccountsInBackground(executor, () -> {
+                    accountWideTradeList.invalidate();
+                    if (accountCurrentlyViewed.equals(ACCOUNT_WIDE)) {
+                        List<FlippingItem> accountWideList = createAccountWideList();
+                        statPanel.rebuild(accountWideList);
+                        flippingPanel.rebuild(accountWideList);
+                    }
+                });
+            }
             tradesListToDisplay = createAccountWideList();
         } else {
-            tradesListToDisplay = dataHandler.getAccountData(selectedName).getTrades();
+            tradesListToDisplay = dataHandler.viewAccountData(selectedName).getTrades();
         }
 
         accountCurrentlyViewed = selectedName;
@@ -523,7 +624,8 @@ public class FlippingPlugin extends Plugin {
      * @param fileName name of the file which was modified.
      */
     public void onDirectoryUpdate(String fileName) {
-        if (!fileName.contains(".json")) {
+        if (!fileName.contains(".json") && !fileName.endsWith(TradePersister.COMPACT_EXTENSION) &&
+                !fileName.endsWith(TradePersister.JOURNAL_EXTENSION)) {
             return;
         }
         String displayNameOfChangedAcc = fileName.split("\\.")[0];
@@ -541,30 +643,72 @@ public class FlippingPlugin extends Plugin {
             return;
         }
 
+        boolean journalChanged = fileName.endsWith(TradePersister.JOURNAL_EXTENSION);
         executor.schedule(() ->
         {
             //have to run on client thread cause loadAccount calls accountData.prepareForUse which uses the itemmanager
             clientThread.invokeLater(() -> {
                 log.info("second has passed, updating cache for {}", displayNameOfChangedAcc);
-                dataHandler.loadAccountData(displayNameOfChangedAcc);
-                if (!masterPanel.getViewSelectorItems().contains(displayNameOfChangedAcc)) {
-                    masterPanel.getAccountSelector().addItem(displayNameOfChangedAcc);
+                if (!journalChanged) {
+                    reloadAccount(displayNameOfChangedAcc);
+                    return;
                 }
+                //another client only appended to the journal, so only what it appended has to be applied
+                dataHandler.loadJournalDelta(displayNameOfChangedAcc, delta -> {
+                    if (delta != null) {
+                        onJournalDelta(displayNameOfChangedAcc, delta);
+                    } else {
+                        reloadAccount(displayNameOfChangedAcc);
+                    }
+                });
+            });
+        }, 1000, TimeUnit.MILLISECONDS);
+    }
 
-                if (dataHandler.getCurrentAccounts().size() > 1) {
-                    masterPanel.getAccountSelector().setVisible(true);
-                }
+    private void reloadAccount(String displayName) {
+        dataHandler.loadAccountData(displayName, () -> onAccountReloaded(displayName));
+    }
 
-                updateSinceLastAccountWideBuild = true;
+    private void onAccountReloaded(String displayName) {
+        if (!masterPanel.getViewSelectorItems().contains(displayName)) {
+            masterPanel.getAccountSelector().addItem(displayName);
+        }
 
-                //rebuild if you are currently looking at the account who's cache just got updated or the account wide view.
-                if (accountCurrentlyViewed.equals(ACCOUNT_WIDE) || accountCurrentlyViewed.equals(displayNameOfChangedAcc)) {
-                    List<FlippingItem> updatedList = viewTradesForCurrentView();
-                    flippingPanel.rebuild(updatedList);
-                    statPanel.rebuild(updatedList);
-                }
-            });
-        }, 1000, TimeUnit.MILLISECONDS);
+        if (dataHandler.getCurrentAccounts().size() > 1) {
+            masterPanel.getAccountSelector().setVisible(true);
+        }
+
+        accountWideTradeList.invalidate();
+
+        //rebuild if you are currently looking at the account who's cache just got updated or the account wide view.
+        if (accountCurrentlyViewed.equals(ACCOUNT_WIDE) || accountCurrentlyViewed.equals(displayName)) {
+            List<FlippingItem> updatedList = viewTradesForCurrentView();
+            flippingPanel.rebuild(updatedList);
+            statPanel.rebuild(updatedList);
+        }
+    }
+
+    /**
+     * Refreshes the panels of the items another client added offers for. Like when an offer comes in on this client,
+     * the flipping panel only needs a full rebuild if an item was added or margin checked, as both change the order of
+     * the panels.
+     */
+    private void onJournalDelta(String displayName, JournalDelta delta) {
+        if (delta.isEmpty()) {
+            return;
+        }
+        accountWideTradeList.itemsChanged(delta.getItemIds());
+
+        //the account wide view's items are updated in place, so it can be refreshed like the account's own view
+        if ((accountCurrentlyViewed.equals(ACCOUNT_WIDE) || accountCurrentlyViewed.equals(displayName)) && !delta.getOffers().isEmpty()) {
+            List<FlippingItem> updatedList = viewTradesForCurrentView();
+            if (delta.isAddedItems() || delta.getOffers().stream().anyMatch(OfferEvent::isMarginCheck)) {
+                flippingPanel.rebuild(updatedList);
+            } else {
+                flippingPanel.refreshPricesForFlippingItemPanels(delta.getItemIds());
+            }
+            statPanel.refreshItemPanels(delta.getItemIds(), updatedList);
+        }
     }
 
     /**
@@ -575,33 +719,11 @@ public class FlippingPlugin extends Plugin {
      * @return
      */
     private List<FlippingItem> createAccountWideList() {
-        //since this is an expensive operation, cache its results and only recompute it if there has been an update
-        //to one of the account's tradelists, (updateSinceLastAccountWideBuild is set in onGrandExchangeOfferChanged)
-        if (!updateSinceLastAccountWideBuild) {
-            return prevBuiltAccountWideList;
-        }
-
         if (dataHandler.getCurrentAccounts().size() == 0) {
             return new ArrayList<>();
         }
-
-        //take all flipping items from the account cache, regardless of account, and segregate them based on item name.
-        Map<Integer, List<FlippingItem>> groupedItems = dataHandler.viewAllAccountData().stream().
-                flatMap(accountData -> accountData.getTrades().stream()).
-                map(FlippingItem::clone).
-                collect(Collectors.groupingBy(FlippingItem::getItemId));
-
-        //take every list containing flipping items of the same type and reduce it to one merged flipping item and put that
-        //item in a final merged list
-        List<FlippingItem> mergedItems = groupedItems.values().stream().
-                map(list -> list.stream().reduce(FlippingItem::merge)).filter(Optional::isPresent).map(Optional::get).
-                collect(Collectors.toList());
-
-        mergedItems.sort(Collections.reverseOrder(Comparator.comparing(FlippingItem::getLatestActivityTime)));
-
-        updateSinceLastAccountWideBuild = false;
-        prevBuiltAccountWideList = mergedItems;
-        return mergedItems;
+        //accounts that aren't loaded yet are added once changeView has loaded them.
+        return accountWideTradeList.getTrades(dataHandler.viewLoadedAccountData());
     }
 
     /**
@@ -633,18 +755,29 @@ public class FlippingPlugin extends Plugin {
             long millisSinceLastSessionTimeUpdate = Instant.now().toEpochMilli() - lastSessionTimeUpdate.toEpochMilli();
             accumulatedSessionTime = accumulatedSessionTime.plus(millisSinceLastSessionTimeUpdate, ChronoUnit.MILLIS);
             lastSessionTimeUpdate = Instant.now();
-            dataHandler.getAccountData(currentlyLoggedInAccount).setAccumulatedSessionTime(accumulatedSessionTime);
-            dataHandler.getAccountData(currentlyLoggedInAccount).setLastSessionTimeUpdate(lastSessionTimeUpdate);
+            dataHandler.getAccountState(currentlyLoggedInAccount).setAccumulatedSessionTime(accumulatedSessionTime);
+            dataHandler.getAccountState(currentlyLoggedInAccount).setLastSessionTimeUpdate(lastSessionTimeUpdate);
 
             if (accountCurrentlyViewed.equals(ACCOUNT_WIDE) || accountCurrentlyViewed.equals(currentlyLoggedInAccount)) {
                 statPanel.updateSessionTimeDisplay(viewAccumulatedTimeForCurrentView());
             }
         } else if (currentlyLoggedInAccount != null) {
-            dataHandler.getAccountData(currentlyLoggedInAccount).setLastSessionTimeUpdate(null);
+            dataHandler.getAccountState(currentlyLoggedInAccount).setLastSessionTimeUpdate(null);
         }
     }
 
 
+    /**
+     * Saves changes made since data was last saved if the configured interval passed or enough offers came in.
+     * This is done on the client thread as that's where the data is changed, but it only copies what changed, the
+     * actual writing happens in the background.
+     */
+    private void checkpointData() {
+        Duration interval = Duration.ofMinutes(Math.max(1, config.checkpointInterval()));
+        int offerCount = Math.max(1, config.checkpointOfferCount());
+        clientThread.invoke(() -> dataHandler.checkpointIfNeeded(interval, offerCount));
+    }
+
     public void rebuildTradeTimers() {
         for (int slotIndex = 0; slotIndex < 8; slotIndex++) {
             SlotActivityTimer timer = dataHandler.viewAccountData(currentlyLoggedInAccount).getSlotTimers().get(slotIndex);
@@ -667,31 +800,28 @@ public class FlippingPlugin extends Plugin {
 
     public void setFavoriteOnAllAccounts(FlippingItem item, boolean favoriteStatus) {
         for (String accountName : dataHandler.getCurrentAccounts()) {
+            //avoids loading accounts that never traded the item
+            if (!dataHandler.hasItem(accountName, item.getItemId())) {
+                continue;
+            }
             AccountData account = dataHandler.viewAccountData(accountName);
-            account.
-                    getTrades().
-                    stream().
-                    filter(accountItem -> accountItem.getItemId() == item.getItemId()).
-                    findFirst().
-                    ifPresent(accountItem -> {
-                        accountItem.setFavorite(favoriteStatus);
-                        markAccountTradesAsHavingChanged(accountName);
-                    });
+            account.findItem(item.getItemId()).ifPresent(accountItem -> {
+                accountItem.setFavorite(favoriteStatus);
+                markAccountTradesAsHavingChanged(accountName);
+            });
         }
     }
 
     public void setFavoriteCodeOnAllAccounts(FlippingItem item, String favoriteCode) {
         for (String accountName : dataHandler.getCurrentAccounts()) {
+            if (!dataHandler.hasItem(accountName, item.getItemId())) {
+                continue;
+            }
             AccountData account = dataHandler.viewAccountData(accountName);
-            account.
-                    getTrades().
-                    stream().
-                    filter(accountItem -> accountItem.getItemId() == item.getItemId()).
-                    findFirst().
-                    ifPresent(accountItem -> {
-                        accountItem.setFavoriteCode(favoriteCode);
-                        markAccountTradesAsHavingChanged(accountName);
-                    });
+            account.findItem(item.getItemId()).ifPresent(accountItem -> {
+                accountItem.setFavoriteCode(favoriteCode);
+                markAccountTradesAsHavingChanged(accountName);
+            });
         }
     }
 
@@ -712,7 +842,7 @@ public class FlippingPlugin extends Plugin {
         if (currentlyLoggedInAccount == null) {
             return;
         }
-        Optional<FlippingItem> flippingItem = dataHandler.getAccountData(currentlyLoggedInAccount).getTrades().stream().filter(item -> item.getItemId() == selectedOffer.getItemId()).findFirst();
+        Optional<FlippingItem> flippingItem = dataHandler.getAccountData(currentlyLoggedInAccount).findItem(selectedOffer.getItemId());
         if (flippingItem.isPresent()) {
             flippingItem.get().updateHistory(selectedOffer);
             flippingItem.get().updateLatestProperties(selectedOffer);
@@ -744,23 +874,30 @@ public class FlippingPlugin extends Plugin {
         clientThread.invokeLater(() -> {
             Widget[] geHistoryTabWidgets = client.getWidget(383, 3).getDynamicChildren();
             List<OfferEvent> offerEvents = GeHistoryTabExtractor.convertWidgetsToOfferEvents(geHistoryTabWidgets);
-            List<List<OfferEvent>> matchingOffers = new ArrayList<>();
             offerEvents.forEach(o -> {
                 o.setItemName(itemManager.getItemComposition(o.getItemId()).getName());
                 o.setMadeBy(getCurrentlyLoggedInAccount());
-                matchingOffers.add(findOfferMatches(o, 5));
             });
+            List<List<OfferEvent>> matchingOffers = findOfferMatches(offerEvents, 5);
             geHistoryTabPanel.rebuild(offerEvents, matchingOffers, geHistoryTabWidgets, false);
             masterPanel.showView("ge history");
         });
     }
 
-    public List<OfferEvent> findOfferMatches(OfferEvent offerEvent, int limit) {
-        Optional<FlippingItem> flippingItem = dataHandler.getAccountData(currentlyLoggedInAccount).getTrades().stream().filter(item -> item.getItemId() == offerEvent.getItemId()).findFirst();
-        if (!flippingItem.isPresent()) {
-            return new ArrayList<>();
+    /**
+     * Finds the offers in the logged in account's history that could be duplicates of the offers scraped from the ge
+     * history tab.
+     *
+     * @return the potential duplicates of each offer, in the same order as the offers
+     */
+    public List<List<OfferEvent>> findOfferMatches(List<OfferEvent> offerEvents, int limit) {
+        AccountData accountData = dataHandler.getAccountData(currentlyLoggedInAccount);
+        List<List<OfferEvent>> matchingOffers = new ArrayList<>();
+        for (OfferEvent offerEvent : offerEvents) {
+            Optional<FlippingItem> flippingItem = accountData.findItem(offerEvent.getItemId());
+            matchingOffers.add(flippingItem.map(item -> item.getOfferMatches(offerEvent, limit)).orElseGet(ArrayList::new));
         }
-        return flippingItem.get().getOfferMatches(offerEvent, limit);
+        return matchingOffers;
     }
 
     public Font getFont() {
@@ -773,16 +910,10 @@ public class FlippingPlugin extends Plugin {
      * @param startOfInterval
      */
     public void invalidateOffers(Instant startOfInterval) {
-        if (accountCurrentlyViewed.equals(ACCOUNT_WIDE)) {
-            for (AccountData accountData : dataHandler.getAllAccountData()) {
-                accountData.getTrades().forEach(item -> item.invalidateOffers(item.getIntervalHistory(startOfInterval)));
-            }
-        } else {
-            getTradesForCurrentView().forEach(item -> item.invalidateOffers(item.getIntervalHistory(startOfInterval)));
-        }
-
-        updateSinceLastAccountWideBuild = true;
-        truncateTradeList();
+        updateCurrentView(accountData -> {
+            accountData.getTrades().forEach(item -> item.invalidateOffers(item.getIntervalHistory(startOfInterval)));
+            deleteRemovedItems(accountData.getTrades());
+        });
     }
 
     /**
@@ -790,15 +921,30 @@ public class FlippingPlugin extends Plugin {
      * reset button
      */
     public void setAllFlippingItemsAsHidden() {
+        updateCurrentView(accountData -> {
+            accountData.getTrades().forEach(item -> item.setValidFlippingPanelItem(false));
+            deleteRemovedItems(accountData.getTrades());
+        });
+    }
+
+    /**
+     * Changes the trades of the account currently viewed, or of every account in the account wide view, for the
+     * reset buttons. This runs on the swing thread, so the accounts are changed on the client thread once all of
+     * their history is loaded, after which the panels are rebuilt.
+     */
+    private void updateCurrentView(Consumer<AccountData> update) {
+        Runnable onUpdated = () -> {
+            accountWideTradeList.invalidate();
+            List<FlippingItem> trades = viewTradesForCurrentView();
+            statPanel.rebuild(trades);
+            flippingPanel.rebuild(trades);
+        };
         if (accountCurrentlyViewed.equals(ACCOUNT_WIDE)) {
-            for (AccountData accountData : dataHandler.getAllAccountData()) {
-                accountData.getTrades().forEach(item -> item.setValidFlippingPanelItem(false));
-            }
+            dataHandler.updateAllAccountData(executor, update, onUpdated);
         } else {
-            getTradesForCurrentView().forEach(flippingItem -> flippingItem.setValidFlippingPanelItem(false));
+            String displayName = accountCurrentlyViewed;
+            clientThread.invoke(() -> dataHandler.updateAccountData(displayName, update, onUpdated));
         }
-        updateSinceLastAccountWideBuild = true;
-        truncateTradeList();
     }
 
     public void exportToCsv(File parentDirectory, Instant startOfInterval, String startOfIntervalName) throws IOException {
@@ -873,15 +1019,29 @@ public class FlippingPlugin extends Plugin {
         };
     }
 
-    public void deleteAccount(String displayName) {
-        dataHandler.deleteAccount(displayName);
-        if (accountCurrentlyViewed.equals(displayName)) {
-            masterPanel.getAccountSelector().setSelectedItem(dataHandler.getCurrentAccounts().toArray()[0]);
-        }
-        if (dataHandler.getCurrentAccounts().size() < 2) {
-            masterPanel.getAccountSelector().setVisible(false);
-        }
-        masterPanel.getAccountSelector().removeItem(displayName);
+    /**
+     * Deletes an account on the client thread, as the settings panel deletes accounts from the swing thread but
+     * accounts are only changed on the client thread. The account selector is then updated back on the swing thread.
+     *
+     * @param displayName the account to delete
+     * @param onDeleted   run on the swing thread once the account is deleted
+     */
+    public void deleteAccount(String displayName, Runnable onDeleted) {
+        clientThread.invoke(() -> {
+            dataHandler.deleteAccount(displayName);
+            accountWideTradeList.invalidate();
+            Set<String> remainingAccounts = dataHandler.getCurrentAccounts();
+            SwingUtilities.invokeLater(() -> {
+                if (accountCurrentlyViewed.equals(displayName)) {
+                    masterPanel.getAccountSelector().setSelectedItem(remainingAccounts.toArray()[0]);
+                }
+                if (remainingAccounts.size() < 2) {
+                    masterPanel.getAccountSelector().setVisible(false);
+                }
+                masterPanel.getAccountSelector().removeItem(displayName);
+                onDeleted.run();
+            });
+        });
     }
 
     private ScheduledFuture startSlotTimers() {
@@ -952,6 +1112,11 @@ public class FlippingPlugin extends Plugin {
                 }
             }
 
+            if (event.getKey().equals("compactTradeFiles")) {
+                TradePersister.setCompactFiles(config.compactTradeFiles());
+                dataHandler.markLoadedAccountsAsHavingChanged();
+            }
+
             statPanel.rebuild(viewTradesForCurrentView());
             flippingPanel.rebuild(viewTradesForCurrentView());
         }
@@ -87,7 +87,7 @@ public class GameUiChangesHandler {
         plugin.getClientThread().invokeLater(() ->
         {
             OfferEditor flippingWidget = new OfferEditor(client.getWidget(WidgetInfo.CHATBOX_CONTAINER), client);
-            Optional<FlippingItem> selectedItem = plugin.viewTradesForCurrentView().stream().filter(item -> item.getItemId() == client.getVar(CURRENT_GE_ITEM)).findFirst();
+            Optional<FlippingItem> selectedItem = plugin.findItemInCurrentView(client.getVar(CURRENT_GE_ITEM));
 
             String chatInputText = client.getWidget(WidgetInfo.CHATBOX_TITLE).getText();
             String offerText = client.getWidget(WidgetInfo.GRAND_EXCHANGE_OFFER_CONTAINER).getChild(GE_OFFER_INIT_STATE_CHILD_ID).getText();
@@ -195,7 +195,7 @@ public class GameUiChangesHandler {
 
     private void highlightOffer() {
         highlightedItemId = plugin.getClient().getVar(CURRENT_GE_ITEM);
-        Optional<FlippingItem> itemInHistory = plugin.viewTradesForCurrentView().stream().filter(item -> item.getItemId() == highlightedItemId && item.getValidFlippingPanelItem()).findFirst();
+        Optional<FlippingItem> itemInHistory = plugin.findItemInCurrentView(highlightedItemId).filter(FlippingItem::getValidFlippingPanelItem);
         if (itemInHistory.isPresent()) {
             highlightedItem = itemInHistory;
         }
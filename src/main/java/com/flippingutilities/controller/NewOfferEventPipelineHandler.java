@@ -1,5 +1,6 @@
 package com.flippingutilities.controller;
 
+import com.flippingutilities.model.AccountData;
 import com.flippingutilities.model.FlippingItem;
 import com.flippingutilities.model.OfferEvent;
 import com.flippingutilities.ui.widgets.SlotActivityTimer;
@@ -16,6 +17,9 @@ import java.util.*;
 public class NewOfferEventPipelineHandler {
     FlippingPlugin plugin;
 
+    //the screened offers that came in during the current tick, which are added to the trades lists once it's over
+    private final List<OfferEvent> pendingOffers = new ArrayList<>();
+
     NewOfferEventPipelineHandler(FlippingPlugin plugin) {
         this.plugin = plugin;
     }
@@ -52,7 +56,7 @@ public class NewOfferEventPipelineHandler {
         onNewOfferEvent(newOfferEvent);
     }
 
-    public void onNewOfferEvent(OfferEvent newOfferEvent) {
+    public synchronized void onNewOfferEvent(OfferEvent newOfferEvent) {
         String currentlyLoggedInAccount = plugin.getCurrentlyLoggedInAccount();
         if (currentlyLoggedInAccount != null) {
             newOfferEvent.setMadeBy(currentlyLoggedInAccount);
@@ -64,51 +68,83 @@ public class NewOfferEventPipelineHandler {
             return;
         }
 
-        OfferEvent finalizedOfferEvent = screenedOfferEvent.get();
-
-        List<FlippingItem> currentlyLoggedInAccountsTrades = plugin.getDataHandler().getAccountData(currentlyLoggedInAccount).getTrades();
-
-        Optional<FlippingItem> flippingItem = currentlyLoggedInAccountsTrades.stream().filter(item -> item.getItemId() == finalizedOfferEvent.getItemId()).findFirst();
+        pendingOffers.add(screenedOfferEvent.get());
+    }
 
-        updateTradesList(currentlyLoggedInAccountsTrades, flippingItem, finalizedOfferEvent.clone());
+    /**
+     * Adds the offers that came in since this was last called to the trades lists, and refreshes the panels once for
+     * all of them rather than once for each offer. Many offers come in on the same tick when logging in or when
+     * several slots fill at once. This is called on every game tick and whenever the offers have to be in the
+     * trades lists right away, like when logging out.
+     */
+    public synchronized void applyPendingOffers() {
+        if (pendingOffers.isEmpty()) {
+            return;
+        }
 
-        plugin.setUpdateSinceLastAccountWideBuild(true);
+        Set<String> accounts = new HashSet<>();
+        Set<Integer> changedItemIds = new LinkedHashSet<>();
+        boolean itemsAdded = false;
+        boolean marginChecked = false;
+        for (OfferEvent offer : pendingOffers) {
+            AccountData accountData = plugin.getDataHandler().getAccountState(offer.getMadeBy());
+            itemsAdded |= !accountData.findItem(offer.getItemId()).isPresent();
+            marginChecked |= offer.isMarginCheck();
+
+            OfferEvent offerForHistory = offer.clone();
+            FlippingItem updatedItem = accountData.addOffer(offerForHistory, () -> createFlippingItem(offerForHistory));
+            plugin.getDataHandler().journalOffer(offer.getMadeBy(), updatedItem.getItemName(), offerForHistory);
+            plugin.getGeLimitTracker().track(updatedItem);
+
+            accounts.add(offer.getMadeBy());
+            changedItemIds.add(updatedItem.getItemId());
+        }
+        pendingOffers.clear();
 
-        rebuildDisplayAfterOfferEvent(flippingItem, finalizedOfferEvent);
+        plugin.getAccountWideTradeList().itemsChanged(changedItemIds);
+        rebuildDisplayAfterOffers(accounts, changedItemIds, itemsAdded, marginChecked);
     }
 
     /**
      * There is no point rebuilding either the stats panel or flipping panel when the user is looking at the trades list of
-     * one of their accounts that isn't logged in as that trades list won't be being updated anyway.
+     * one of their accounts that the offers aren't for as that trades list won't be being updated anyway.
      * <p>
-     * Only rebuild flipping panel if the FlippingItem is not already present or if the offer is a margin check. We need to rebuild
-     * when the item isn't present as that means a new FlippingItemPanel had to be created to represent the
-     * new FlippingItem. We also need to rebuild if the offer is a margin check because a margin check offer causes
+     * Only rebuild flipping panel if a FlippingItem was added or if one of the offers is a margin check. We need to
+     * rebuild when an item was added as that means a new FlippingItemPanel had to be created to represent the
+     * new FlippingItem. We also need to rebuild if an offer is a margin check because a margin check offer causes
      * a reordering of the FlippingItemPanels as the FlippingItemPanel representing the recently margin checked item
      * floats to the top.
      * <p>
-     * In the case when the FlippingItem is present and the offer is not a margin check, we don't have to do a full
-     * flipping panel rebuild as we only update the Jlabels that specify the latest buy/sell price. No new panels
-     * are created and nothing is reordered, hence a full rebuild would be wasteful.
+     * Otherwise we don't have to do a full flipping panel rebuild as we only update the Jlabels that specify the
+     * latest buy/sell price of the items that changed. No new panels are created and nothing is reordered, hence a
+     * full rebuild would be wasteful.
+     * <p>
+     * The same goes for the stats panel, which only refreshes the panels of the items that changed and the totals
+     * when no item was added. It still rebuilds if an item moved to a different place in the sort order.
      *
-     * @param flippingItem represents whether the FlippingItem existed in the currently logged in account's tradeslist when
-     *                     the offer came in.
-     * @param offerEvent   offer event just received
+     * @param accounts       the accounts the offers are for
+     * @param changedItemIds the items the offers are for
+     * @param itemsAdded     whether any of the offers added an item to its account's trades list
+     * @param marginChecked  whether any of the offers is a margin check
      */
-    private void rebuildDisplayAfterOfferEvent(Optional<FlippingItem> flippingItem, OfferEvent offerEvent) {
-
-        if (!(plugin.getAccountCurrentlyViewed().equals(plugin.getCurrentlyLoggedInAccount()) ||
+    private void rebuildDisplayAfterOffers(Set<String> accounts, Set<Integer> changedItemIds, boolean itemsAdded, boolean marginChecked) {
+        if (!(accounts.contains(plugin.getAccountCurrentlyViewed()) ||
                 plugin.getAccountCurrentlyViewed().equals(FlippingPlugin.ACCOUNT_WIDE))) {
             return;
         }
 
-        if (!flippingItem.isPresent() || flippingItem.isPresent() && offerEvent.isMarginCheck()) {
-            plugin.getFlippingPanel().rebuild(plugin.viewTradesForCurrentView());
-        } else if (flippingItem.isPresent() && !offerEvent.isMarginCheck()) {
-            plugin.getFlippingPanel().refreshPricesForFlippingItemPanel(flippingItem.get().getItemId());
+        List<FlippingItem> trades = plugin.viewTradesForCurrentView();
+        if (itemsAdded || marginChecked) {
+            plugin.getFlippingPanel().rebuild(trades);
+        } else {
+            plugin.getFlippingPanel().refreshPricesForFlippingItemPanels(changedItemIds);
         }
 
-        plugin.getStatPanel().rebuild(plugin.viewTradesForCurrentView());
+        if (itemsAdded) {
+            plugin.getStatPanel().rebuild(trades);
+        } else {
+            plugin.getStatPanel().refreshItemPanels(changedItemIds, trades);
+        }
     }
 
     /**
@@ -124,8 +160,8 @@ public class NewOfferEventPipelineHandler {
     public Optional<OfferEvent> screenOfferEvent(OfferEvent newOfferEvent) {
         //TODO this method can probably handle the different states in a more elegant manner...
         plugin.getSlotsPanel().update(newOfferEvent);
-        Map<Integer, OfferEvent> lastOfferEventForEachSlot = plugin.getDataHandler().getAccountData(plugin.getCurrentlyLoggedInAccount()).getLastOffers();
-        List<SlotActivityTimer> slotActivityTimers = plugin.getDataHandler().getAccountData(plugin.getCurrentlyLoggedInAccount()).getSlotTimers();
+        Map<Integer, OfferEvent> lastOfferEventForEachSlot = plugin.getDataHandler().getAccountState(plugin.getCurrentlyLoggedInAccount()).getLastOffers();
+        List<SlotActivityTimer> slotActivityTimers = plugin.getDataHandler().getAccountState(plugin.getCurrentlyLoggedInAccount()).getSlotTimers();
         OfferEvent lastOfferEvent = lastOfferEventForEachSlot.get(newOfferEvent.getSlot());
 
         if (newOfferEvent.isCausedByEmptySlot() && newOfferEvent.isBeforeLogin()) {
@@ -207,53 +243,19 @@ public class NewOfferEventPipelineHandler {
     }
 
     /**
-     * This method updates the given trade list in response to an OfferEvent
-     *
-     * @param trades       the trades list to update
-     * @param flippingItem the flipping item to be updated in the tradeslist, if it even exists
-     * @param newOffer     new offer that just came in
-     */
-    private void updateTradesList(List<FlippingItem> trades, Optional<FlippingItem> flippingItem, OfferEvent newOffer) {
-        if (flippingItem.isPresent()) {
-            FlippingItem item = flippingItem.get();
-            if (newOffer.isMarginCheck()) {
-                trades.remove(item);
-                trades.add(0, item);
-            }
-            //if a user buys/sells an item they previously deleted from the flipping panel, show the panel again.
-            if (!item.getValidFlippingPanelItem()) {
-                item.setValidFlippingPanelItem(true);
-                trades.remove(item);
-                trades.add(0, item);
-            }
-
-            item.updateHistory(newOffer);
-            item.updateLatestProperties(newOffer);
-        } else {
-            addToTradesList(trades, newOffer);
-        }
-    }
-
-    /**
-     * Constructs a FlippingItem, the data structure that represents an item the user is currently flipping, and
-     * adds it to the given trades list. This method is invoked when we receive an offer event for an item that isn't
-     * currently present in the trades list.
+     * Constructs a FlippingItem, the data structure that represents an item the user is currently flipping. This method
+     * is invoked when we receive an offer event for an item that isn't currently present in the trades list.
      *
-     * @param tradesList the trades list to be updated
-     * @param newOffer   the offer to update the trade list with
+     * @param newOffer the offer the flipping item is being created for
+     * @return the new flipping item, without the offer in its history yet
      */
-    private void addToTradesList(List<FlippingItem> tradesList, OfferEvent newOffer) {
+    private FlippingItem createFlippingItem(OfferEvent newOffer) {
         int tradeItemId = newOffer.getItemId();
         String itemName = plugin.getItemManager().getItemComposition(tradeItemId).getName();
 
         ItemStats itemStats = plugin.getItemManager().getItemStats(tradeItemId, false);
         int geLimit = itemStats != null ? itemStats.getGeLimit() : 0;
 
-        FlippingItem flippingItem = new FlippingItem(tradeItemId, itemName, geLimit, plugin.getCurrentlyLoggedInAccount());
-        flippingItem.setValidFlippingPanelItem(true);
-        flippingItem.updateHistory(newOffer);
-        flippingItem.updateLatestProperties(newOffer);
-
-        tradesList.add(0, flippingItem);
+        return new FlippingItem(tradeItemId, itemName, geLimit, newOffer.getMadeBy());
     }
 }
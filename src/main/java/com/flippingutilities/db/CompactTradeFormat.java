@@ -0,0 +1,401 @@
+package com.flippingutilities.db;
+
+import com.flippingutilities.model.AccountData;
+import com.flippingutilities.model.FlippingItem;
+import com.flippingutilities.model.HistoryManager;
+import com.flippingutilities.model.OfferEvent;
+import com.google.gson.Gson;
+import net.runelite.api.GrandExchangeOfferState;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A binary encoding of an account's trades that is a fraction of the size of the JSON one and much faster to read and
+ * write, as nothing has to be parsed or looked up by name. Every int is written as a zigzag varint, so the small
+ * quantities, ticks and slots that make up most of an offer take a byte each. An offer's boolean fields, slot and
+ * state are packed into two bytes.
+ * <p>
+ * The account's state apart from its trades (last offers, slot timers, session time) is small and its shape changes
+ * more often, so it is kept as JSON inside the file.
+ * <p>
+ * Files start with {@link #MAGIC} followed by a version byte, so they can be told apart from JSON files when read.
+ */
+public class CompactTradeFormat
+{
+	private static final byte[] MAGIC = {'F', 'U', 'T', 'F'};
+
+	private static final int VERSION = 1;
+
+	//the codes of the states are written to disk, so new states can only be added to the end. Code 0 is a null state.
+	private static final List<GrandExchangeOfferState> STATES = Arrays.asList(
+		null,
+		GrandExchangeOfferState.EMPTY,
+		GrandExchangeOfferState.CANCELLED_BUY,
+		GrandExchangeOfferState.CANCELLED_SELL,
+		GrandExchangeOfferState.BUYING,
+		GrandExchangeOfferState.BOUGHT,
+		GrandExchangeOfferState.SELLING,
+		GrandExchangeOfferState.SOLD);
+
+	private static final int BUY = 1;
+	private static final int VALID_OFFER_EVENT = 1 << 1;
+	private static final int BEFORE_LOGIN = 1 << 2;
+	private static final int HAS_TIME = 1 << 3;
+	private static final int HAS_TRADE_STARTED_AT = 1 << 4;
+
+	//slots from -1 (offers added from the ge history) to 13 are packed with the state, others follow it as a varint
+	private static final int SLOT_IN_VARINT = 15;
+
+	private static final int FAVORITE = 1;
+	private static final int VALID_FLIPPING_PANEL_ITEM_SET = 1 << 1;
+	private static final int VALID_FLIPPING_PANEL_ITEM = 1 << 2;
+
+	private final Gson gson;
+
+	/**
+	 * @param gson used for the part of the account's data that is kept as JSON
+	 */
+	public CompactTradeFormat(Gson gson)
+	{
+		this.gson = gson;
+	}
+
+	/**
+	 * Checks whether a stream holds data in this format without consuming any of it.
+	 *
+	 * @param in a stream that supports mark/reset
+	 */
+	public static boolean isCompact(InputStream in) throws IOException
+	{
+		in.mark(MAGIC.length);
+		try
+		{
+			for (byte b : MAGIC)
+			{
+				if (in.read() != (b & 0xFF))
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+		finally
+		{
+			in.reset();
+		}
+	}
+
+	/**
+	 * Writes an account's data. Its trades are written in the compact format, everything else as JSON.
+	 */
+	public void writeAccount(DataOutputStream out, AccountData data) throws IOException
+	{
+		AccountData state = data.copyWithoutTrades();
+		state.setJournalSequence(data.getJournalSequence());
+		state.setSegmentedBefore(data.getSegmentedBefore());
+		writeHeader(out);
+		writeString(out, gson.toJson(state));
+		writeItems(out, data.getTrades());
+	}
+
+	public AccountData readAccount(DataInputStream in) throws IOException
+	{
+		readHeader(in);
+		String state = readString(in);
+		AccountData data = state == null ? new AccountData() : gson.fromJson(state, AccountData.class);
+		data.setTrades(readItems(in));
+		return data;
+	}
+
+	/**
+	 * Writes a list of items without any account state, which is what history segments hold.
+	 */
+	public void writeItemList(DataOutputStream out, List<FlippingItem> items) throws IOException
+	{
+		writeHeader(out);
+		writeString(out, null);
+		writeItems(out, items);
+	}
+
+	public List<FlippingItem> readItemList(DataInputStream in) throws IOException
+	{
+		readHeader(in);
+		readString(in);
+		return readItems(in);
+	}
+
+	private static void writeHeader(DataOutputStream out) throws IOException
+	{
+		out.write(MAGIC);
+		out.writeByte(VERSION);
+	}
+
+	private static void readHeader(DataInputStream in) throws IOException
+	{
+		byte[] magic = new byte[MAGIC.length];
+		in.readFully(magic);
+		if (!Arrays.equals(magic, MAGIC))
+		{
+			throw new IOException("not a compact trade file");
+		}
+		int version = in.readUnsignedByte();
+		if (version > VERSION)
+		{
+			throw new IOException("compact trade file is version " + version + ", only up to " + VERSION + " is supported");
+		}
+	}
+
+	private static void writeItems(DataOutputStream out, List<FlippingItem> items) throws IOException
+	{
+		writeVarint(out, items.size());
+		for (FlippingItem item : items)
+		{
+			writeVarint(out, item.getItemId());
+			writeString(out, item.getItemName());
+			writeVarint(out, item.getTotalGELimit());
+			writeString(out, item.getFlippedBy());
+			int flags = item.isFavorite() ? FAVORITE : 0;
+			if (item.getValidFlippingPanelItem() != null)
+			{
+				flags |= VALID_FLIPPING_PANEL_ITEM_SET;
+				flags |= item.getValidFlippingPanelItem() ? VALID_FLIPPING_PANEL_ITEM : 0;
+			}
+			out.writeByte(flags);
+			writeString(out, item.getFavoriteCode());
+
+			HistoryManager history = item.getHistory() == null ? new HistoryManager() : item.getHistory();
+			writeInstant(out, history.getNextGeLimitRefresh());
+			writeVarint(out, history.getItemsBoughtThisLimitWindow());
+			writeVarint(out, history.getItemsBoughtThroughCompleteOffers());
+			List<OfferEvent> offers = history.getCompressedOfferEvents();
+			writeVarint(out, offers.size());
+			for (OfferEvent offer : offers)
+			{
+				writeOffer(out, offer);
+			}
+		}
+	}
+
+	private static List<FlippingItem> readItems(DataInputStream in) throws IOException
+	{
+		int itemCount = readVarint(in);
+		List<FlippingItem> items = new ArrayList<>(itemCount);
+		for (int i = 0; i < itemCount; i++)
+		{
+			int itemId = readVarint(in);
+			String itemName = readString(in);
+			int totalGeLimit = readVarint(in);
+			String flippedBy = readString(in);
+			int flags = in.readUnsignedByte();
+			Boolean validFlippingPanelItem = (flags & VALID_FLIPPING_PANEL_ITEM_SET) == 0 ? null : (flags & VALID_FLIPPING_PANEL_ITEM) != 0;
+			String favoriteCode = readString(in);
+
+			Instant nextGeLimitRefresh = readInstant(in);
+			int itemsBoughtThisLimitWindow = readVarint(in);
+			int itemsBoughtThroughCompleteOffers = readVarint(in);
+			int offerCount = readVarint(in);
+			List<OfferEvent> offers = new ArrayList<>(offerCount);
+			for (int j = 0; j < offerCount; j++)
+			{
+				offers.add(readOffer(in));
+			}
+
+			items.add(new FlippingItem(
+				itemId,
+				itemName,
+				totalGeLimit,
+				new HistoryManager(offers, nextGeLimitRefresh, itemsBoughtThisLimitWindow, itemsBoughtThroughCompleteOffers),
+				flippedBy,
+				validFlippingPanelItem,
+				(flags & FAVORITE) != 0,
+				favoriteCode,
+				null,
+				null,
+				null,
+				null,
+				null,
+				null));
+		}
+		return items;
+	}
+
+	private static void writeOffer(DataOutputStream out, OfferEvent offer) throws IOException
+	{
+		int flags = 0;
+		flags |= offer.isBuy() ? BUY : 0;
+		flags |= offer.isValidOfferEvent() ? VALID_OFFER_EVENT : 0;
+		flags |= offer.isBeforeLogin() ? BEFORE_LOGIN : 0;
+		flags |= offer.getTime() != null ? HAS_TIME : 0;
+		flags |= offer.getTradeStartedAt() != null ? HAS_TRADE_STARTED_AT : 0;
+		out.writeByte(flags);
+
+		int slot = offer.getSlot();
+		boolean slotInVarint = slot < -1 || slot >= SLOT_IN_VARINT - 1;
+		int stateCode = Math.max(0, STATES.indexOf(offer.getState()));
+		out.writeByte(stateCode << 4 | (slotInVarint ? SLOT_IN_VARINT : slot + 1));
+		if (slotInVarint)
+		{
+			writeVarint(out, slot);
+		}
+
+		writeVarint(out, offer.getItemId());
+		writeVarint(out, offer.getCurrentQuantityInTrade());
+		writeVarint(out, offer.getPrice());
+		writeVarint(out, offer.getTickArrivedAt());
+		writeVarint(out, offer.getTicksSinceFirstOffer());
+		writeVarint(out, offer.getTotalQuantityInTrade());
+		if (offer.getTime() != null)
+		{
+			writeTime(out, offer.getTime());
+		}
+		if (offer.getTradeStartedAt() != null)
+		{
+			writeTime(out, offer.getTradeStartedAt());
+		}
+	}
+
+	private static OfferEvent readOffer(DataInputStream in) throws IOException
+	{
+		int flags = in.readUnsignedByte();
+		int packed = in.readUnsignedByte();
+		int stateCode = packed >>> 4;
+		int slot = (packed & 0x0F) == SLOT_IN_VARINT ? readVarint(in) : (packed & 0x0F) - 1;
+
+		int itemId = readVarint(in);
+		int currentQuantityInTrade = readVarint(in);
+		int price = readVarint(in);
+		int tickArrivedAt = readVarint(in);
+		int ticksSinceFirstOffer = readVarint(in);
+		int totalQuantityInTrade = readVarint(in);
+		Instant time = (flags & HAS_TIME) != 0 ? readTime(in) : null;
+		Instant tradeStartedAt = (flags & HAS_TRADE_STARTED_AT) != 0 ? readTime(in) : null;
+
+		return new OfferEvent(
+			(flags & BUY) != 0,
+			itemId,
+			currentQuantityInTrade,
+			price,
+			time,
+			slot,
+			//same as gson, a state we don't know about is read as null
+			stateCode < STATES.size() ? STATES.get(stateCode) : null,
+			tickArrivedAt,
+			ticksSinceFirstOffer,
+			totalQuantityInTrade,
+			(flags & VALID_OFFER_EVENT) != 0,
+			tradeStartedAt,
+			null,
+			(flags & BEFORE_LOGIN) != 0,
+			null,
+			0,
+			0);
+	}
+
+	private static void writeInstant(DataOutputStream out, Instant instant) throws IOException
+	{
+		out.writeBoolean(instant != null);
+		if (instant != null)
+		{
+			writeTime(out, instant);
+		}
+	}
+
+	private static Instant readInstant(DataInputStream in) throws IOException
+	{
+		return in.readBoolean() ? readTime(in) : null;
+	}
+
+	/**
+	 * Writes the epoch second and then the nanos. Offer times almost always have millisecond precision, in which case
+	 * the millis are written instead of the nanos, as they fit in two bytes rather than four or five.
+	 */
+	private static void writeTime(DataOutputStream out, Instant time) throws IOException
+	{
+		writeVarLong(out, time.getEpochSecond());
+		int nanos = time.getNano();
+		if (nanos % 1_000_000 == 0)
+		{
+			writeVarint(out, nanos / 1_000_000 << 1);
+		}
+		else
+		{
+			writeVarint(out, nanos << 1 | 1);
+		}
+	}
+
+	private static Instant readTime(DataInputStream in) throws IOException
+	{
+		long seconds = readVarLong(in);
+		int subSecond = readVarint(in);
+		int nanos = (subSecond & 1) == 0 ? (subSecond >>> 1) * 1_000_000 : subSecond >>> 1;
+		return Instant.ofEpochSecond(seconds, nanos);
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException
+	{
+		if (s == null)
+		{
+			writeVarint(out, -1);
+			return;
+		}
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		writeVarint(out, bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException
+	{
+		int length = readVarint(in);
+		if (length < 0)
+		{
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeVarint(DataOutputStream out, int value) throws IOException
+	{
+		writeVarLong(out, value);
+	}
+
+	private static int readVarint(DataInputStream in) throws IOException
+	{
+		return (int) readVarLong(in);
+	}
+
+	private static void writeVarLong(DataOutputStream out, long value) throws IOException
+	{
+		long zigzag = (value << 1) ^ (value >> 63);
+		while ((zigzag & ~0x7FL) != 0)
+		{
+			out.writeByte((int) (zigzag & 0x7F) | 0x80);
+			zigzag >>>= 7;
+		}
+		out.writeByte((int) zigzag);
+	}
+
+	private static long readVarLong(DataInputStream in) throws IOException
+	{
+		long zigzag = 0;
+		for (int shift = 0; shift < 64; shift += 7)
+		{
+			int b = in.readUnsignedByte();
+			zigzag |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+			{
+				return (zigzag >>> 1) ^ -(zigzag & 1);
+			}
+		}
+		throw new IOException("malformed varint");
+	}
+}
@@ -0,0 +1,48 @@
+package com.flippingutilities.db;
+
+import lombok.Value;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+
+/**
+ * Identifies the contents of a file, so that a file being written again can be told apart from it actually changing.
+ * Unlike the time a file was last modified, this doesn't depend on how precise the file system's timestamps are and
+ * stays the same when a file is rewritten with the same contents.
+ */
+@Value
+public class FileFingerprint
+{
+	long size;
+	long checksum;
+
+	/**
+	 * The whole file is checksummed rather than just its start or end, as a snapshot can change somewhere in the
+	 * middle without changing size. Checksumming even the largest trade files only takes a few milliseconds.
+	 *
+	 * @return the fingerprint of the file, or null if it doesn't exist or can't be read
+	 */
+	public static FileFingerprint of(File file)
+	{
+		CRC32 crc = new CRC32();
+		long size = 0;
+		try (InputStream in = new FileInputStream(file))
+		{
+			byte[] buffer = new byte[65536];
+			int read;
+			while ((read = in.read(buffer)) != -1)
+			{
+				crc.update(buffer, 0, read);
+				size += read;
+			}
+		}
+		catch (IOException e)
+		{
+			return null;
+		}
+		return new FileFingerprint(size, crc.getValue());
+	}
+}
@@ -0,0 +1,155 @@
+package com.flippingutilities.db;
+
+import com.flippingutilities.model.FlippingItem;
+import com.flippingutilities.model.HistoryManager;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Reads and writes a {@link FlippingItem} using the same keys as its @SerializedName annotations. The item's
+ * history is handed off to the history adapter from the same Gson instance, which in turn uses
+ * {@link OfferEventAdapter} for the offers.
+ */
+public class FlippingItemAdapter extends TypeAdapter<FlippingItem>
+{
+	public static final TypeAdapterFactory FACTORY = new TypeAdapterFactory()
+	{
+		@Override
+		@SuppressWarnings("unchecked")
+		public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type)
+		{
+			if (type.getRawType() != FlippingItem.class)
+			{
+				return null;
+			}
+			return (TypeAdapter<T>) new FlippingItemAdapter(gson.getAdapter(HistoryManager.class));
+		}
+	};
+
+	private final TypeAdapter<HistoryManager> historyAdapter;
+
+	private FlippingItemAdapter(TypeAdapter<HistoryManager> historyAdapter)
+	{
+		this.historyAdapter = historyAdapter;
+	}
+
+	@Override
+	public void write(JsonWriter out, FlippingItem item) throws IOException
+	{
+		if (item == null)
+		{
+			out.nullValue();
+			return;
+		}
+		out.beginObject();
+		out.name("id").value(item.getItemId());
+		if (item.getItemName() != null)
+		{
+			out.name("name").value(item.getItemName());
+		}
+		out.name("tGL").value(item.getTotalGELimit());
+		if (item.getHistory() != null)
+		{
+			out.name("h");
+			historyAdapter.write(out, item.getHistory());
+		}
+		if (item.getFlippedBy() != null)
+		{
+			out.name("fB").value(item.getFlippedBy());
+		}
+		if (item.getValidFlippingPanelItem() != null)
+		{
+			out.name("vFPI").value(item.getValidFlippingPanelItem());
+		}
+		out.name("favorite").value(item.isFavorite());
+		if (item.getFavoriteCode() != null)
+		{
+			out.name("favoriteCode").value(item.getFavoriteCode());
+		}
+		out.endObject();
+	}
+
+	@Override
+	public FlippingItem read(JsonReader in) throws IOException
+	{
+		if (in.peek() == JsonToken.NULL)
+		{
+			in.nextNull();
+			return null;
+		}
+
+		int itemId = 0;
+		String itemName = null;
+		int totalGeLimit = 0;
+		//same defaults as the field initializers, which gson also ends up using as FlippingItem has a no-args constructor
+		HistoryManager history = new HistoryManager();
+		String flippedBy = null;
+		Boolean validFlippingPanelItem = null;
+		boolean favorite = false;
+		String favoriteCode = "1";
+
+		in.beginObject();
+		while (in.hasNext())
+		{
+			String name = in.nextName();
+			if (in.peek() == JsonToken.NULL)
+			{
+				in.nextNull();
+				continue;
+			}
+			switch (name)
+			{
+				case "id":
+					itemId = in.nextInt();
+					break;
+				case "name":
+					itemName = in.nextString();
+					break;
+				case "tGL":
+					totalGeLimit = in.nextInt();
+					break;
+				case "h":
+					history = historyAdapter.read(in);
+					break;
+				case "fB":
+					flippedBy = in.nextString();
+					break;
+				case "vFPI":
+					validFlippingPanelItem = in.nextBoolean();
+					break;
+				case "favorite":
+					favorite = in.nextBoolean();
+					break;
+				case "favoriteCode":
+					favoriteCode = in.nextString();
+					break;
+				default:
+					in.skipValue();
+			}
+		}
+		in.endObject();
+
+		return new FlippingItem(
+			itemId,
+			itemName,
+			totalGeLimit,
+			history,
+			flippedBy,
+			validFlippingPanelItem,
+			favorite,
+			favoriteCode,
+			null,
+			null,
+			null,
+			null,
+			null,
+			null);
+	}
+}
@@ -0,0 +1,60 @@
+package com.flippingutilities.db;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.time.Instant;
+
+/**
+ * Reads and writes an {@link Instant} in the same {"seconds": .., "nanos": ..} shape that Gson produces for it
+ * reflectively, so existing trade files keep loading. Doing it by hand avoids reflection on every one of the
+ * (potentially hundreds of thousands of) instants in an account's history.
+ */
+public class InstantAdapter extends TypeAdapter<Instant>
+{
+	@Override
+	public void write(JsonWriter out, Instant instant) throws IOException
+	{
+		if (instant == null)
+		{
+			out.nullValue();
+			return;
+		}
+		out.beginObject();
+		out.name("seconds").value(instant.getEpochSecond());
+		out.name("nanos").value(instant.getNano());
+		out.endObject();
+	}
+
+	@Override
+	public Instant read(JsonReader in) throws IOException
+	{
+		if (in.peek() == JsonToken.NULL)
+		{
+			in.nextNull();
+			return null;
+		}
+		long seconds = 0;
+		int nanos = 0;
+		in.beginObject();
+		while (in.hasNext())
+		{
+			switch (in.nextName())
+			{
+				case "seconds":
+					seconds = in.nextLong();
+					break;
+				case "nanos":
+					nanos = in.nextInt();
+					break;
+				default:
+					in.skipValue();
+			}
+		}
+		in.endObject();
+		return Instant.ofEpochSecond(seconds, nanos);
+	}
+}
@@ -0,0 +1,30 @@
+package com.flippingutilities.db;
+
+import com.flippingutilities.model.OfferEvent;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * What changed in an account's data from applying the journal entries another client appended, so that only the
+ * parts of the UI showing those changes have to be refreshed.
+ */
+@Data
+public class JournalDelta
+{
+	private final List<OfferEvent> offers = new ArrayList<>();
+	//items that were affected by the offers
+	private final Set<Integer> itemIds = new HashSet<>();
+	//whether any of the offers was for an item the account didn't have yet
+	private boolean addedItems;
+	//whether the account's state apart from its trades (last offers, slot timers, session time) changed
+	private boolean stateChanged;
+
+	public boolean isEmpty()
+	{
+		return offers.isEmpty() && !stateChanged;
+	}
+}
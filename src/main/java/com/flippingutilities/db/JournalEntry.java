@@ -0,0 +1,63 @@
+package com.flippingutilities.db;
+
+import com.flippingutilities.model.AccountData;
+import com.flippingutilities.model.FlippingItem;
+import com.flippingutilities.model.OfferEvent;
+import com.google.gson.annotations.SerializedName;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * A single record in an account's journal. The journal lets us save an account by appending only what changed since
+ * the last save instead of rewriting the account's whole trade history. A record is either an offer that was added
+ * to an item's history or the account's state apart from its trades (last offers, slot timers, session time), which
+ * is small enough to just write in full on every save.
+ * <p>
+ * Every record has a sequence number. The snapshot ({displayName}.json) stores the sequence number of the last record
+ * that was folded into it, so records that are already part of the snapshot are skipped when replaying the journal.
+ */
+@Data
+@AllArgsConstructor
+public class JournalEntry
+{
+	@SerializedName("seq")
+	private long sequence;
+	@SerializedName("n")
+	private String itemName;
+	@SerializedName("o")
+	private OfferEvent offer;
+	@SerializedName("s")
+	private AccountData state;
+
+	public static JournalEntry offer(long sequence, String itemName, OfferEvent offer)
+	{
+		return new JournalEntry(sequence, itemName, offer, null);
+	}
+
+	public static JournalEntry state(long sequence, AccountData state)
+	{
+		return new JournalEntry(sequence, null, null, state);
+	}
+
+	/**
+	 * Applies this record to the account data it was written for, the same way the change was originally applied
+	 * when the client made it.
+	 *
+	 * @param accountData the account data loaded from the snapshot and any records before this one
+	 * @param displayName the display name of the account
+	 */
+	public void applyTo(AccountData accountData, String displayName)
+	{
+		if (offer != null)
+		{
+			//not persisted, but every offer in an account's trades has it set
+			offer.setMadeBy(displayName);
+			accountData.addOffer(offer, () -> new FlippingItem(offer.getItemId(), itemName, 0, displayName));
+		}
+		if (state != null)
+		{
+			accountData.restoreState(state);
+		}
+		accountData.setJournalSequence(sequence);
+	}
+}
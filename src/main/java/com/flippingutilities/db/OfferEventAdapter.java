@@ -0,0 +1,174 @@
+package com.flippingutilities.db;
+
+import com.flippingutilities.model.OfferEvent;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import net.runelite.api.GrandExchangeOfferState;
+
+import java.io.IOException;
+import java.time.Instant;
+
+/**
+ * Reads and writes an {@link OfferEvent} using the same keys as its @SerializedName annotations. Offers make up
+ * nearly all of an account's file, so this is the adapter that matters most for load time. Transient fields are
+ * not written and are left at their defaults when read, same as when Gson does it reflectively.
+ */
+public class OfferEventAdapter extends TypeAdapter<OfferEvent>
+{
+	private final InstantAdapter instantAdapter;
+
+	public OfferEventAdapter(InstantAdapter instantAdapter)
+	{
+		this.instantAdapter = instantAdapter;
+	}
+
+	@Override
+	public void write(JsonWriter out, OfferEvent offer) throws IOException
+	{
+		if (offer == null)
+		{
+			out.nullValue();
+			return;
+		}
+		out.beginObject();
+		out.name("b").value(offer.isBuy());
+		out.name("id").value(offer.getItemId());
+		out.name("cQIT").value(offer.getCurrentQuantityInTrade());
+		out.name("p").value(offer.getPrice());
+		if (offer.getTime() != null)
+		{
+			out.name("t");
+			instantAdapter.write(out, offer.getTime());
+		}
+		out.name("s").value(offer.getSlot());
+		if (offer.getState() != null)
+		{
+			out.name("st").value(offer.getState().name());
+		}
+		out.name("tAA").value(offer.getTickArrivedAt());
+		out.name("tSFO").value(offer.getTicksSinceFirstOffer());
+		out.name("tQIT").value(offer.getTotalQuantityInTrade());
+		out.name("vSQ").value(offer.isValidOfferEvent());
+		if (offer.getTradeStartedAt() != null)
+		{
+			out.name("tradeStartedAt");
+			instantAdapter.write(out, offer.getTradeStartedAt());
+		}
+		out.name("beforeLogin").value(offer.isBeforeLogin());
+		out.endObject();
+	}
+
+	@Override
+	public OfferEvent read(JsonReader in) throws IOException
+	{
+		if (in.peek() == JsonToken.NULL)
+		{
+			in.nextNull();
+			return null;
+		}
+
+		boolean buy = false;
+		int itemId = 0;
+		int currentQuantityInTrade = 0;
+		int price = 0;
+		Instant time = null;
+		int slot = 0;
+		GrandExchangeOfferState state = null;
+		int tickArrivedAt = 0;
+		int ticksSinceFirstOffer = 0;
+		int totalQuantityInTrade = 0;
+		boolean validOfferEvent = false;
+		Instant tradeStartedAt = null;
+		boolean beforeLogin = false;
+
+		in.beginObject();
+		while (in.hasNext())
+		{
+			String name = in.nextName();
+			if (in.peek() == JsonToken.NULL)
+			{
+				in.nextNull();
+				continue;
+			}
+			switch (name)
+			{
+				case "b":
+					buy = in.nextBoolean();
+					break;
+				case "id":
+					itemId = in.nextInt();
+					break;
+				case "cQIT":
+					currentQuantityInTrade = in.nextInt();
+					break;
+				case "p":
+					price = in.nextInt();
+					break;
+				case "t":
+					time = instantAdapter.read(in);
+					break;
+				case "s":
+					slot = in.nextInt();
+					break;
+				case "st":
+					state = readState(in.nextString());
+					break;
+				case "tAA":
+					tickArrivedAt = in.nextInt();
+					break;
+				case "tSFO":
+					ticksSinceFirstOffer = in.nextInt();
+					break;
+				case "tQIT":
+					totalQuantityInTrade = in.nextInt();
+					break;
+				case "vSQ":
+					validOfferEvent = in.nextBoolean();
+					break;
+				case "tradeStartedAt":
+					tradeStartedAt = instantAdapter.read(in);
+					break;
+				case "beforeLogin":
+					beforeLogin = in.nextBoolean();
+					break;
+				default:
+					in.skipValue();
+			}
+		}
+		in.endObject();
+
+		return new OfferEvent(
+			buy,
+			itemId,
+			currentQuantityInTrade,
+			price,
+			time,
+			slot,
+			state,
+			tickArrivedAt,
+			ticksSinceFirstOffer,
+			totalQuantityInTrade,
+			validOfferEvent,
+			tradeStartedAt,
+			null,
+			beforeLogin,
+			null,
+			0,
+			0);
+	}
+
+	//gson maps enum constants it doesn't recognize to null rather than failing the whole load
+	private static GrandExchangeOfferState readState(String name)
+	{
+		try
+		{
+			return GrandExchangeOfferState.valueOf(name);
+		}
+		catch (IllegalArgumentException e)
+		{
+			return null;
+		}
+	}
+}
@@ -0,0 +1,298 @@
+package com.flippingutilities.db;
+
+import com.flippingutilities.model.AccountData;
+import com.flippingutilities.model.AccountSummary;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes data to disk on its own thread so that saving, which can mean rewriting an account's entire history, never
+ * holds up the client or the UI. Callers hand over snapshots of the data that nothing else changes anymore.
+ * <p>
+ * Writes aren't done right away but after a short delay, and everything requested in the meantime is combined: a
+ * newer snapshot of an account replaces an older one along with any journal entries queued before it, and only the
+ * latest state entry of an account's journal entries is kept.
+ */
+@Slf4j
+public class PersistenceWriter
+{
+	private static final long COALESCING_WINDOW_MS = 500;
+
+	private final ScheduledExecutorService executor = new ScheduledThreadPoolExecutor(1,
+		new ThreadFactoryBuilder().setNameFormat("flipping-utilities-writer-%d").setDaemon(true).build());
+
+	//everything below is guarded by this
+	private Map<String, PendingWrite> pendingWrites = new LinkedHashMap<>();
+	private Object pendingAccountWideData;
+	private ScheduledFuture<?> scheduledWrite;
+
+	/**
+	 * Queues a snapshot of an account to be stored with {@link TradePersister#storeAccount(String, AccountData)},
+	 * after which the entries it has are removed from its journal.
+	 *
+	 * @param displayName display name of the account
+	 * @param snapshot    a copy of the account's data that won't change anymore
+	 * @param summary     the account's summary, stored once the account's data is
+	 */
+	public synchronized void storeAccount(String displayName, AccountData snapshot, AccountSummary summary)
+	{
+		PendingWrite pendingWrite = pendingWrites.computeIfAbsent(displayName, k -> new PendingWrite());
+		pendingWrite.snapshot = snapshot;
+		//the snapshot already has everything that was going to be appended to the journal
+		pendingWrite.journalEntries.clear();
+		pendingWrite.summary = summary;
+		scheduleWrite();
+	}
+
+	/**
+	 * Queues entries to be appended to an account's journal.
+	 *
+	 * @param displayName display name of the account
+	 * @param entries     the entries to append, in the order they were created
+	 * @param summary     the account's summary, stored once the entries are appended
+	 */
+	public synchronized void appendToJournal(String displayName, List<JournalEntry> entries, AccountSummary summary)
+	{
+		PendingWrite pendingWrite = pendingWrites.computeIfAbsent(displayName, k -> new PendingWrite());
+		if (entries.stream().anyMatch(entry -> entry.getState() != null))
+		{
+			//an older state entry is entirely replaced by a newer one, so there's no point in writing it
+			pendingWrite.journalEntries.removeIf(entry -> entry.getState() != null && entry.getOffer() == null);
+		}
+		pendingWrite.journalEntries.addAll(entries);
+		pendingWrite.summary = summary;
+		scheduleWrite();
+	}
+
+	/**
+	 * Queues the summary of an account to be stored on its own, for accounts whose data is already on disk.
+	 */
+	public synchronized void storeSummary(String displayName, AccountSummary summary)
+	{
+		pendingWrites.computeIfAbsent(displayName, k -> new PendingWrite()).summary = summary;
+		scheduleWrite();
+	}
+
+	/**
+	 * Queues the account wide data to be stored.
+	 *
+	 * @param snapshot a copy of the account wide data that won't change anymore
+	 */
+	public synchronized void storeAccountWideData(Object snapshot)
+	{
+		pendingAccountWideData = snapshot;
+		scheduleWrite();
+	}
+
+	/**
+	 * Writes everything that's queued without waiting for the rest of the coalescing window.
+	 *
+	 * @return completes once everything queued before this call is on disk
+	 */
+	public synchronized Future<?> flush()
+	{
+		if (executor.isShutdown())
+		{
+			return Futures.immediateFuture(null);
+		}
+		if (scheduledWrite != null)
+		{
+			scheduledWrite.cancel(false);
+			scheduledWrite = null;
+		}
+		return executor.submit(this::writePending);
+	}
+
+	/**
+	 * Runs a task on the writer's thread once everything queued before it is on disk. Reading or deleting an account's
+	 * files has to go through this, as they could otherwise be read halfway through being written, or be written
+	 * again after being deleted. The caller isn't held up until the writes are done.
+	 *
+	 * @return completes with what the task returns, or with what it throws
+	 */
+	public synchronized <T> CompletableFuture<T> afterWrites(Callable<T> task)
+	{
+		CompletableFuture<T> result = new CompletableFuture<>();
+		Runnable runTask = () ->
+		{
+			try
+			{
+				result.complete(task.call());
+			}
+			catch (Exception e)
+			{
+				result.completeExceptionally(e);
+			}
+		};
+		if (executor.isShutdown())
+		{
+			//nothing is written anymore once the last write is done
+			ForkJoinPool.commonPool().execute(() ->
+			{
+				try
+				{
+					executor.awaitTermination(1, TimeUnit.MINUTES);
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+				runTask.run();
+			});
+			return result;
+		}
+		if (scheduledWrite != null)
+		{
+			scheduledWrite.cancel(false);
+			scheduledWrite = null;
+		}
+		executor.execute(() ->
+		{
+			try
+			{
+				writePending();
+			}
+			finally
+			{
+				runTask.run();
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Writes everything that's queued and then stops the writer's thread. Anything queued afterwards isn't written.
+	 *
+	 * @return completes once everything queued is on disk
+	 */
+	public synchronized Future<?> shutdown()
+	{
+		Future<?> lastWrite = flush();
+		executor.shutdown();
+		return lastWrite;
+	}
+
+	private void scheduleWrite()
+	{
+		if (executor.isShutdown())
+		{
+			log.info("not writing data that was stored after the writer was shut down");
+			return;
+		}
+		if (scheduledWrite == null)
+		{
+			scheduledWrite = executor.schedule(this::writePending, COALESCING_WINDOW_MS, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private void writePending()
+	{
+		Map<String, PendingWrite> writes;
+		Object accountWideData;
+		synchronized (this)
+		{
+			writes = pendingWrites;
+			accountWideData = pendingAccountWideData;
+			pendingWrites = new LinkedHashMap<>();
+			pendingAccountWideData = null;
+			scheduledWrite = null;
+		}
+
+		writes.forEach(this::write);
+
+		if (accountWideData != null)
+		{
+			try
+			{
+				TradePersister.storeTrades("accountwide", accountWideData);
+				log.info("successfully stored account wide data");
+			}
+			catch (IOException e)
+			{
+				log.info("couldn't store account wide data", e);
+			}
+		}
+	}
+
+	private void write(String displayName, PendingWrite pendingWrite)
+	{
+		if (pendingWrite.snapshot != null)
+		{
+			try
+			{
+				TradePersister.storeAccount(displayName, pendingWrite.snapshot);
+				//another client could have appended to the journal since the snapshot was taken, so only the entries
+				//up to it are removed
+				TradePersister.trimJournal(displayName, pendingWrite.snapshot.getJournalSequence());
+				log.info("successfully stored trades for {}", displayName);
+			}
+			catch (IOException e)
+			{
+				log.info("couldn't store trades, error = " + e);
+				return;
+			}
+		}
+
+		if (!pendingWrite.journalEntries.isEmpty())
+		{
+			try
+			{
+				TradePersister.appendToJournal(displayName, pendingWrite.journalEntries);
+				log.info("successfully journaled {} entries for {}", pendingWrite.journalEntries.size(), displayName);
+			}
+			catch (IOException e)
+			{
+				//keep the entries so they are appended along with whatever gets queued for the account next
+				log.info("couldn't append to journal, error = " + e);
+				requeueJournalEntries(displayName, pendingWrite);
+				return;
+			}
+		}
+
+		try
+		{
+			TradePersister.storeSummary(displayName, pendingWrite.summary);
+		}
+		catch (IOException e)
+		{
+			//not a big deal, the account will just be loaded fully on the next startup
+			log.info("couldn't store summary for {}, error = " + e, displayName);
+		}
+	}
+
+	private synchronized void requeueJournalEntries(String displayName, PendingWrite failedWrite)
+	{
+		PendingWrite pendingWrite = pendingWrites.computeIfAbsent(displayName, k -> new PendingWrite());
+		//a snapshot queued since then already has these entries
+		if (pendingWrite.snapshot == null)
+		{
+			pendingWrite.journalEntries.addAll(0, failedWrite.journalEntries);
+		}
+		if (pendingWrite.summary == null)
+		{
+			pendingWrite.summary = failedWrite.summary;
+		}
+	}
+
+	private static class PendingWrite
+	{
+		private AccountData snapshot;
+		private final List<JournalEntry> journalEntries = new ArrayList<>();
+		private AccountSummary summary;
+	}
+}
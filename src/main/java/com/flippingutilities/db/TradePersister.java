@@ -28,25 +28,66 @@ package com.flippingutilities.db;
 
 import com.flippingutilities.controller.FlippingPlugin;
 import com.flippingutilities.model.AccountData;
+import com.flippingutilities.model.AccountSummary;
 import com.flippingutilities.model.AccountWideData;
 import com.flippingutilities.model.FlippingItem;
+import com.flippingutilities.model.HistoryManager;
 import com.flippingutilities.model.OfferEvent;
 import com.flippingutilities.ui.uiutilities.TimeFormatters;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonSyntaxException;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.client.RuneLite;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVPrinter;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
 import java.lang.reflect.Type;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -63,6 +104,55 @@ public class TradePersister
 
 	public static final File OLD_FILE = new File(PARENT_DIRECTORY, "trades.json");
 
+	public static final String JOURNAL_EXTENSION = ".journal";
+
+	//accounts stored in the compact format are in {displayName}.dat instead of {displayName}.json
+	public static final String COMPACT_EXTENSION = ".dat";
+
+	public static final String SUMMARY_EXTENSION = ".summary";
+
+	//history segments are named {displayName}.{yyyy-MM}.segment
+	public static final String SEGMENT_EXTENSION = ".segment";
+
+	//offers from this many of the latest months are kept in the account's file, older ones are moved to segments.
+	//Two months so that the common intervals (session, past day/week/month) rarely need any segments.
+	private static final int UNSEGMENTED_MONTHS = 2;
+
+	//the journal is always folded into the snapshot once it is bigger than this many bytes...
+	private static final long MIN_JOURNAL_COMPACTION_SIZE = 64 * 1024;
+	//...or bigger than this fraction of the snapshot, so that compaction stays rare for accounts with a long history.
+	private static final int SNAPSHOT_TO_JOURNAL_RATIO = 4;
+
+	//the account files have always been written in the platform's default charset, so they have to keep being read
+	//and written in it. The journal is newer and always uses UTF-8.
+	private static final Charset SNAPSHOT_CHARSET = Charset.defaultCharset();
+
+	private static final InstantAdapter INSTANT_ADAPTER = new InstantAdapter();
+
+	//shared by all reads and writes so the adapters are only built once. The hand written adapters cover the types
+	//that make up the bulk of an account's file.
+	private static final Gson GSON = new GsonBuilder()
+		.registerTypeAdapter(Instant.class, INSTANT_ADAPTER)
+		.registerTypeAdapter(OfferEvent.class, new OfferEventAdapter(INSTANT_ADAPTER))
+		.registerTypeAdapterFactory(FlippingItemAdapter.FACTORY)
+		.create();
+
+	private static final CompactTradeFormat COMPACT_FORMAT = new CompactTradeFormat(GSON);
+
+	//whether accounts and history segments are stored in the compact format or as JSON. Either is read regardless.
+	private static volatile boolean compactFiles = true;
+
+	public static void setCompactFiles(boolean compact)
+	{
+		compactFiles = compact;
+	}
+
+	//the gson trade files are read and written with, so tests check the adapters the way they're actually used
+	static Gson gson()
+	{
+		return GSON;
+	}
+
 	/**
 	 * Creates flipping directory if it doesn't exist and partitions trades.json into individual files
 	 * for each account, if it exists.
@@ -102,16 +192,13 @@ public class TradePersister
 	 */
 	private static void partitionOldFile(File f) throws IOException
 	{
-		String tradesJson = new String(Files.readAllBytes(OLD_FILE.toPath()));
-
-		final Gson gson = new Gson();
 		Type type = new TypeToken<Map<String, AccountData>>()
 		{
 		}.getType();
-		Map<String, AccountData> accountData = gson.fromJson(tradesJson, type);
+		Map<String, AccountData> accountData = readJson(f, type);
 
 		//they have no data to partition
-		if (!accountData.containsKey(FlippingPlugin.ACCOUNT_WIDE))
+		if (accountData == null || !accountData.containsKey(FlippingPlugin.ACCOUNT_WIDE))
 		{
 			return;
 		}
@@ -155,73 +242,630 @@ public class TradePersister
 	}
 
 	/**
-	 * loads each account's data from the parent directory located at {user's home directory}/.runelite/flipping/
-	 * Each account's data is stored in separate file in that directory and is named {displayName}.json
+	 * loads the given accounts' data from the parent directory located at {user's home directory}/.runelite/flipping/
+	 * Each account's data is stored in separate file in that directory and is named {displayName}.json, or
+	 * {displayName}.dat if it is stored in the {@link CompactTradeFormat}.
+	 * <p>
+	 * The files are read and parsed in parallel, as people with several accounts would otherwise have to wait for
+	 * all of them to be parsed one after the other before the panel shows anything.
 	 *
+	 * @param displayNames the accounts to load
+	 * @param threads      the max number of accounts to load at the same time
+	 * @param preparer     run on each account's data right after it is loaded, on the same thread that loaded it
 	 * @return a map of display name to that account's data
 	 * @throws IOException handled in FlippingPlugin
 	 */
-	public static Map<String, AccountData> loadAllAccounts() throws IOException
+	public static Map<String, AccountData> loadAccounts(Collection<String> displayNames, int threads, Consumer<AccountData> preparer) throws IOException
 	{
-		Map<String, AccountData> accountsData = new HashMap<>();
-		for (File f : PARENT_DIRECTORY.listFiles())
+		return loadAccounts(PARENT_DIRECTORY, displayNames, threads, preparer);
+	}
+
+	/**
+	 * Same as {@link #loadAccounts(Collection, int, Consumer)} but for all the account files in any directory, so the
+	 * loading can be benchmarked without touching the user's real data.
+	 */
+	public static Map<String, AccountData> loadAllAccounts(File directory, int threads, Consumer<AccountData> preparer) throws IOException
+	{
+		return loadAccounts(directory, listAccounts(directory), threads, preparer);
+	}
+
+	/**
+	 * @return the display names of all the accounts that have data in the parent directory
+	 */
+	public static List<String> listAccounts()
+	{
+		return listAccounts(PARENT_DIRECTORY);
+	}
+
+	private static List<String> listAccounts(File directory)
+	{
+		//an account can briefly have both files while it is being converted from one format to the other
+		Set<String> displayNames = new LinkedHashSet<>();
+		for (File f : directory.listFiles())
 		{
-			if (f.getName().equals("accountwide.json") || !f.getName().contains(".json")) {
+			if (f.getName().equals("accountwide.json") ||
+				!(f.getName().contains(".json") || f.getName().endsWith(COMPACT_EXTENSION))) {
 				log.info("not loading data from file: {}", f.getName());
 				continue;
 			}
-			String displayName = f.getName().split("\\.")[0];
-			log.info("loading data for {}", displayName);
-			AccountData accountData = loadFromFile(f);
-			if (accountData == null)
+			displayNames.add(f.getName().split("\\.")[0]);
+		}
+		return new ArrayList<>(displayNames);
+	}
+
+	private static Map<String, AccountData> loadAccounts(File directory, Collection<String> displayNames, int threads, Consumer<AccountData> preparer) throws IOException
+	{
+		Map<String, AccountData> accountsData = new HashMap<>();
+		if (displayNames.isEmpty())
+		{
+			return accountsData;
+		}
+
+		ExecutorService loadingPool = Executors.newFixedThreadPool(
+			Math.max(1, Math.min(threads, displayNames.size())),
+			new ThreadFactoryBuilder().setNameFormat("flipping-utilities-loader-%d").setDaemon(true).build());
+		try
+		{
+			Map<String, Future<AccountData>> loadingAccounts = new HashMap<>();
+			for (String displayName : displayNames)
 			{
-				log.info("data for {} is null for some reason, setting it to a empty AccountData object", displayName);
-				accountData = new AccountData();
+				loadingAccounts.put(displayName, loadingPool.submit(() -> {
+					AccountData accountData = loadAccount(directory, displayName);
+					preparer.accept(accountData);
+					return accountData;
+				}));
 			}
 
-			accountsData.put(displayName, accountData);
+			for (Map.Entry<String, Future<AccountData>> loadingAccount : loadingAccounts.entrySet())
+			{
+				accountsData.put(loadingAccount.getKey(), loadingAccount.getValue().get());
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted while loading accounts", e);
+		}
+		catch (ExecutionException e)
+		{
+			//rethrow what the account's loading threw so callers handle it the same as when accounts were loaded
+			//one at a time.
+			Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+			Throwables.throwIfUnchecked(e.getCause());
+			throw new IOException(e.getCause());
+		}
+		finally
+		{
+			loadingPool.shutdownNow();
 		}
 
 		return accountsData;
 	}
 
 	public static AccountData loadAccount(String displayName) throws IOException
+	{
+		return loadAccount(PARENT_DIRECTORY, displayName);
+	}
+
+	private static AccountData loadAccount(File directory, String displayName) throws IOException
 	{
 		log.info("loading data for {}", displayName);
-		File accountFile = new File(PARENT_DIRECTORY, displayName + ".json");
-		AccountData accountData = loadFromFile(accountFile);
+		AccountData accountData = loadFromFile(snapshotFile(directory, displayName));
 		if (accountData == null)
 		{
 			log.info("data for {} is null for some reason, setting it to a empty AccountData object", displayName);
 			accountData = new AccountData();
 		}
+		replayJournal(directory, displayName, accountData);
 		return accountData;
 	}
 
+	/**
+	 * Loads the summary of an account from {displayName}.summary. The summary is only returned if it was written after
+	 * the account's snapshot and journal, otherwise it might not reflect the account's data anymore, for example
+	 * when another client saved the account without updating the summary.
+	 *
+	 * @param displayName display name of the account
+	 * @return the account's summary or null if it doesn't have an up to date one
+	 */
+	public static AccountSummary loadSummary(String displayName)
+	{
+		File summaryFile = new File(PARENT_DIRECTORY, displayName + SUMMARY_EXTENSION);
+		long summaryLastModified = summaryFile.lastModified();
+		if (summaryLastModified == 0 ||
+			summaryLastModified < snapshotFile(PARENT_DIRECTORY, displayName).lastModified() ||
+			summaryLastModified < new File(PARENT_DIRECTORY, displayName + JOURNAL_EXTENSION).lastModified())
+		{
+			return null;
+		}
+
+		try
+		{
+			return readJson(summaryFile, AccountSummary.class);
+		}
+		catch (IOException | JsonSyntaxException e)
+		{
+			log.info("couldn't load summary for {}, error = {}", displayName, e);
+			return null;
+		}
+	}
+
+	/**
+	 * stores the summary of an account in {user's home directory}/.runelite/flipping/{account's display name}.summary.
+	 * This has to be called after the account's data is stored for the summary to be considered up to date.
+	 *
+	 * @param displayName display name of the account the summary is for
+	 * @param summary     the account's summary
+	 * @throws IOException
+	 */
+	public static void storeSummary(String displayName, AccountSummary summary) throws IOException
+	{
+		File summaryFile = new File(PARENT_DIRECTORY, displayName + SUMMARY_EXTENSION);
+		try (Writer writer = Files.newBufferedWriter(summaryFile.toPath(), SNAPSHOT_CHARSET))
+		{
+			GSON.toJson(summary, writer);
+		}
+	}
+
+	/**
+	 * Applies the entries in {displayName}.journal that aren't already part of the snapshot to the account data
+	 * loaded from the snapshot.
+	 *
+	 * @param directory   the directory the account's files are in
+	 * @param displayName display name of the account the data is associated with
+	 * @param accountData the account data loaded from {displayName}.json
+	 * @throws IOException handled in FlippingPlugin
+	 */
+	private static void replayJournal(File directory, String displayName, AccountData accountData) throws IOException
+	{
+		int[] entriesReplayed = {0};
+		long journalOffset = readJournal(directory, displayName, 0, entry -> {
+			//entries with a lower sequence number were already folded into the snapshot
+			if (entry.getSequence() > accountData.getJournalSequence())
+			{
+				entry.applyTo(accountData, displayName);
+				entriesReplayed[0]++;
+			}
+		});
+		accountData.setJournalOffset(journalOffset);
+		log.info("replayed {} journal entries for {}", entriesReplayed[0], displayName);
+	}
+
+	/**
+	 * Reads the entries that were appended to an account's journal since it was last read. This is how changes other
+	 * clients made to an account are picked up without reloading the whole account.
+	 *
+	 * @param displayName display name of the account
+	 * @param offset      where reading stopped the last time, see {@link AccountData#getJournalOffset()}
+	 * @param consumer    gets each entry, in the order they were appended
+	 * @return where to continue reading from next time, or -1 if the journal is shorter than the offset. That means
+	 * it was folded into the snapshot since it was last read, so the whole account has to be reloaded.
+	 * @throws IOException handled in DataHandler
+	 */
+	public static long readJournal(String displayName, long offset, Consumer<JournalEntry> consumer) throws IOException
+	{
+		return readJournal(PARENT_DIRECTORY, displayName, offset, consumer);
+	}
+
+	private static long readJournal(File directory, String displayName, long offset, Consumer<JournalEntry> consumer) throws IOException
+	{
+		File journalFile = new File(directory, displayName + JOURNAL_EXTENSION);
+		long length = journalFile.length();
+		if (length < offset)
+		{
+			return -1;
+		}
+		if (length == offset)
+		{
+			return offset;
+		}
+
+		//journals are kept small by compacting them, so whatever was appended since the offset fits in memory
+		byte[] appended = new byte[(int) (length - offset)];
+		try (RandomAccessFile file = new RandomAccessFile(journalFile, "r"))
+		{
+			file.seek(offset);
+			file.readFully(appended);
+		}
+
+		int lineStart = 0;
+		for (int i = 0; i < appended.length; i++)
+		{
+			if (appended[i] != '\n')
+			{
+				continue;
+			}
+			JournalEntry entry = readJournalEntry(displayName, appended, lineStart, i);
+			lineStart = i + 1;
+			if (entry != null)
+			{
+				consumer.accept(entry);
+			}
+		}
+		//a last line without a newline is either still being appended or was cut off when the client closed in the
+		//middle of an append. Either way it isn't read.
+		return offset + lineStart;
+	}
+
+	//reads the entry on the line between the two indexes, or returns null if the line is empty or corrupt
+	private static JournalEntry readJournalEntry(String displayName, byte[] journal, int lineStart, int lineEnd)
+	{
+		if (lineStart == lineEnd)
+		{
+			return null;
+		}
+		try
+		{
+			return GSON.fromJson(new String(journal, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8), JournalEntry.class);
+		}
+		catch (JsonSyntaxException e)
+		{
+			log.info("journal for {} has a corrupt entry, skipping it", displayName);
+			return null;
+		}
+	}
+
+	/**
+	 * Removes the entries that are part of an account's snapshot from its journal, once the snapshot is stored. The
+	 * entries after them are kept, as another client could have appended them after the snapshot was taken. The
+	 * journal is rewritten in place while holding the same lock appending to it takes, so that nothing appended in the
+	 * meantime is lost.
+	 *
+	 * @param displayName display name of the account
+	 * @param sequence    sequence number of the last entry that is part of the snapshot
+	 * @throws IOException handled in PersistenceWriter
+	 */
+	public static void trimJournal(String displayName, long sequence) throws IOException
+	{
+		File journalFile = new File(PARENT_DIRECTORY, displayName + JOURNAL_EXTENSION);
+		if (!journalFile.exists())
+		{
+			return;
+		}
+		try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw"); FileLock lock = file.getChannel().lock())
+		{
+			byte[] journal = new byte[(int) file.length()];
+			file.readFully(journal);
+
+			ByteArrayOutputStream kept = new ByteArrayOutputStream();
+			int lineStart = 0;
+			for (int i = 0; i < journal.length; i++)
+			{
+				if (journal[i] != '\n')
+				{
+					continue;
+				}
+				JournalEntry entry = readJournalEntry(displayName, journal, lineStart, i);
+				if (entry != null && entry.getSequence() > sequence)
+				{
+					kept.write(journal, lineStart, i + 1 - lineStart);
+				}
+				lineStart = i + 1;
+			}
+			//a last line that was cut off is kept as it is, it's skipped when reading anyway
+			kept.write(journal, lineStart, journal.length - lineStart);
+
+			file.setLength(0);
+			file.write(kept.toByteArray());
+			log.info("removed the entries up to {} from the journal for {}, {} bytes are left", sequence, displayName, kept.size());
+		}
+	}
+
+	/**
+	 * Appends entries to {user's home directory}/.runelite/flipping/{account's display name}.journal. Unlike
+	 * {@link #storeTrades(String, Object)}, the cost of this only depends on the number of entries being appended.
+	 *
+	 * @param displayName display name of the account the entries are for
+	 * @param entries     the entries to append, in the order they were created
+	 * @throws IOException
+	 */
+	public static void appendToJournal(String displayName, List<JournalEntry> entries) throws IOException
+	{
+		log.info("appending {} entries to the journal for {}", entries.size(), displayName);
+		File journalFile = new File(PARENT_DIRECTORY, displayName + JOURNAL_EXTENSION);
+		try (FileOutputStream out = new FileOutputStream(journalFile, true); FileLock lock = out.getChannel().lock())
+		{
+			//not closed itself, as the lock has to be released before the file is closed
+			Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+			for (JournalEntry entry : entries)
+			{
+				writer.write(GSON.toJson(entry));
+				writer.write('\n');
+			}
+			writer.flush();
+		}
+	}
+
+	/**
+	 * Decides whether the journal has grown large enough that it should be folded into a new snapshot. Replaying a
+	 * journal on load gets slower the bigger it is, but a snapshot rewrites the whole history, so we only compact
+	 * once the journal is a decent fraction of the snapshot's size. Snapshots that aren't in the format accounts are
+	 * currently stored in are always rewritten, which is how accounts get converted from one format to the other.
+	 *
+	 * @param displayName display name of the account
+	 * @return whether a snapshot should be written instead of appending to the journal
+	 */
+	public static boolean shouldCompactJournal(String displayName)
+	{
+		File snapshotFile = snapshotFile(PARENT_DIRECTORY, displayName);
+		if (snapshotFile.exists() && snapshotFile.getName().endsWith(COMPACT_EXTENSION) != compactFiles)
+		{
+			return true;
+		}
+		long journalSize = new File(PARENT_DIRECTORY, displayName + JOURNAL_EXTENSION).length();
+		return journalSize > Math.max(MIN_JOURNAL_COMPACTION_SIZE, snapshotFile.length() / SNAPSHOT_TO_JOURNAL_RATIO);
+	}
+
+	/**
+	 * @return the account's compact file if it has one, otherwise its JSON file
+	 */
+	private static File snapshotFile(File directory, String displayName)
+	{
+		File compactFile = new File(directory, displayName + COMPACT_EXTENSION);
+		return compactFile.exists() ? compactFile : new File(directory, displayName + ".json");
+	}
+
 	private static AccountData loadFromFile(File f) throws IOException
 	{
-		String accountDataJson = new String(Files.readAllBytes(f.toPath()));
-		final Gson gson = new Gson();
-		Type type = new TypeToken<AccountData>()
+		if (!f.exists())
 		{
-		}.getType();
-		AccountData accountData = gson.fromJson(accountDataJson, type);
-		return accountData;
+			return null;
+		}
+		try (InputStream in = new BufferedInputStream(Files.newInputStream(f.toPath())))
+		{
+			if (CompactTradeFormat.isCompact(in))
+			{
+				return COMPACT_FORMAT.readAccount(new DataInputStream(in));
+			}
+			return GSON.fromJson(new JsonReader(new InputStreamReader(in, SNAPSHOT_CHARSET)), AccountData.class);
+		}
+	}
+
+	/**
+	 * Parses a file straight from disk rather than reading it into a string first, so we never hold more than the
+	 * parsed objects and a small buffer in memory, no matter how big the file is.
+	 *
+	 * @param f    the file to parse
+	 * @param type the type of the object stored in the file
+	 * @return the parsed object or null if the file is empty
+	 * @throws IOException handled in FlippingPlugin
+	 */
+	private static <T> T readJson(File f, Type type) throws IOException
+	{
+		try (JsonReader reader = new JsonReader(Files.newBufferedReader(f.toPath(), SNAPSHOT_CHARSET)))
+		{
+			return GSON.fromJson(reader, type);
+		}
 	}
 
 	public static AccountWideData loadAccountWideData() throws IOException {
 		File accountFile = new File(PARENT_DIRECTORY, "accountwide.json");
 		if (accountFile.exists()){
-			String accountWideDataJson = new String(Files.readAllBytes(accountFile.toPath()));
-			final Gson gson = new Gson();
-			Type type = new TypeToken<AccountWideData>(){}.getType();
-			return gson.fromJson(accountWideDataJson, type);
+			return readJson(accountFile, AccountWideData.class);
 		}
 		else {
 			return new AccountWideData();
 		}
 	}
 
+	/**
+	 * stores an account's data in {user's home directory}/.runelite/flipping/{account's display name}.dat (.json if
+	 * compact files are turned off), except for offers older than the last {@link #UNSEGMENTED_MONTHS} months. Those
+	 * are stored in one history segment per month, so that loading the account doesn't mean loading its entire
+	 * history. Each item keeps the offers its latest prices are based on in the account's file regardless of how old
+	 * they are, as the flipping panel always needs them.
+	 * <p>
+	 * Only the segments of months whose offers are all loaded are rewritten. Offers from other months, which can
+	 * only be offers that no longer determine an item's latest prices, are added to the segment that's on disk if it
+	 * doesn't have them yet. They stay loaded, so they're in every save until their month is loaded.
+	 *
+	 * @param displayName display name of the account the data is associated with
+	 * @param data        the account's data
+	 * @throws IOException
+	 */
+	public static void storeAccount(String displayName, AccountData data) throws IOException
+	{
+		YearMonth segmentedBefore = YearMonth.now(ZoneOffset.UTC).minusMonths(UNSEGMENTED_MONTHS - 1);
+		Map<YearMonth, Map<Integer, FlippingItem>> segments = new HashMap<>();
+		List<FlippingItem> unsegmentedItems = new ArrayList<>();
+		for (FlippingItem item : data.getTrades())
+		{
+			Set<OfferEvent> latestOffers = Collections.newSetFromMap(new IdentityHashMap<>());
+			latestOffers.addAll(item.getLatestOffers());
+			List<OfferEvent> unsegmentedOffers = new ArrayList<>();
+			for (OfferEvent offer : item.getHistory().getCompressedOfferEvents())
+			{
+				YearMonth month = monthOf(offer.getTime());
+				if (!month.isBefore(segmentedBefore) || latestOffers.contains(offer))
+				{
+					unsegmentedOffers.add(offer);
+					continue;
+				}
+				segments.computeIfAbsent(month, m -> new LinkedHashMap<>()).
+					computeIfAbsent(item.getItemId(), id -> item.withHistory(new HistoryManager())).
+					getHistory().getCompressedOfferEvents().add(offer);
+			}
+			unsegmentedItems.add(item.withHistory(item.getHistory().withOffers(unsegmentedOffers)));
+		}
+
+		YearMonth historyLoadedFrom = data.getHistoryLoadedFrom();
+		Set<YearMonth> months = new HashSet<>(segments.keySet());
+		//segments of fully loaded months that don't have any offers anymore have to be rewritten too
+		months.addAll(listSegments(displayName));
+		for (YearMonth month : months)
+		{
+			if (!month.isBefore(segmentedBefore))
+			{
+				continue;
+			}
+			boolean fullyLoaded = historyLoadedFrom == null || !month.isBefore(historyLoadedFrom);
+			List<FlippingItem> items = new ArrayList<>(segments.getOrDefault(month, Collections.emptyMap()).values());
+			if (!fullyLoaded)
+			{
+				if (items.isEmpty())
+				{
+					continue;
+				}
+				AccountData segment = new AccountData();
+				segment.setTrades(loadSegment(displayName, month));
+				segment.addOlderHistory(items);
+				items = segment.getTrades();
+			}
+			storeSegment(displayName, month, items);
+		}
+
+		AccountData unsegmentedData = data.copyWithoutTrades();
+		unsegmentedData.setTrades(unsegmentedItems);
+		unsegmentedData.setJournalSequence(data.getJournalSequence());
+		unsegmentedData.setSegmentedBefore(segmentedBefore.toString());
+		storeSnapshot(displayName, unsegmentedData);
+	}
+
+	/**
+	 * Stores an account's file in the format accounts are currently stored in, and then deletes its file in the other
+	 * format if it has one.
+	 */
+	private static void storeSnapshot(String displayName, AccountData data) throws IOException
+	{
+		if (!compactFiles)
+		{
+			storeTrades(displayName, data);
+			deleteFile(displayName + COMPACT_EXTENSION);
+			return;
+		}
+
+		log.info("storing trades for {}", displayName);
+		File accountFile = new File(PARENT_DIRECTORY, displayName + COMPACT_EXTENSION);
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(accountFile.toPath()))))
+		{
+			COMPACT_FORMAT.writeAccount(out, data);
+		}
+		deleteFile(displayName + ".json");
+	}
+
+	/**
+	 * Loads the offers from the history segments of an account for the months in the given range.
+	 *
+	 * @param displayName display name of the account
+	 * @param from        the first month to load
+	 * @param before      the month after the last month to load
+	 * @return the items from the segments, each only having the offers from the loaded segments
+	 * @throws IOException handled in DataHandler
+	 */
+	public static List<FlippingItem> loadSegments(String displayName, YearMonth from, YearMonth before) throws IOException
+	{
+		Map<Integer, FlippingItem> items = new LinkedHashMap<>();
+		List<YearMonth> months = listSegments(displayName);
+		months.sort(Comparator.naturalOrder());
+		for (YearMonth month : months)
+		{
+			if (month.isBefore(from) || !month.isBefore(before))
+			{
+				continue;
+			}
+			log.info("loading history segment {} for {}", month, displayName);
+			for (FlippingItem segmentItem : loadSegment(displayName, month))
+			{
+				FlippingItem item = items.putIfAbsent(segmentItem.getItemId(), segmentItem);
+				if (item != null)
+				{
+					item.getHistory().getCompressedOfferEvents().addAll(segmentItem.getHistory().getCompressedOfferEvents());
+				}
+			}
+		}
+		return new ArrayList<>(items.values());
+	}
+
+	private static List<FlippingItem> loadSegment(String displayName, YearMonth month) throws IOException
+	{
+		File segmentFile = segmentFile(displayName, month);
+		if (!segmentFile.exists())
+		{
+			return new ArrayList<>();
+		}
+		List<FlippingItem> items;
+		try (InputStream in = new BufferedInputStream(Files.newInputStream(segmentFile.toPath())))
+		{
+			if (CompactTradeFormat.isCompact(in))
+			{
+				items = COMPACT_FORMAT.readItemList(new DataInputStream(in));
+			}
+			else
+			{
+				Type type = new TypeToken<List<FlippingItem>>()
+				{
+				}.getType();
+				items = GSON.fromJson(new JsonReader(new InputStreamReader(in, SNAPSHOT_CHARSET)), type);
+			}
+		}
+		return items == null ? new ArrayList<>() : items;
+	}
+
+	private static void storeSegment(String displayName, YearMonth month, List<FlippingItem> items) throws IOException
+	{
+		File segmentFile = segmentFile(displayName, month);
+		if (items.isEmpty())
+		{
+			deleteFile(segmentFile.getName());
+			return;
+		}
+		if (compactFiles)
+		{
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(segmentFile.toPath()))))
+			{
+				COMPACT_FORMAT.writeItemList(out, items);
+			}
+			return;
+		}
+		try (Writer writer = Files.newBufferedWriter(segmentFile.toPath(), SNAPSHOT_CHARSET))
+		{
+			GSON.toJson(items, writer);
+		}
+	}
+
+	private static List<YearMonth> listSegments(String displayName)
+	{
+		List<YearMonth> months = new ArrayList<>();
+		String prefix = displayName + ".";
+		File[] files = PARENT_DIRECTORY.listFiles();
+		if (files == null)
+		{
+			return months;
+		}
+		for (File f : files)
+		{
+			String name = f.getName();
+			if (!name.startsWith(prefix) || !name.endsWith(SEGMENT_EXTENSION))
+			{
+				continue;
+			}
+			try
+			{
+				months.add(YearMonth.parse(name.substring(prefix.length(), name.length() - SEGMENT_EXTENSION.length())));
+			}
+			catch (DateTimeParseException e)
+			{
+				log.info("not a history segment: {}", name);
+			}
+		}
+		return months;
+	}
+
+	public static void deleteSegments(String displayName)
+	{
+		listSegments(displayName).forEach(month -> deleteFile(segmentFile(displayName, month).getName()));
+	}
+
+	private static File segmentFile(String displayName, YearMonth month)
+	{
+		return new File(PARENT_DIRECTORY, displayName + "." + month + SEGMENT_EXTENSION);
+	}
+
+	public static YearMonth monthOf(Instant time)
+	{
+		return YearMonth.from(time.atZone(ZoneOffset.UTC));
+	}
+
 	/**
 	 * stores trades for an account in {user's home directory}/.runelite/flipping/{account's display name}.json
 	 *
@@ -233,14 +877,19 @@ public class TradePersister
 	{
 		log.info("storing trades for {}", displayName);
 		File accountFile = new File(PARENT_DIRECTORY, displayName + ".json");
-		final Gson gson = new Gson();
-		final String json = gson.toJson(data);
-		Files.write(accountFile.toPath(), json.getBytes());
+		try (Writer writer = Files.newBufferedWriter(accountFile.toPath(), SNAPSHOT_CHARSET))
+		{
+			GSON.toJson(data, writer);
+		}
 	}
 
-	public static long lastModified(String fileName)
+	/**
+	 * Converts data to the JSON it would be stored as. This is a copy of the data that doesn't change when the data
+	 * does, and it can be passed to {@link #storeTrades(String, Object)} later on.
+	 */
+	public static JsonElement toJsonTree(Object data)
 	{
-		return new File(PARENT_DIRECTORY, fileName).lastModified();
+		return GSON.toJsonTree(data);
 	}
 
 	public static void deleteFile(String fileName)
@@ -26,9 +26,11 @@
 
 package com.flippingutilities.jobs;
 
+import com.flippingutilities.db.FileFingerprint;
 import com.flippingutilities.db.TradePersister;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.*;
 import java.util.ArrayList;
@@ -59,16 +61,24 @@ public class CacheUpdaterJob
 
 	Future realTimeUpdateTask;
 
-	Map<String, Long> lastEvents = new HashMap<>();
+	File directory;
+
+	//fingerprints of the files as they were when callbacks were last fired for them
+	Map<String, FileFingerprint> lastEvents = new HashMap<>();
 
-	int requiredMinMsSinceLastUpdate = 5;
 	int failureCount;
 	int failureThreshold = 2;
 
 
 	public CacheUpdaterJob()
+	{
+		this(TradePersister.PARENT_DIRECTORY);
+	}
+
+	public CacheUpdaterJob(File directory)
 	{
 		this.executor = Executors.newSingleThreadScheduledExecutor();
+		this.directory = directory;
 	}
 
 	public void subscribe(Consumer<String> callback)
@@ -94,7 +104,7 @@ public class CacheUpdaterJob
 			log.info("starting cache updator job!");
 			WatchService watchService = FileSystems.getDefault().newWatchService();
 
-			Path path = TradePersister.PARENT_DIRECTORY.toPath();
+			Path path = directory.toPath();
 
 			path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
 
@@ -163,26 +173,25 @@ public class CacheUpdaterJob
 		log.info("shutting down cache updater due to the client shutdown");
 	}
 
-	private boolean isDuplicateEvent(String fileName)
+	/**
+	 * An event is a duplicate if the file's contents are the same as when callbacks were last fired for it. Writing a
+	 * file usually causes several events, and by the time the later ones are handled the contents they're about have
+	 * already been seen.
+	 *
+	 * @param fileName the name of the file the event is for, in the directory being monitored
+	 * @return whether the callbacks shouldn't be fired for the event
+	 */
+	boolean isDuplicateEvent(String fileName)
 	{
-		long lastModified = TradePersister.lastModified(fileName);
-		if (lastEvents.containsKey(fileName))
+		FileFingerprint fingerprint = FileFingerprint.of(new File(directory, fileName));
+		//files are truncated before being rewritten, an empty file is one that's about to be written
+		if (fingerprint == null || fingerprint.getSize() == 0 || fingerprint.equals(lastEvents.get(fileName)))
 		{
-			long prevModificationTime = lastEvents.get(fileName);
-			long diffSinceLastModification = Math.abs(lastModified - prevModificationTime);
-			if (diffSinceLastModification < requiredMinMsSinceLastUpdate)
-			{
-				return true;
-			}
-			else
-			{
-				lastEvents.put(fileName, lastModified);
-				return false;
-			}
+			return true;
 		}
 		else
 		{
-			lastEvents.put(fileName, lastModified);
+			lastEvents.put(fileName, fingerprint);
 			return false;
 		}
 	}
@@ -98,8 +98,8 @@ public class SlotStateSenderJob {
      * as the offer from client.getGrandExchangeOffers() is missing that information.
      */
     private List<SlotState> getCurrentSlots() {
-        Map<Integer, OfferEvent> lastOfferEventForEachSlot = plugin.getDataHandler().getAccountData(plugin.getCurrentlyLoggedInAccount()).getLastOffers();
-        List<SlotActivityTimer> slotActivityTimers = plugin.getDataHandler().getAccountData(plugin.getCurrentlyLoggedInAccount()).getSlotTimers();
+        Map<Integer, OfferEvent> lastOfferEventForEachSlot = plugin.getDataHandler().getAccountState(plugin.getCurrentlyLoggedInAccount()).getLastOffers();
+        List<SlotActivityTimer> slotActivityTimers = plugin.getDataHandler().getAccountState(plugin.getCurrentlyLoggedInAccount()).getSlotTimers();
         List<SlotState> slotStates = new ArrayList<>();
         for (int i = 0; i < 8; i++) {
             GrandExchangeOffer grandExchangeOffer = plugin.getClient().getGrandExchangeOffers()[i];
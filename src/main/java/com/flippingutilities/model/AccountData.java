@@ -34,21 +34,67 @@ import net.runelite.http.api.item.ItemStats;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Data
 public class AccountData
 {
 	private Map<Integer, OfferEvent> lastOffers = new HashMap<>();
-	private List<FlippingItem> trades = new ArrayList<>();
+	//a TradeList, unless it was just deserialized
+	private List<FlippingItem> trades = new TradeList();
 	private Instant sessionStartTime = Instant.now();
 	private Duration accumulatedSessionTime = Duration.ZERO;
 	private Instant lastSessionTimeUpdate;
 	private List<SlotActivityTimer> slotTimers;
+	//sequence number of the last journal entry that is reflected in this data
+	private long journalSequence;
+	//how far the journal has been read, so entries other clients append later on can be read without rereading it
+	private transient long journalOffset;
+	//offers made before this month (yyyy-MM) are stored in history segments rather than with the rest of the data,
+	//apart from the ones each item needs to show its latest prices. Null if nothing has been moved to segments yet.
+	private String segmentedBefore;
+	//every offer made in this month or after it is loaded. Null if every offer is loaded.
+	private transient YearMonth historyLoadedFrom;
+
+	public List<FlippingItem> getTrades()
+	{
+		return trades();
+	}
+
+	public void setTrades(List<FlippingItem> trades)
+	{
+		this.trades = new TradeList(trades);
+	}
+
+	/**
+	 * Finds this account's item for the given item id without going through the trades list.
+	 */
+	public Optional<FlippingItem> findItem(int itemId)
+	{
+		return Optional.ofNullable(trades().findItem(itemId));
+	}
+
+	private synchronized TradeList trades()
+	{
+		if (!(trades instanceof TradeList))
+		{
+			trades = new TradeList(trades);
+		}
+		return (TradeList) trades;
+	}
 
 	/**
 	 * Resets all session related data associated with an account. This is called when the plugin first starts
@@ -68,15 +114,20 @@ public class AccountData
 	 */
 	public void prepareForUse(FlippingPlugin plugin)
 	{
-		for (FlippingItem item : trades)
-		{
-			//in case ge limits have been updated
-			int tradeItemId = item.getItemId();
-			ItemStats itemStats = plugin.getItemManager().getItemStats(tradeItemId, false);
-			int geLimit = itemStats != null ? itemStats.getGeLimit() : 0;
+		prepareTrades();
+		prepareForClient(plugin);
+	}
 
+	/**
+	 * The part of {@link #prepareForUse(FlippingPlugin)} that only depends on the data itself. Unlike the rest of it,
+	 * this doesn't use the ItemManager, so it can run on whatever thread loaded the data.
+	 */
+	public void prepareTrades()
+	{
+		historyLoadedFrom = segmentedBefore == null ? null : YearMonth.parse(segmentedBefore);
+		for (FlippingItem item : trades())
+		{
 			item.setOfferMadeBy();
-			item.setTotalGELimit(geLimit);
 			item.syncState();
 			//when this change was made the field will not exist and will be null
 			if (item.getValidFlippingPanelItem() == null)
@@ -84,7 +135,33 @@ public class AccountData
 				item.setValidFlippingPanelItem(true);
 			}
 		}
+	}
+
+	/**
+	 * The part of {@link #prepareForUse(FlippingPlugin)} that needs the plugin's ItemManager and client, so it has to
+	 * run on the client thread.
+	 */
+	public void prepareForClient(FlippingPlugin plugin)
+	{
+		prepareItemsForClient(plugin, trades());
+		prepareSlotTimers(plugin);
+		plugin.getGeLimitTracker().trackAll(trades());
+	}
+
+	public void prepareItemsForClient(FlippingPlugin plugin, Collection<FlippingItem> items)
+	{
+		for (FlippingItem item : items)
+		{
+			//in case ge limits have been updated
+			int tradeItemId = item.getItemId();
+			ItemStats itemStats = plugin.getItemManager().getItemStats(tradeItemId, false);
+			int geLimit = itemStats != null ? itemStats.getGeLimit() : 0;
+			item.setTotalGELimit(geLimit);
+		}
+	}
 
+	public void prepareSlotTimers(FlippingPlugin plugin)
+	{
 		if (slotTimers == null)
 		{
 			setSlotTimers(setupSlotTimers(plugin));
@@ -98,6 +175,159 @@ public class AccountData
 		}
 	}
 
+	/**
+	 * Adds a new offer to the history of the FlippingItem it is for, creating that FlippingItem if this account hasn't
+	 * traded the item before. This is used both when an offer comes in and when offers are replayed from the journal,
+	 * so the trades list ends up the same either way.
+	 *
+	 * @param newOffer    the offer to add
+	 * @param itemFactory creates the FlippingItem for the offer if there isn't one in the trades list yet
+	 * @return the FlippingItem the offer was added to
+	 */
+	public FlippingItem addOffer(OfferEvent newOffer, Supplier<FlippingItem> itemFactory)
+	{
+		TradeList trades = trades();
+		FlippingItem item = trades.findItem(newOffer.getItemId());
+		if (item != null)
+		{
+			if (newOffer.isMarginCheck())
+			{
+				trades.moveToFront(item);
+			}
+			//if a user buys/sells an item they previously deleted from the flipping panel, show the panel again.
+			//the field can still be null here if the offer is being replayed before prepareForUse ran.
+			if (Boolean.FALSE.equals(item.getValidFlippingPanelItem()))
+			{
+				item.setValidFlippingPanelItem(true);
+				trades.moveToFront(item);
+			}
+
+			item.updateHistory(newOffer);
+			item.updateLatestProperties(newOffer);
+			return item;
+		}
+
+		item = itemFactory.get();
+		item.setValidFlippingPanelItem(true);
+		item.updateHistory(newOffer);
+		item.updateLatestProperties(newOffer);
+		trades.add(0, item);
+		return item;
+	}
+
+	/**
+	 * Adds offers paged in from history segments to the histories of the items they are for. These offers are all
+	 * older than the ones that were already loaded for the month they are from. Items that only have such offers,
+	 * because they were removed from the trades list since, are added back at the end of it.
+	 * <p>
+	 * An offer can already be loaded while also being in a segment, as the offers an item's latest prices are based on
+	 * stay loaded after they're moved to a segment, so offers an item already has are skipped.
+	 *
+	 * @param olderItems the items from the history segments, with only the offers from those segments
+	 */
+	public void addOlderHistory(List<FlippingItem> olderItems)
+	{
+		TradeList trades = trades();
+		for (FlippingItem olderItem : olderItems)
+		{
+			FlippingItem item = trades.findItem(olderItem.getItemId());
+			if (item == null)
+			{
+				olderItem.setOfferMadeBy();
+				olderItem.syncState();
+				trades.add(olderItem);
+				continue;
+			}
+
+			List<OfferEvent> loadedOffers = item.getHistory().getCompressedOfferEvents();
+			Set<List<Object>> loadedKeys = new HashSet<>();
+			loadedOffers.forEach(offer -> loadedKeys.add(offerKey(offer)));
+			List<OfferEvent> offers = new ArrayList<>();
+			for (OfferEvent offer : olderItem.getHistory().getCompressedOfferEvents())
+			{
+				if (!loadedKeys.contains(offerKey(offer)))
+				{
+					offers.add(offer);
+				}
+			}
+			offers.addAll(loadedOffers);
+			offers.sort(Comparator.comparing(OfferEvent::getTime));
+			item.getHistory().setCompressedOfferEvents(offers);
+			item.setOfferMadeBy();
+			item.syncState();
+		}
+	}
+
+	//an offer is only recorded once for a slot with the same state and quantity at the same time
+	private static List<Object> offerKey(OfferEvent offer)
+	{
+		return Arrays.asList(offer.getTime(), offer.getSlot(), offer.getState(), offer.getCurrentQuantityInTrade(), offer.getPrice(), offer.isBuy());
+	}
+
+	public long nextJournalSequence()
+	{
+		return ++journalSequence;
+	}
+
+	/**
+	 * Creates a copy of everything but the trades. This is what gets written to the journal when the account is
+	 * saved without rewriting its whole history. The copy doesn't change when this account's data does.
+	 */
+	public AccountData copyWithoutTrades()
+	{
+		AccountData copy = new AccountData();
+		copy.setTrades(new ArrayList<>());
+		//the last offers are updated in place while the slots are traded in
+		Map<Integer, OfferEvent> lastOffersCopy = new HashMap<>();
+		lastOffers.forEach((slot, offer) -> lastOffersCopy.put(slot, offer.clone()));
+		copy.setLastOffers(lastOffersCopy);
+		copy.setSessionStartTime(sessionStartTime);
+		copy.setAccumulatedSessionTime(accumulatedSessionTime);
+		copy.setLastSessionTimeUpdate(lastSessionTimeUpdate);
+		if (slotTimers != null)
+		{
+			copy.setSlotTimers(slotTimers.stream().map(SlotActivityTimer::copyForStorage).collect(Collectors.toList()));
+		}
+		return copy;
+	}
+
+	/**
+	 * Creates a copy that can be written to disk on another thread while the client keeps changing this account's
+	 * data. The offers in the items' histories are copied too, as they are changed in place when they are
+	 * invalidated or reset.
+	 */
+	public AccountData snapshot()
+	{
+		AccountData copy = copyWithoutTrades();
+		List<FlippingItem> tradesCopy = new ArrayList<>(trades().size());
+		for (FlippingItem item : trades())
+		{
+			HistoryManager history = item.getHistory();
+			List<OfferEvent> offersCopy = new ArrayList<>(history.getCompressedOfferEvents().size());
+			history.getCompressedOfferEvents().forEach(offer -> offersCopy.add(offer.clone()));
+			tradesCopy.add(item.withHistory(history.withOffers(offersCopy)));
+		}
+		copy.setTrades(tradesCopy);
+		copy.setJournalSequence(journalSequence);
+		copy.setSegmentedBefore(segmentedBefore);
+		copy.setHistoryLoadedFrom(historyLoadedFrom);
+		return copy;
+	}
+
+	/**
+	 * Sets everything but the trades to the values in the given account data.
+	 *
+	 * @param state account data that was created by {@link #copyWithoutTrades()}
+	 */
+	public void restoreState(AccountData state)
+	{
+		lastOffers = state.getLastOffers();
+		sessionStartTime = state.getSessionStartTime();
+		accumulatedSessionTime = state.getAccumulatedSessionTime();
+		lastSessionTimeUpdate = state.getLastSessionTimeUpdate();
+		slotTimers = state.getSlotTimers();
+	}
+
 	private List<SlotActivityTimer> setupSlotTimers(FlippingPlugin plugin)
 	{
 		ArrayList<SlotActivityTimer> slotTimers = new ArrayList<>();
@@ -0,0 +1,61 @@
+package com.flippingutilities.model;
+
+import com.google.gson.annotations.SerializedName;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A small summary of an account's data that is stored next to it in {displayName}.summary. It is what gets loaded
+ * at startup for accounts that aren't needed yet, so their full trade history only has to be loaded once the user
+ * actually looks at it.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountSummary
+{
+	@SerializedName("i")
+	private List<ItemSummary> items = new ArrayList<>();
+	@SerializedName("lO")
+	private Map<Integer, OfferEvent> lastOffers = new HashMap<>();
+
+	public static AccountSummary of(AccountData accountData)
+	{
+		List<ItemSummary> items = new ArrayList<>();
+		for (FlippingItem item : accountData.getTrades())
+		{
+			items.add(new ItemSummary(
+				item.getItemId(),
+				item.getLatestActivityTime(),
+				item.getHistory().getNextGeLimitRefresh(),
+				item.getHistory().getItemsBoughtThisLimitWindow()));
+		}
+		return new AccountSummary(items, new HashMap<>(accountData.getLastOffers()));
+	}
+
+	public boolean hasItem(int itemId)
+	{
+		return items.stream().anyMatch(item -> item.getItemId() == itemId);
+	}
+
+	@Data
+	@AllArgsConstructor
+	public static class ItemSummary
+	{
+		@SerializedName("id")
+		private int itemId;
+		@SerializedName("lAT")
+		private Instant latestActivityTime;
+		@SerializedName("nGLR")
+		private Instant nextGeLimitRefresh;
+		@SerializedName("iBTLW")
+		private int itemsBoughtThisLimitWindow;
+	}
+}
@@ -0,0 +1,132 @@
+package com.flippingutilities.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * The trade list of the Accountwide view, which has one item for each item traded on any of the accounts, made by
+ * merging the accounts' items for it with {@link FlippingItem#merge}.
+ * <p>
+ * Rather than merging every item of every account again whenever an offer comes in, only the items that changed are
+ * merged again, and they're updated in place so the panels showing them keep showing them. The merged items are
+ * copies, so changing them in the Accountwide view doesn't change the accounts' items.
+ */
+public class AccountWideTradeList
+{
+	private static final Comparator<FlippingItem> MOST_RECENT_FIRST = Collections.reverseOrder(Comparator.comparing(FlippingItem::getLatestActivityTime));
+
+	private final Map<Integer, FlippingItem> mergedItems = new HashMap<>();
+	private final Set<Integer> changedItemIds = new HashSet<>();
+	private boolean allChanged = true;
+	//handed out until something changes, as it's read far more often than it changes
+	private List<FlippingItem> tradeList = Collections.emptyList();
+
+	/**
+	 * Merges the items with the given ids again the next time the trade list is asked for.
+	 */
+	public synchronized void itemsChanged(Collection<Integer> itemIds)
+	{
+		changedItemIds.addAll(itemIds);
+	}
+
+	/**
+	 * Merges every item again the next time the trade list is asked for. Used when accounts are loaded or deleted, or
+	 * their trades change in ways that aren't tracked by item, like resetting them.
+	 */
+	public synchronized void invalidate()
+	{
+		allChanged = true;
+	}
+
+	/**
+	 * @param accounts the accounts to merge the trades of
+	 * @return the merged items, the most recently traded first. The list can't be changed, but the items in it are
+	 * updated in place the next time it's asked for after they change.
+	 */
+	public synchronized List<FlippingItem> getTrades(Collection<AccountData> accounts)
+	{
+		if (allChanged)
+		{
+			mergeAll(accounts);
+		}
+		else if (!changedItemIds.isEmpty())
+		{
+			changedItemIds.forEach(itemId -> merge(itemId, accounts));
+		}
+		else
+		{
+			return tradeList;
+		}
+
+		allChanged = false;
+		changedItemIds.clear();
+		List<FlippingItem> items = new ArrayList<>(mergedItems.values());
+		items.sort(MOST_RECENT_FIRST);
+		tradeList = Collections.unmodifiableList(items);
+		return tradeList;
+	}
+
+	/**
+	 * Finds the merged item for the given item id without going through the trade list.
+	 *
+	 * @param accounts the accounts to merge the trades of, if anything changed since the trade list was last asked for
+	 */
+	public synchronized Optional<FlippingItem> findItem(int itemId, Collection<AccountData> accounts)
+	{
+		getTrades(accounts);
+		return Optional.ofNullable(mergedItems.get(itemId));
+	}
+
+	private void mergeAll(Collection<AccountData> accounts)
+	{
+		Map<Integer, List<FlippingItem>> itemsById = new LinkedHashMap<>();
+		for (AccountData account : accounts)
+		{
+			for (FlippingItem item : account.getTrades())
+			{
+				itemsById.computeIfAbsent(item.getItemId(), id -> new ArrayList<>()).add(item);
+			}
+		}
+		//items that are still traded are updated in place like when they change one at a time
+		mergedItems.keySet().retainAll(itemsById.keySet());
+		itemsById.forEach(this::update);
+	}
+
+	private void merge(int itemId, Collection<AccountData> accounts)
+	{
+		List<FlippingItem> items = new ArrayList<>();
+		for (AccountData account : accounts)
+		{
+			account.findItem(itemId).ifPresent(items::add);
+		}
+		if (items.isEmpty())
+		{
+			mergedItems.remove(itemId);
+			return;
+		}
+		update(itemId, items);
+	}
+
+	private void update(int itemId, List<FlippingItem> items)
+	{
+		FlippingItem merged = FlippingItem.merge(items);
+		FlippingItem existing = mergedItems.get(itemId);
+		if (existing == null)
+		{
+			mergedItems.put(itemId, merged);
+		}
+		else
+		{
+			existing.copyFrom(merged);
+		}
+	}
+}
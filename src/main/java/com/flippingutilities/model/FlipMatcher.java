@@ -0,0 +1,570 @@
+package com.flippingutilities.model;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Matches an item's offers made after the start of an interval into flips as they come in, so that getting the flips
+ * doesn't mean redoing the matching for the whole interval every time. It comes up with the same flips as
+ * {@link HistoryManager#createFlips(List)} does for the offers in the interval: margin checks are paired first, and
+ * then sells are matched against the buys before them in the order they were made. Like the rest of the interval's
+ * stats, offers before the interval aren't matched, even if a sell in the interval was for them.
+ * <p>
+ * Most of the matching can't be changed by offers that come in later, so it is only done once. The exceptions are
+ * offers that can still be replaced by an update to the same trade and margin checks that could still be paired with
+ * one that comes in later. Everything from the first such offer onwards is matched again whenever the flips are
+ * needed, which is rarely more than a few offers.
+ * <p>
+ * The offers are added and removed on the client thread while the flips are needed on other threads, so the matching
+ * holds the lock of the offer list, the same one changing the list holds.
+ */
+class FlipMatcher
+{
+	//a buy margin check is only paired with a sell margin check that comes in less than a minute after it
+	private static final long MARGIN_CHECK_PAIRING_MS = 60000;
+
+	private final List<OfferEvent> offers;
+	private final Instant earliestTime;
+
+	//how many of the offers have been matched for good and the last of them, to notice when earlier offers change
+	private int matchedCount;
+	private OfferEvent lastMatched;
+
+	//an account's offers that aren't in the order they were made in can't be matched as they come in
+	private boolean outOfOrder;
+
+	//flips no offer can change anymore, ordered by time
+	private final List<Flip> flips = new ArrayList<>();
+
+	//offers are only matched against offers made by the same account
+	private final Map<String, AccountMatcher> accountMatchers = new HashMap<>();
+
+	/**
+	 * @param offers       the item's offers, in the order of their times, which are changed while holding their lock
+	 * @param earliestTime the start of the interval, only offers after it are matched
+	 */
+	FlipMatcher(List<OfferEvent> offers, Instant earliestTime)
+	{
+		this.offers = offers;
+		this.earliestTime = earliestTime;
+	}
+
+	boolean isFor(List<OfferEvent> offers, Instant earliestTime)
+	{
+		return this.offers == offers && this.earliestTime.equals(earliestTime);
+	}
+
+	/**
+	 * Matches the offers that were added since this was last called.
+	 */
+	void update()
+	{
+		synchronized (offers)
+		{
+			if (matchedCount > offers.size() || (lastMatched != null && offers.get(matchedCount - 1) != lastMatched))
+			{
+				reset();
+			}
+			if (lastMatched == null)
+			{
+				//offers before the interval could have been added or removed since the start of it was found
+				matchedCount = firstIndexInInterval();
+			}
+
+			while (!outOfOrder && matchedCount < offers.size())
+			{
+				OfferEvent offer = offers.get(matchedCount);
+				if (offer.isValidOfferEvent())
+				{
+					if (!offer.isComplete() && !isSuperseded(offer, matchedCount))
+					{
+						return;
+					}
+					AccountMatcher accountMatcher = accountMatchers.computeIfAbsent(offer.getMadeBy(), k -> new AccountMatcher());
+					if (accountMatcher.lastTime != null && offer.getTime().isBefore(accountMatcher.lastTime))
+					{
+						outOfOrder = true;
+						return;
+					}
+					accountMatcher.add(offer, this::addFlip);
+				}
+				lastMatched = offer;
+				matchedCount++;
+			}
+		}
+	}
+
+	/**
+	 * Called when an offer is removed from the offers, which only happens to offers that weren't complete.
+	 */
+	void offerRemoved(int index)
+	{
+		synchronized (offers)
+		{
+			if (index < matchedCount)
+			{
+				reset();
+			}
+		}
+	}
+
+	/**
+	 * Gets the flips of the interval, most recent first.
+	 */
+	List<Flip> getFlips()
+	{
+		synchronized (offers)
+		{
+			update();
+			List<Flip> recentFlips = outOfOrder ? null : matchRemainingOffers();
+			if (recentFlips == null)
+			{
+				return matchAllOffers();
+			}
+			recentFlips.sort(Comparator.comparing(Flip::getTime).reversed());
+
+			List<Flip> result = new ArrayList<>();
+			int recentIdx = 0;
+			for (int i = flips.size() - 1; i > -1; i--)
+			{
+				Flip flip = flips.get(i);
+				while (recentIdx < recentFlips.size() && recentFlips.get(recentIdx).getTime().isAfter(flip.getTime()))
+				{
+					result.add(recentFlips.get(recentIdx++));
+				}
+				result.add(flip);
+			}
+			result.addAll(recentFlips.subList(recentIdx, recentFlips.size()));
+			return result;
+		}
+	}
+
+	/**
+	 * @return the index of the first offer made after the start of the interval, found with a binary search as the
+	 * offers are in the order of their times
+	 */
+	private int firstIndexInInterval()
+	{
+		int low = 0;
+		int high = offers.size();
+		while (low < high)
+		{
+			int mid = (low + high) >>> 1;
+			if (isInInterval(offers.get(mid)))
+			{
+				high = mid;
+			}
+			else
+			{
+				low = mid + 1;
+			}
+		}
+		return low;
+	}
+
+	private boolean isInInterval(OfferEvent offer)
+	{
+		return offer.getTime() != null && offer.getTime().isAfter(earliestTime);
+	}
+
+	private void reset()
+	{
+		matchedCount = 0;
+		lastMatched = null;
+		outOfOrder = false;
+		flips.clear();
+		accountMatchers.clear();
+	}
+
+	/**
+	 * An offer that isn't complete is replaced once the trade it's for gets its next update, unless that already
+	 * happened and the trade completed. Offers without a slot are never replaced.
+	 */
+	private boolean isSuperseded(OfferEvent offer, int index)
+	{
+		if (offer.getSlot() == -1)
+		{
+			return true;
+		}
+		for (int i = index + 1; i < offers.size(); i++)
+		{
+			OfferEvent laterOffer = offers.get(i);
+			if (laterOffer.getSlot() == offer.getSlot() && laterOffer.isBuy() == offer.isBuy() && laterOffer.isComplete())
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void addFlip(Flip flip)
+	{
+		//flips mostly come in order, so the right spot is almost always at or near the end
+		int i = flips.size();
+		while (i > 0 && flips.get(i - 1).getTime().isAfter(flip.getTime()))
+		{
+			i--;
+		}
+		flips.add(i, flip);
+	}
+
+	/**
+	 * Matches the offers that haven't been matched for good yet, without changing what has been.
+	 *
+	 * @return the flips from those offers, or null if they can't be matched after the rest
+	 */
+	private List<Flip> matchRemainingOffers()
+	{
+		Map<String, List<OfferEvent>> remainingOffers = new LinkedHashMap<>();
+		for (int i = matchedCount; i < offers.size(); i++)
+		{
+			OfferEvent offer = offers.get(i);
+			if (offer.isValidOfferEvent())
+			{
+				AccountMatcher accountMatcher = accountMatchers.get(offer.getMadeBy());
+				if (accountMatcher != null && accountMatcher.lastTime != null && offer.getTime().isBefore(accountMatcher.lastTime))
+				{
+					return null;
+				}
+				remainingOffers.computeIfAbsent(offer.getMadeBy(), k -> new ArrayList<>()).add(offer);
+			}
+		}
+
+		List<Flip> recentFlips = new ArrayList<>();
+		accountMatchers.forEach((madeBy, accountMatcher) ->
+			accountMatcher.matchRemaining(remainingOffers.getOrDefault(madeBy, Collections.emptyList()), recentFlips));
+		remainingOffers.forEach((madeBy, accountOffers) ->
+		{
+			if (!accountMatchers.containsKey(madeBy))
+			{
+				new AccountMatcher().matchRemaining(accountOffers, recentFlips);
+			}
+		});
+		return recentFlips;
+	}
+
+	/**
+	 * Matches all of the interval's offers from scratch, for when they can't be matched as they come in.
+	 */
+	private List<Flip> matchAllOffers()
+	{
+		Map<String, List<OfferEvent>> groupedOffers = offers.subList(firstIndexInInterval(), offers.size()).stream()
+			.filter(OfferEvent::isValidOfferEvent)
+			.collect(Collectors.groupingBy(OfferEvent::getMadeBy));
+
+		List<Flip> allFlips = new ArrayList<>();
+		groupedOffers.values().forEach(accountOffers -> allFlips.addAll(HistoryManager.createFlips(accountOffers)));
+		allFlips.sort(Comparator.comparing(Flip::getTime).reversed());
+		return allFlips;
+	}
+
+	/**
+	 * Pairs margin checks the same way {@link HistoryManager#pairMarginChecks(List, List, List)} does, but as they
+	 * come in. Margin checks are taken off the queues once it's known whether they were paired, and are put in
+	 * resolved as true if they weren't paired and have to be matched like any other offer.
+	 */
+	private static void pairMarginChecks(Deque<OfferEvent> buys, Deque<OfferEvent> sells, Map<OfferEvent, Boolean> resolved, Consumer<Flip> flipConsumer)
+	{
+		while (!buys.isEmpty() && !sells.isEmpty())
+		{
+			OfferEvent buy = buys.peek();
+			OfferEvent sell = sells.peek();
+			long millisBetweenBuyAndSell = Duration.between(buy.getTime(), sell.getTime()).toMillis();
+			if (millisBetweenBuyAndSell >= 0 && millisBetweenBuyAndSell < MARGIN_CHECK_PAIRING_MS)
+			{
+				flipConsumer.accept(new Flip(buy.getPrice(), sell.getPrice(), sell.getCurrentQuantityInTrade(), sell.getTime(), sell.isMarginCheck(), false));
+				resolved.put(buys.poll(), false);
+				resolved.put(sells.poll(), false);
+			}
+			else if (millisBetweenBuyAndSell >= 0)
+			{
+				resolved.put(buys.poll(), true);
+			}
+			else
+			{
+				resolved.put(sells.poll(), true);
+			}
+		}
+	}
+
+	/**
+	 * Matches sells against buys until one of them runs out, leaving the sell being matched at the front of its
+	 * queue if the buys ran out.
+	 */
+	private static void matchSells(Iterator<BuyLot> buys, Deque<OpenSell> sells, Consumer<Flip> flipConsumer)
+	{
+		BuyLot buy = null;
+		while (!sells.isEmpty())
+		{
+			OpenSell sell = sells.peek();
+			if (sell.quantityLeft() == 0)
+			{
+				sells.poll();
+				//an offer that sold nothing isn't a flip
+				if (sell.quantityMatched > 0)
+				{
+					flipConsumer.accept(sell.toFlip(!sell.offer.isComplete()));
+				}
+				continue;
+			}
+
+			if (buy == null || buy.quantityLeft == 0)
+			{
+				if (!buys.hasNext())
+				{
+					return;
+				}
+				buy = buys.next();
+				continue;
+			}
+
+			int quantity = Math.min(buy.quantityLeft, sell.quantityLeft());
+			sell.match(quantity, buy.price);
+			buy.quantityLeft -= quantity;
+		}
+	}
+
+	/**
+	 * The matching state of one account's offers.
+	 */
+	private static class AccountMatcher
+	{
+		private Instant lastTime;
+
+		private final Deque<OfferEvent> marginCheckBuys = new ArrayDeque<>();
+		private final Deque<OfferEvent> marginCheckSells = new ArrayDeque<>();
+		private final Map<OfferEvent, Boolean> resolvedMarginChecks = new IdentityHashMap<>();
+		//offers that come after a margin check that might still get paired, as an unpaired margin check has to be
+		//matched before them
+		private final Deque<OfferEvent> waitingOffers = new ArrayDeque<>();
+		//unpaired margin checks that are matched once an offer from after them is, as like in createFlips, they go
+		//after the other offers made at the same time as them
+		private final Deque<OfferEvent> unpairedMarginChecks = new ArrayDeque<>();
+
+		//at most one of these has anything in it, as sells are matched as soon as there are buys for them
+		private final Deque<BuyLot> buys = new ArrayDeque<>();
+		private final Deque<OpenSell> sells = new ArrayDeque<>();
+
+		void add(OfferEvent offer, Consumer<Flip> flipConsumer)
+		{
+			lastTime = offer.getTime();
+			if (offer.isMarginCheck())
+			{
+				(offer.isBuy() ? marginCheckBuys : marginCheckSells).add(offer);
+				waitingOffers.add(offer);
+				pairMarginChecks(marginCheckBuys, marginCheckSells, resolvedMarginChecks, flipConsumer);
+			}
+			else if (waitingOffers.isEmpty())
+			{
+				matchInOrder(offer, flipConsumer);
+			}
+			else
+			{
+				waitingOffers.add(offer);
+			}
+
+			resolveMarginChecksByTime();
+			while (!waitingOffers.isEmpty())
+			{
+				OfferEvent waitingOffer = waitingOffers.peek();
+				if (waitingOffer.isMarginCheck())
+				{
+					Boolean unpaired = resolvedMarginChecks.remove(waitingOffer);
+					if (unpaired == null)
+					{
+						break;
+					}
+					waitingOffers.poll();
+					if (unpaired)
+					{
+						matchUnpairedMarginChecksBefore(waitingOffer, flipConsumer);
+						unpairedMarginChecks.add(waitingOffer);
+					}
+				}
+				else
+				{
+					matchInOrder(waitingOffers.poll(), flipConsumer);
+				}
+			}
+		}
+
+		/**
+		 * Offers come in the order they were made, so a margin check can't be paired anymore once enough time has
+		 * passed since it for a margin check coming in next to be too late for it.
+		 */
+		private void resolveMarginChecksByTime()
+		{
+			while (!marginCheckBuys.isEmpty() &&
+				Duration.between(marginCheckBuys.peek().getTime(), lastTime).toMillis() >= MARGIN_CHECK_PAIRING_MS)
+			{
+				resolvedMarginChecks.put(marginCheckBuys.poll(), true);
+			}
+			while (!marginCheckSells.isEmpty() && lastTime.isAfter(marginCheckSells.peek().getTime()))
+			{
+				resolvedMarginChecks.put(marginCheckSells.poll(), true);
+			}
+		}
+
+		private void matchInOrder(OfferEvent offer, Consumer<Flip> flipConsumer)
+		{
+			matchUnpairedMarginChecksBefore(offer, flipConsumer);
+			match(offer, flipConsumer);
+		}
+
+		private void matchUnpairedMarginChecksBefore(OfferEvent offer, Consumer<Flip> flipConsumer)
+		{
+			while (!unpairedMarginChecks.isEmpty() && offer.getTime().isAfter(unpairedMarginChecks.peek().getTime()))
+			{
+				match(unpairedMarginChecks.poll(), flipConsumer);
+			}
+		}
+
+		private void match(OfferEvent offer, Consumer<Flip> flipConsumer)
+		{
+			if (offer.isBuy())
+			{
+				buys.add(new BuyLot(offer.getPrice(), offer.getCurrentQuantityInTrade()));
+			}
+			else
+			{
+				sells.add(new OpenSell(offer));
+			}
+			matchSells(buys.iterator(), sells, flipConsumer);
+			while (!buys.isEmpty() && buys.peek().quantityLeft == 0)
+			{
+				buys.poll();
+			}
+		}
+
+		/**
+		 * Matches this account's offers that haven't been matched for good on top of a copy of the state of the
+		 * ones that have, the same way they'd be matched if no other offers came in.
+		 */
+		void matchRemaining(List<OfferEvent> remainingOffers, List<Flip> flips)
+		{
+			Deque<OfferEvent> buyMarginChecks = new ArrayDeque<>(marginCheckBuys);
+			Deque<OfferEvent> sellMarginChecks = new ArrayDeque<>(marginCheckSells);
+			Map<OfferEvent, Boolean> resolved = new IdentityHashMap<>(resolvedMarginChecks);
+			for (OfferEvent offer : remainingOffers)
+			{
+				if (offer.isMarginCheck())
+				{
+					(offer.isBuy() ? buyMarginChecks : sellMarginChecks).add(offer);
+					pairMarginChecks(buyMarginChecks, sellMarginChecks, resolved, flips::add);
+				}
+			}
+			//nothing is left to pair them with
+			buyMarginChecks.forEach(offer -> resolved.put(offer, true));
+			sellMarginChecks.forEach(offer -> resolved.put(offer, true));
+
+			//like in createFlips, unpaired margin checks go after the other offers before sorting
+			List<OfferEvent> offersToMatch = new ArrayList<>();
+			List<OfferEvent> unpaired = new ArrayList<>(unpairedMarginChecks);
+			for (OfferEvent offer : Iterables.concat(waitingOffers, remainingOffers))
+			{
+				if (!offer.isMarginCheck())
+				{
+					offersToMatch.add(offer);
+				}
+				else if (resolved.get(offer))
+				{
+					unpaired.add(offer);
+				}
+			}
+			offersToMatch.addAll(unpaired);
+			offersToMatch.sort(Comparator.comparing(OfferEvent::getTime));
+
+			Deque<OpenSell> sellsToMatch = sells.stream().map(OpenSell::copy).collect(Collectors.toCollection(ArrayDeque::new));
+			List<BuyLot> newBuys = new ArrayList<>();
+			for (OfferEvent offer : offersToMatch)
+			{
+				if (offer.isBuy())
+				{
+					newBuys.add(new BuyLot(offer.getPrice(), offer.getCurrentQuantityInTrade()));
+				}
+				else
+				{
+					sellsToMatch.add(new OpenSell(offer));
+				}
+			}
+			//the buys that have been matched for good are only copied once they're matched against
+			matchSells(Iterators.concat(Iterators.transform(buys.iterator(), BuyLot::copy), newBuys.iterator()), sellsToMatch, flips::add);
+
+			//the buys ran out partway through this sell
+			OpenSell partiallyMatchedSell = sellsToMatch.peek();
+			if (partiallyMatchedSell != null && partiallyMatchedSell.quantityMatched > 0)
+			{
+				flips.add(partiallyMatchedSell.toFlip(true));
+			}
+		}
+	}
+
+	private static class BuyLot
+	{
+		private final int price;
+		private int quantityLeft;
+
+		BuyLot(int price, int quantityLeft)
+		{
+			this.price = price;
+			this.quantityLeft = quantityLeft;
+		}
+
+		BuyLot copy()
+		{
+			return new BuyLot(price, quantityLeft);
+		}
+	}
+
+	private static class OpenSell
+	{
+		private final OfferEvent offer;
+		private int quantityMatched;
+		private long cost;
+
+		OpenSell(OfferEvent offer)
+		{
+			this.offer = offer;
+		}
+
+		int quantityLeft()
+		{
+			return offer.getCurrentQuantityInTrade() - quantityMatched;
+		}
+
+		void match(int quantity, int price)
+		{
+			quantityMatched += quantity;
+			cost += (long) quantity * price;
+		}
+
+		Flip toFlip(boolean ongoing)
+		{
+			return new Flip((int) (cost / quantityMatched), offer.getPrice(), quantityMatched, offer.getTime(), false, ongoing);
+		}
+
+		OpenSell copy()
+		{
+			OpenSell copy = new OpenSell(offer);
+			copy.quantityMatched = quantityMatched;
+			copy.cost = cost;
+			return copy;
+		}
+	}
+}
@@ -26,6 +26,7 @@
 
 package com.flippingutilities.model;
 
+import com.flippingutilities.utilities.ListUtils;
 import com.google.gson.annotations.SerializedName;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -35,6 +36,7 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 
@@ -188,30 +190,68 @@ public class FlippingItem
 	}
 
 	/**
-	 * combines two flipping items together (this only makes sense if they are for the same item) by adding
-	 * their histories together and retaining the other properties of the latest active item.
+	 * combines flipping items together (this only makes sense if they are for the same item) by merging their
+	 * histories and retaining the other properties of the latest active item. The histories are already in the order
+	 * of their offers' times, so they're merged in one pass rather than one item at a time and sorted again.
+	 * <p>
+	 * The merged item has copies of the items' offers, so changing it doesn't change the items it was made from.
 	 *
 	 * @return merged flipping item
 	 */
-	public static FlippingItem merge(FlippingItem item1, FlippingItem item2)
+	public static FlippingItem merge(List<FlippingItem> items)
 	{
-		if (item1 == null)
+		//on equal activity times the first item is the latest active one
+		FlippingItem latestActiveItem = items.get(0);
+		boolean favorite = false;
+		for (FlippingItem item : items)
 		{
-			return item2;
+			if (item.getLatestActivityTime().compareTo(latestActiveItem.getLatestActivityTime()) > 0)
+			{
+				latestActiveItem = item;
+			}
+			favorite |= item.isFavorite();
 		}
 
-		if (item1.getLatestActivityTime().compareTo(item2.getLatestActivityTime()) >= 0)
+		//the latest active item's offers go first among offers with the same time, like when they were appended to it
+		List<List<OfferEvent>> histories = new ArrayList<>();
+		histories.add(latestActiveItem.getHistory().getCompressedOfferEvents());
+		for (FlippingItem item : items)
 		{
-			item1.getHistory().getCompressedOfferEvents().addAll(item2.getHistory().getCompressedOfferEvents());
-			item1.setFavorite(item1.isFavorite() || item2.isFavorite());
-			return item1;
+			if (item != latestActiveItem)
+			{
+				histories.add(item.getHistory().getCompressedOfferEvents());
+			}
 		}
-		else
+		List<OfferEvent> mergedOffers = new ArrayList<>();
+		Iterator<OfferEvent> offers = ListUtils.mergeSorted(histories, OfferList.BY_TIME);
+		while (offers.hasNext())
 		{
-			item2.getHistory().getCompressedOfferEvents().addAll(item1.getHistory().getCompressedOfferEvents());
-			item2.setFavorite(item2.isFavorite() || item1.isFavorite());
-			return item2;
+			mergedOffers.add(offers.next().clone());
 		}
+
+		FlippingItem merged = latestActiveItem.withHistory(latestActiveItem.getHistory().withOffers(mergedOffers));
+		merged.setFavorite(favorite);
+		return merged;
+	}
+
+	/**
+	 * Makes this item the same as the given one, apart from whether its panel is expanded, so the panels showing this
+	 * item show the other one's data. Used to update the items of the Accountwide view in place.
+	 */
+	void copyFrom(FlippingItem other)
+	{
+		itemName = other.itemName;
+		totalGELimit = other.totalGELimit;
+		history = other.history;
+		flippedBy = other.flippedBy;
+		validFlippingPanelItem = other.validFlippingPanelItem;
+		favorite = other.favorite;
+		favoriteCode = other.favoriteCode;
+		latestInstaBuy = other.latestInstaBuy;
+		latestInstaSell = other.latestInstaSell;
+		latestBuy = other.latestBuy;
+		latestSell = other.latestSell;
+		latestActivityTime = other.latestActivityTime;
 	}
 
 	public long currentProfit(List<OfferEvent> tradeList)
@@ -239,7 +279,7 @@ public class FlippingItem
 		return history.countItemsFlipped(tradeList);
 	}
 
-	public ArrayList<OfferEvent> getIntervalHistory(Instant earliestTime)
+	public List<OfferEvent> getIntervalHistory(Instant earliestTime)
 	{
 		return history.getIntervalsHistory(earliestTime);
 	}
@@ -259,9 +299,9 @@ public class FlippingItem
 		return history.getNextGeLimitRefresh();
 	}
 
-	public void validateGeProperties()
+	public void validateGeProperties(Instant now)
 	{
-		history.validateGeProperties();
+		history.validateGeProperties(now);
 	}
 
 	public List<Flip> getFlips(Instant earliestTime)
@@ -269,6 +309,11 @@ public class FlippingItem
 		return history.getFlips(earliestTime);
 	}
 
+	public IntervalStats getIntervalStats(Instant earliestTime)
+	{
+		return history.getIntervalStats(earliestTime);
+	}
+
 	public boolean hasValidOffers()
 	{
 		return history.hasValidOffers();
@@ -337,6 +382,40 @@ public class FlippingItem
 		latestActivityTime = history.getCompressedOfferEvents().size() == 0? Instant.now() : history.getCompressedOfferEvents().get(history.getCompressedOfferEvents().size()-1).getTime();
 	}
 
+	/**
+	 * @return the offers that the latest buy, sell and margin check properties are based on. These are the offers the
+	 * flipping panel needs no matter how long ago they were made.
+	 */
+	public List<OfferEvent> getLatestOffers() {
+		List<OfferEvent> latestOffers = new ArrayList<>();
+		history.getLatestOfferThatMatchesPredicate(offer -> offer.isBuy()).ifPresent(latestOffers::add);
+		history.getLatestOfferThatMatchesPredicate(offer -> !offer.isBuy()).ifPresent(latestOffers::add);
+		history.getLatestOfferThatMatchesPredicate(offer -> offer.isBuy() & offer.isMarginCheck()).ifPresent(latestOffers::add);
+		history.getLatestOfferThatMatchesPredicate(offer -> !offer.isBuy() & offer.isMarginCheck()).ifPresent(latestOffers::add);
+		return latestOffers;
+	}
+
+	/**
+	 * Creates a copy of this item with a different history. Used to persist an item's history in several parts.
+	 */
+	public FlippingItem withHistory(HistoryManager history) {
+		return new FlippingItem(
+				itemId,
+				itemName,
+				totalGELimit,
+				history,
+				flippedBy,
+				validFlippingPanelItem,
+				favorite,
+				favoriteCode,
+				latestInstaBuy,
+				latestInstaSell,
+				latestBuy,
+				latestSell,
+				latestActivityTime,
+				expand);
+	}
+
 	public void setOfferMadeBy() {
 		history.getCompressedOfferEvents().forEach(o -> o.setMadeBy(flippedBy));
 	}
@@ -0,0 +1,98 @@
+package com.flippingutilities.model;
+
+import lombok.AllArgsConstructor;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Resets the GE limit windows of items once their refresh time has passed. Rather than every item checking whether its
+ * window ran out, the items' refresh times are kept in a queue, so only the earliest one has to be looked at to know
+ * whether any window ran out.
+ * <p>
+ * Items are tracked again whenever their window might have changed, which is when offers are added to them or they
+ * are loaded. The queue can have old refresh times for an item, which are skipped.
+ */
+public class GeLimitTracker
+{
+	private final PriorityQueue<Deadline> deadlines = new PriorityQueue<>(Comparator.comparing((Deadline deadline) -> deadline.refreshTime));
+	//the refresh time each item is in the queue with, any other ones in the queue for it are old
+	private final Map<FlippingItem, Instant> refreshTimes = new HashMap<>();
+
+	/**
+	 * Resets the item's GE limit window once its refresh time has passed, if it has one.
+	 */
+	public synchronized void track(FlippingItem item)
+	{
+		Instant refreshTime = item.getGeLimitResetTime();
+		if (refreshTime == null || refreshTime.equals(refreshTimes.get(item)))
+		{
+			return;
+		}
+		refreshTimes.put(item, refreshTime);
+		deadlines.add(new Deadline(refreshTime, item));
+	}
+
+	public synchronized void trackAll(Collection<FlippingItem> items)
+	{
+		items.forEach(this::track);
+	}
+
+	/**
+	 * Stops resetting the items' GE limit windows, for items that aren't used anymore because they were deleted or
+	 * their account was deleted or loaded again. Their refresh times are taken out of the queue too, so the queue
+	 * doesn't keep the items around until then.
+	 */
+	public synchronized void untrackAll(Collection<FlippingItem> items)
+	{
+		Set<FlippingItem> untrackedItems = new HashSet<>(items);
+		untrackedItems.forEach(refreshTimes::remove);
+		deadlines.removeIf(deadline -> untrackedItems.contains(deadline.item));
+	}
+
+	/**
+	 * Resets the windows of the items whose refresh time has passed.
+	 *
+	 * @return the items whose windows were reset
+	 */
+	public synchronized List<FlippingItem> expire(Instant now)
+	{
+		List<FlippingItem> expiredItems = new ArrayList<>();
+		while (!deadlines.isEmpty() && !deadlines.peek().refreshTime.isAfter(now))
+		{
+			Deadline deadline = deadlines.poll();
+			FlippingItem item = deadline.item;
+			if (!deadline.refreshTime.equals(refreshTimes.get(item)))
+			{
+				continue;
+			}
+			refreshTimes.remove(item);
+
+			//the window was renewed without the item being tracked again
+			Instant refreshTime = item.getGeLimitResetTime();
+			if (refreshTime != null && refreshTime.isAfter(now))
+			{
+				track(item);
+				continue;
+			}
+			item.validateGeProperties(now);
+			expiredItems.add(item);
+		}
+		return expiredItems;
+	}
+
+	@AllArgsConstructor
+	private static class Deadline
+	{
+		private final Instant refreshTime;
+		private final FlippingItem item;
+	}
+}
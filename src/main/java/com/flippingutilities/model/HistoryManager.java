@@ -33,7 +33,6 @@ import com.google.gson.annotations.SerializedName;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
-import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
 import java.time.Duration;
@@ -49,14 +48,12 @@ import java.util.stream.Collectors;
  * next ge limit refresh for this an item will be.
  */
 @Slf4j
-@AllArgsConstructor
 @NoArgsConstructor
 public class HistoryManager
 {
+	//an OfferList, unless it was just deserialized or passed to the constructor
 	@SerializedName("sO")
-	@Getter
-	@Setter
-	private List<OfferEvent> compressedOfferEvents = new ArrayList<>();
+	private List<OfferEvent> compressedOfferEvents = new OfferList();
 
 	@SerializedName("nGLR")
 	@Getter
@@ -66,16 +63,62 @@ public class HistoryManager
 	@Getter
 	private int itemsBoughtThisLimitWindow;
 
+	//no longer used, as what the slots' trades in progress bought is taken from their offers in the history. Kept so
+	//the saved data stays the same.
 	@SerializedName("pIB")
+	@Getter
 	private int itemsBoughtThroughCompleteOffers;
 
+	//only created once the flips of an interval are needed, and then kept up to date as offers come in until the
+	//flips of another interval are needed. The stats are worked out on other threads than the offers come in on, so
+	//it's only used while holding the lock of the offer list.
+	private transient volatile FlipMatcher flipMatcher;
+
+	//the stats of the interval they were last asked for, until the offers change
+	private transient volatile CachedIntervalStats cachedIntervalStats;
+
+	public HistoryManager(List<OfferEvent> compressedOfferEvents, Instant nextGeLimitRefresh, int itemsBoughtThisLimitWindow, int itemsBoughtThroughCompleteOffers)
+	{
+		this.compressedOfferEvents = compressedOfferEvents;
+		this.nextGeLimitRefresh = nextGeLimitRefresh;
+		this.itemsBoughtThisLimitWindow = itemsBoughtThisLimitWindow;
+		this.itemsBoughtThroughCompleteOffers = itemsBoughtThroughCompleteOffers;
+	}
+
+	public List<OfferEvent> getCompressedOfferEvents()
+	{
+		return offers();
+	}
+
+	public void setCompressedOfferEvents(List<OfferEvent> compressedOfferEvents)
+	{
+		this.compressedOfferEvents = new OfferList(compressedOfferEvents);
+	}
+
+	private synchronized OfferList offers()
+	{
+		if (!(compressedOfferEvents instanceof OfferList))
+		{
+			compressedOfferEvents = new OfferList(compressedOfferEvents);
+		}
+		return (OfferList) compressedOfferEvents;
+	}
+
 	public HistoryManager clone()
 	{
-		List<OfferEvent> clonedCompressedOfferEvents = compressedOfferEvents.stream().map(OfferEvent::clone).collect(Collectors.toList());
+		List<OfferEvent> clonedCompressedOfferEvents = offers().stream().map(OfferEvent::clone).collect(Collectors.toList());
 		Instant clonedGeLimitRefresh = nextGeLimitRefresh == null ? null : Instant.ofEpochMilli(nextGeLimitRefresh.toEpochMilli());
 		return new HistoryManager(clonedCompressedOfferEvents, clonedGeLimitRefresh, itemsBoughtThisLimitWindow, itemsBoughtThroughCompleteOffers);
 	}
 
+	/**
+	 * Creates a copy of this history that only has the given offers but the same ge limit state.
+	 */
+	public HistoryManager withOffers(List<OfferEvent> offers)
+	{
+		return new HistoryManager(offers, nextGeLimitRefresh, itemsBoughtThisLimitWindow, itemsBoughtThroughCompleteOffers);
+	}
+
 	public void updateHistory(OfferEvent newOffer)
 	{
 		//if slot is -1 than the offer was added manually from GE history.
@@ -87,71 +130,53 @@ public class HistoryManager
 			deletePreviousOffersForTrade(newOffer);
 		}
 
-		compressedOfferEvents.add(newOffer);
+		OfferList offers = offers();
+		synchronized (offers)
+		{
+			offers.add(newOffer);
+			FlipMatcher matcher = flipMatcher;
+			if (matcher != null)
+			{
+				matcher.update();
+			}
+		}
 	}
 
 	/**
-	 * Updates when the ge limit will refresh and how many items have been bought since the last
-	 * ge limit refresh.
+	 * Updates when the ge limit will refresh and how many items have been bought since the last ge limit refresh.
+	 * Only what was bought since the previous offer of the same trade is added, which is taken from the trade in
+	 * progress in the offer's slot. That way partial fills in several slots at once are all counted, and what a trade
+	 * bought before the limit refreshed isn't counted again after it.
 	 *
-	 * @param newOfferEvent offer event just received
+	 * @param newOfferEvent offer event just received, before the previous offers of its trade are deleted
 	 */
 	private void updateGeLimitProperties(OfferEvent newOfferEvent)
 	{
-
-		//there is a small bug in this method. Basically, when we get non-complete offers from different slots it will
-		//only take one of the slots buys into account. When the offer completes or is cancelled things are fine.
-
 		if (!newOfferEvent.isBuy())
 		{
 			return;
 		}
-		// when the time of the last offer (most recent offer) is greater than nextGeLimitRefresh,
-		// you know the ge limits have refreshed. Since this is the first offer after the ge limits
-		// have refreshed, the next refresh will be four hours after this offer's buy time.
-
-
-		//if we got the event before login, there could be a problem. If the login was outside the current window
-		//you don't know whether the event occurred within the window or outside.
-
-		//if the login was within the window that was established by the purchase of an item while logged in
-		// there isn't a problem, bc u know to just add to the items bought this window.
 
+		int quantity = newOfferEvent.getCurrentQuantityInTrade();
+		int boughtBefore = offers().openTradeQuantity(newOfferEvent.getSlot(), true);
+		//if the slot's trade in progress bought more than the new offer, it was replaced by a new trade without the
+		//offer that ended it coming in, so everything the new offer bought is new.
+		int bought = quantity >= boughtBefore ? quantity - boughtBefore : quantity;
 
+		//when the offer is after nextGeLimitRefresh, the ge limit has refreshed since the last item was bought. As
+		//the window starts with the first item bought after that, the next refresh is four hours after this offer.
 		if (nextGeLimitRefresh == null || newOfferEvent.getTime().compareTo(nextGeLimitRefresh) > 0)
 		{
-			//this isn't always the correct things to do, but more often than not, its better to assume the offer came in
-			//during a previous window.
-//			if (newOfferEvent.isBeforeLogin()) {
-//				return;
-//			}
-
-			nextGeLimitRefresh = newOfferEvent.getTime().plus(4, ChronoUnit.HOURS);
-			if (newOfferEvent.isComplete())
+			if (bought == 0)
 			{
-				itemsBoughtThroughCompleteOffers = newOfferEvent.getCurrentQuantityInTrade();
-				itemsBoughtThisLimitWindow = itemsBoughtThroughCompleteOffers;
-			}
-			else
-			{
-				itemsBoughtThroughCompleteOffers = 0;
-				itemsBoughtThisLimitWindow = newOfferEvent.getCurrentQuantityInTrade();
-
+				return;
 			}
+			nextGeLimitRefresh = newOfferEvent.getTime().plus(4, ChronoUnit.HOURS);
+			itemsBoughtThisLimitWindow = bought;
 		}
-		//if the last offer (most recent offer) is before the next ge limit refresh, add its currentQuantityInTrade to the
-		//amount bought this limit window.
 		else
 		{
-			if (newOfferEvent.isComplete())
-			{
-				itemsBoughtThroughCompleteOffers += newOfferEvent.getCurrentQuantityInTrade();
-				itemsBoughtThisLimitWindow = itemsBoughtThroughCompleteOffers;
-			}
-			else
-			{
-				itemsBoughtThisLimitWindow = itemsBoughtThroughCompleteOffers + newOfferEvent.getCurrentQuantityInTrade();
-			}
+			itemsBoughtThisLimitWindow += bought;
 		}
 	}
 
@@ -163,20 +188,17 @@ public class HistoryManager
 	 */
 	public void deletePreviousOffersForTrade(OfferEvent newOfferEvent)
 	{
-		for (int i = compressedOfferEvents.size() - 1; i > -1; i--)
+		//the offers of the same slot after its last complete offer belong to the same trade as the new offer, the ones
+		//before it belong to previous trades
+		OfferList offers = offers();
+		synchronized (offers)
 		{
-			OfferEvent aPreviousOffer = compressedOfferEvents.get(i);
-			if (aPreviousOffer.getSlot() == newOfferEvent.getSlot() && aPreviousOffer.isBuy() == newOfferEvent.isBuy())
+			FlipMatcher matcher = flipMatcher;
+			for (int index : offers.removeOpenTrade(newOfferEvent.getSlot(), newOfferEvent.isBuy()))
 			{
-				//if it belongs to the same slot and its complete, it must belong to a previous trade given that
-				//the most recent offer was for the same slot
-				if (aPreviousOffer.isComplete())
-				{
-					return;
-				}
-				else
+				if (matcher != null)
 				{
-					compressedOfferEvents.remove(i);
+					matcher.offerRemoved(index);
 				}
 			}
 		}
@@ -199,6 +221,9 @@ public class HistoryManager
 	 * This method finds the value of a list of offers up to the number of items flipped. The boolean parameter
 	 * determines if we calculate from buyList or sellList.
 	 *
+	 * When the trade list is an item's offers or a view of them from getIntervalsHistory, as it is everywhere
+	 * the stats are shown, this comes from the running totals the offers keep instead of going through them.
+	 *
 	 * @param tradeList  The list of standardized offers whose cashflow we want the value of.
 	 * @param getExpense Options parameter that calculates, if true, the total expenses accrued
 	 *                   and, if false, the total revenues accrued from the trades.
@@ -206,6 +231,11 @@ public class HistoryManager
 	 */
 	public static long getFlippedCashFlow(List<OfferEvent> tradeList, boolean getExpense)
 	{
+		OfferList.Totals totals = OfferList.totalsOf(tradeList);
+		if (totals != null)
+		{
+			return totals.valueOfFirst(getExpense, totals.itemsFlipped());
+		}
 		return getValueOfTrades(getSaleList(tradeList, getExpense), countItemsFlipped(tradeList));
 	}
 
@@ -218,6 +248,11 @@ public class HistoryManager
 	 */
 	public static long getTotalCashFlow(List<OfferEvent> tradeList, boolean getExpense)
 	{
+		OfferList.Totals totals = OfferList.totalsOf(tradeList);
+		if (totals != null)
+		{
+			return totals.value(getExpense);
+		}
 		return getValueOfTrades(getSaleList(tradeList, getExpense), -1);
 	}
 
@@ -230,6 +265,12 @@ public class HistoryManager
 	 */
 	public static int countItemsFlipped(List<OfferEvent> tradeList)
 	{
+		OfferList.Totals totals = OfferList.totalsOf(tradeList);
+		if (totals != null)
+		{
+			return (int) totals.itemsFlipped();
+		}
+
 		int numBoughtItems = 0;
 		int numSoldItems = 0;
 
@@ -308,7 +349,7 @@ public class HistoryManager
 			}
 			else
 			{
-				moneySpent += offer.getCurrentQuantityInTrade() * offer.getPrice();
+				moneySpent += (long) offer.getCurrentQuantityInTrade() * offer.getPrice();
 				itemsSeen += offer.getCurrentQuantityInTrade();
 			}
 
@@ -318,23 +359,53 @@ public class HistoryManager
 	}
 
 	/**
-	 * Returns the history of the item that were traded between earliestTime and now.
+	 * Gets the stats of the offers made after the given time. They're only worked out again once the offers change
+	 * or the stats of a different interval are asked for, so the stats of every item can be asked for on every
+	 * rebuild of the statistics tab, even though only the items that were traded since the last one changed.
 	 *
-	 * @param earliestTime the earliest time that trades from the trade history are added to the resulting list.
-	 * @return A list of offers that were within the interval of earliestTime and now.
+	 * @param earliestTime the start of the interval
+	 * @return the stats of the interval
 	 */
-	public ArrayList<OfferEvent> getIntervalsHistory(Instant earliestTime)
+	public IntervalStats getIntervalStats(Instant earliestTime)
 	{
-		ArrayList<OfferEvent> result = new ArrayList<>();
-
-		for (OfferEvent offer : compressedOfferEvents)
+		OfferList offers = offers();
+		//so the stats are of the offers the version they are cached with is of
+		synchronized (offers)
 		{
-			if (offer.getTime().isAfter(earliestTime) && offer.isValidOfferEvent())
+			int version = offers.getVersion();
+			CachedIntervalStats cached = cachedIntervalStats;
+			if (cached != null && cached.version == version && Objects.equals(cached.earliestTime, earliestTime))
 			{
-				result.add(offer);
+				return cached.stats;
 			}
+
+			List<OfferEvent> intervalHistory = getIntervalsHistory(earliestTime);
+			IntervalStats stats = new IntervalStats(
+				intervalHistory.size(),
+				currentProfit(intervalHistory),
+				getFlippedCashFlow(intervalHistory, true),
+				countItemsFlipped(intervalHistory),
+				intervalHistory.isEmpty() ? 0 : getFlips(earliestTime).size());
+			cachedIntervalStats = new CachedIntervalStats(earliestTime, version, stats);
+			return stats;
 		}
+	}
 
+	/**
+	 * Returns the history of the item that were traded between earliestTime and now. Unless some of the offers were
+	 * deleted by the user recently, this is a view of the offers rather than a copy, found with a binary search.
+	 *
+	 * @param earliestTime the earliest time that trades from the trade history are added to the resulting list.
+	 * @return An unmodifiable list of offers that were within the interval of earliestTime and now.
+	 */
+	public List<OfferEvent> getIntervalsHistory(Instant earliestTime)
+	{
+		OfferList offers = offers();
+		List<OfferEvent> result = offers.after(earliestTime);
+		if (offers.hasInvalidOffers())
+		{
+			return result.stream().filter(OfferEvent::isValidOfferEvent).collect(Collectors.toList());
+		}
 		return result;
 	}
 
@@ -342,16 +413,16 @@ public class HistoryManager
 	 * This is to prevent old values from remaining for items that a user has bought and whose
 	 * refresh times have already passed. If the user buys the item again, the values will be up to date,
 	 * so this method wouldn't be needed, but there is no guarantee the user buys the item again after the
-	 * limit refreshes. This method should be called periodically to ensure no old values will remain.
+	 * limit refreshes. The {@link GeLimitTracker} calls this once the refresh time has passed.
 	 */
-	public void validateGeProperties()
+	public void validateGeProperties(Instant now)
 	{
 		if (nextGeLimitRefresh == null)
 		{
 			return;
 		}
 
-		if (Instant.now().compareTo(nextGeLimitRefresh) >= 0)
+		if (now.compareTo(nextGeLimitRefresh) >= 0)
 		{
 			nextGeLimitRefresh = null;
 			itemsBoughtThisLimitWindow = 0;
@@ -360,7 +431,7 @@ public class HistoryManager
 
 	public boolean hasValidOffers()
 	{
-		return compressedOfferEvents.stream().anyMatch(OfferEvent::isValidOfferEvent);
+		return offers().stream().anyMatch(OfferEvent::isValidOfferEvent);
 	}
 
 	public void invalidateOffers(List<OfferEvent> offerList)
@@ -371,41 +442,46 @@ public class HistoryManager
 
 	public void removeInvalidatedOfferEvents()
 	{
-		if (nextGeLimitRefresh == null)
+		OfferList offers = offers();
+		synchronized (offers)
 		{
-			compressedOfferEvents.removeIf(offer -> !offer.isValidOfferEvent());
-			return;
-		}
+			//the invalidated offers could have been matched already
+			flipMatcher = null;
+			if (nextGeLimitRefresh == null)
+			{
+				offers.removeIf(offer -> !offer.isValidOfferEvent());
+				return;
+			}
 
-		Instant startOfRefresh = nextGeLimitRefresh.minus(4, ChronoUnit.HOURS);
+			Instant startOfRefresh = nextGeLimitRefresh.minus(4, ChronoUnit.HOURS);
 
-		compressedOfferEvents.removeIf(offer -> !offer.isValidOfferEvent() &&
-			(offer.getTime().isAfter(nextGeLimitRefresh) || offer.getTime().isBefore(startOfRefresh)));
+			offers.removeIf(offer -> !offer.isValidOfferEvent() &&
+				(offer.getTime().isAfter(nextGeLimitRefresh) || offer.getTime().isBefore(startOfRefresh)));
+		}
 	}
 
 	/**
-	 * Creates Flips from offers. Flips represent a buy trade followed by a sell trade. A trade is a collection
-	 * of offers from the empty offer to the completed offer. A completed offer marks the end of a trade.
+	 * Gets the Flips made after the given time. Flips represent a buy trade followed by a sell trade. A trade is a
+	 * collection of offers from the empty offer to the completed offer. A completed offer marks the end of a trade.
+	 * Only the offers in the interval are matched, so the flips add up to the rest of the interval's stats. Offers are
+	 * only matched with offers from the same account, which is only relevant for the account wide trade list.
 	 *
-	 * @param earliestTime the time after which trades should be looked at
-	 * @return flips
+	 * @param earliestTime the time after which flips should be looked at
+	 * @return flips, most recent first
 	 */
 	public List<Flip> getFlips(Instant earliestTime)
 	{
-		ArrayList<OfferEvent> intervalHistory = getIntervalsHistory(earliestTime);
-
-		//group offers based on which account those offers belong to (this is really only relevant when getting the flips
-		//of the account wide tradelist as you don't want to match offers from diff accounts.
-		Map<String, List<OfferEvent>> groupedOffers = intervalHistory.stream().collect(Collectors.groupingBy(OfferEvent::getMadeBy));
-
-		//take each offer list and create flips out of them, then put those flips into one list.
-		List<Flip> flips = new ArrayList<>();
-		groupedOffers.values().forEach(offers -> flips.addAll(createFlips(offers)));
-
-		flips.sort(Comparator.comparing(Flip::getTime));
-		Collections.reverse(flips);
-
-		return flips;
+		OfferList offers = offers();
+		synchronized (offers)
+		{
+			FlipMatcher matcher = flipMatcher;
+			if (matcher == null || !matcher.isFor(offers, earliestTime))
+			{
+				matcher = new FlipMatcher(offers, earliestTime);
+				flipMatcher = matcher;
+			}
+			return matcher.getFlips();
+		}
 	}
 
 	/**
@@ -420,26 +496,9 @@ public class HistoryManager
 	 */
 	public List<OfferEvent> getOfferMatches(OfferEvent offer, int limit)
 	{
-		List<OfferEvent> matches = new ArrayList<>();
-		int count = 0;
-		//look from the back to get the N most recent matches where N = limit.
-		for (int i = compressedOfferEvents.size() - 1; i > -1; i--)
-		{
-			OfferEvent pastOffer = compressedOfferEvents.get(i);
-			//don't just compare state because the scraped offer will only be of state BOUGHT/SOLD, whereas the offer in history
-			//might be CANCELLED_BUY/CANCELLED_SELL
-			if (offer.getPrice() == pastOffer.getPrice() && offer.getCurrentQuantityInTrade() == pastOffer.getCurrentQuantityInTrade()
-				&& offer.isBuy() == pastOffer.isBuy() && pastOffer.isComplete())
-			{
-				matches.add(pastOffer);
-				count++;
-				if (count == limit)
-				{
-					break;
-				}
-			}
-		}
-		return matches;
+		//don't just compare state because the scraped offer will only be of state BOUGHT/SOLD, whereas the offer in history
+		//might be CANCELLED_BUY/CANCELLED_SELL
+		return offers().completeOffers(offer.getPrice(), offer.getCurrentQuantityInTrade(), offer.isBuy(), limit > 0 ? limit : Integer.MAX_VALUE);
 	}
 
 	/**
@@ -611,11 +670,12 @@ public class HistoryManager
 
 	public Optional<OfferEvent> getLatestOfferThatMatchesPredicate(Predicate<OfferEvent> predicate)
 	{
-		for (int i = compressedOfferEvents.size() - 1; i > -1; i--)
+		OfferList offers = offers();
+		for (int i = offers.size() - 1; i > -1; i--)
 		{
-			if (predicate.test(compressedOfferEvents.get(i)))
+			if (predicate.test(offers.get(i)))
 			{
-				return Optional.of(compressedOfferEvents.get(i));
+				return Optional.of(offers.get(i));
 			}
 		}
 		return Optional.empty();
@@ -626,4 +686,12 @@ public class HistoryManager
 		itemsBoughtThisLimitWindow = 0;
 		nextGeLimitRefresh = Instant.now();
 	}
-}
\ No newline at end of file
+
+	@AllArgsConstructor
+	private static class CachedIntervalStats
+	{
+		private final Instant earliestTime;
+		private final int version;
+		private final IntervalStats stats;
+	}
+}
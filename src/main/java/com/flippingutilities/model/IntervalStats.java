@@ -0,0 +1,18 @@
+package com.flippingutilities.model;
+
+import lombok.Value;
+
+/**
+ * The stats of an item's offers from the start of an interval until now, as shown in the statistics tab.
+ */
+@Value
+public class IntervalStats
+{
+	//how many valid offers were made in the interval
+	int offerCount;
+	long profit;
+	//the value of the items bought that were also sold
+	long expense;
+	int itemsFlipped;
+	int flipCount;
+}
@@ -0,0 +1,627 @@
+package com.flippingutilities.model;
+
+import java.time.Instant;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.function.Predicate;
+
+/**
+ * An item's offers, kept in the order of their times no matter the order they are added in, so that the offers made
+ * after a point in time can be found with a binary search. Offers with the same time stay in the order they were
+ * added in.
+ * <p>
+ * The offers after a point in time are handed out as views of the array backing the list, rather than copies.
+ * Adding offers to the end doesn't touch the part of the array the views show, and anything else copies the array
+ * first if views of it were handed out, so a view never changes once it's made and can be used from any thread.
+ * <p>
+ * The list also keeps running totals of the quantities and values bought and sold, so the totals of the list or of
+ * one of its views are a subtraction rather than a pass over the offers.
+ * <p>
+ * For each slot and side, the list also keeps track of the offers of the trade still in progress in it, so replacing
+ * the previous offer of a trade when a new one comes in doesn't have to search the history for it. Once offers matching
+ * ones scraped from the ge history tab are asked for, the complete offers are kept by price, quantity and side too.
+ * <p>
+ * Offers are added and removed on the client thread while the stats are worked out on other threads, so changing the
+ * list, making views and working out the totals are synchronized with each other.
+ */
+class OfferList extends AbstractList<OfferEvent> implements RandomAccess
+{
+	static final Comparator<OfferEvent> BY_TIME = Comparator.comparing(OfferEvent::getTime, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+	private OfferEvent[] offers;
+	private int size;
+	//whether views of the current array were handed out
+	private boolean shared;
+	//how many of the offers were deleted by the user, which are kept until the ge limit they count towards refreshes
+	private int invalidCount;
+
+	//the totals of the valid offers before each index. They're worked out when they're needed, up to aggregatedCount,
+	//so offers changing anywhere but the end only means working them out again from there.
+	private long[] quantityBought = new long[1];
+	private long[] quantitySold = new long[1];
+	private long[] valueBought = new long[1];
+	private long[] valueSold = new long[1];
+	private int aggregatedCount;
+
+	//for each slot and side, the incomplete offers after its last complete one, in order. They're found again with a
+	//pass over the offers if the list changed in any way but those kept track of, see openTrades
+	private final Map<Integer, List<OfferEvent>> openTrades = new HashMap<>();
+	private int openTradesVersion = -1;
+
+	//the complete buys and sells by their price and quantity, in order. Only made once they're asked for, as most
+	//items are never looked up in the ge history tab, and then kept up to date like openTrades
+	private Map<Long, List<OfferEvent>> completeBuys;
+	private Map<Long, List<OfferEvent>> completeSells;
+	private int completeOffersVersion = -1;
+
+	OfferList()
+	{
+		offers = new OfferEvent[10];
+	}
+
+	OfferList(Collection<OfferEvent> offers)
+	{
+		this.offers = offers.toArray(new OfferEvent[0]);
+		size = this.offers.length;
+		if (!isSorted(this.offers))
+		{
+			//stable, so offers with the same time keep their order
+			Arrays.sort(this.offers, BY_TIME);
+		}
+		countInvalidOffers();
+	}
+
+	@Override
+	public OfferEvent get(int index)
+	{
+		if (index >= size)
+		{
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		return offers[index];
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Adds the offer after the offers made before or at the same time as it, which is at the end for offers that
+	 * just came in.
+	 */
+	@Override
+	public synchronized boolean add(OfferEvent offer)
+	{
+		int index = size > 0 && BY_TIME.compare(offers[size - 1], offer) > 0 ? firstIndexAfter(offer.getTime()) : size;
+
+		if (index == size && size < offers.length)
+		{
+			offers[size] = offer;
+		}
+		else
+		{
+			OfferEvent[] newOffers = shared || size == offers.length ? new OfferEvent[newCapacity(size + 1)] : offers;
+			System.arraycopy(offers, index, newOffers, index + 1, size - index);
+			if (newOffers != offers)
+			{
+				System.arraycopy(offers, 0, newOffers, 0, index);
+				offers = newOffers;
+				shared = false;
+			}
+			offers[index] = offer;
+			aggregatedCount = Math.min(aggregatedCount, index);
+		}
+		boolean openTradesCurrent = openTradesVersion == modCount;
+		boolean completeOffersCurrent = completeOffersVersion == modCount;
+		size++;
+		modCount++;
+		if (!offer.isValidOfferEvent())
+		{
+			invalidCount++;
+		}
+		//offers that come after every other one of their slot and side end or continue its trade in progress
+		if (openTradesCurrent && index == size - 1)
+		{
+			List<OfferEvent> openTrade = openTrades.computeIfAbsent(tradeKey(offer.getSlot(), offer.isBuy()), key -> new ArrayList<>());
+			if (offer.isComplete())
+			{
+				openTrade.clear();
+			}
+			else
+			{
+				openTrade.add(offer);
+			}
+			openTradesVersion = modCount;
+		}
+		if (completeOffersCurrent && index == size - 1)
+		{
+			addCompleteOffer(offer);
+			completeOffersVersion = modCount;
+		}
+		return true;
+	}
+
+	/**
+	 * Removes the offers of the trade in progress in the given slot and side, which are the incomplete offers after
+	 * its last complete one.
+	 *
+	 * @return the indexes the offers were removed from, from the last to the first
+	 */
+	synchronized int[] removeOpenTrade(int slot, boolean buy)
+	{
+		List<OfferEvent> openTrade = openTrades().remove(tradeKey(slot, buy));
+		if (openTrade == null || openTrade.isEmpty())
+		{
+			return new int[0];
+		}
+		boolean completeOffersCurrent = completeOffersVersion == modCount;
+		int[] removedIndexes = new int[openTrade.size()];
+		for (int i = openTrade.size() - 1; i > -1; i--)
+		{
+			int index = indexOf(openTrade.get(i));
+			remove(index);
+			removedIndexes[openTrade.size() - 1 - i] = index;
+		}
+		//the other slots' and sides' trades in progress didn't change, and only incomplete offers were removed
+		openTradesVersion = modCount;
+		if (completeOffersCurrent)
+		{
+			completeOffersVersion = modCount;
+		}
+		return removedIndexes;
+	}
+
+	/**
+	 * @return how many items the trade in progress in the given slot and side has bought or sold so far, or 0 if the
+	 * slot has no trade in progress in that side
+	 */
+	synchronized int openTradeQuantity(int slot, boolean buy)
+	{
+		List<OfferEvent> openTrade = openTrades().get(tradeKey(slot, buy));
+		return openTrade == null || openTrade.isEmpty() ? 0 : openTrade.get(openTrade.size() - 1).getCurrentQuantityInTrade();
+	}
+
+	/**
+	 * Gets the complete offers with the given price, quantity and side, the most recent first.
+	 *
+	 * @param limit how many of them are needed at most
+	 */
+	synchronized List<OfferEvent> completeOffers(int price, int quantity, boolean buy, int limit)
+	{
+		if (completeOffersVersion != modCount)
+		{
+			completeBuys = new HashMap<>();
+			completeSells = new HashMap<>();
+			for (int i = 0; i < size; i++)
+			{
+				addCompleteOffer(offers[i]);
+			}
+			completeOffersVersion = modCount;
+		}
+		List<OfferEvent> matchingOffers = (buy ? completeBuys : completeSells).get(priceAndQuantity(price, quantity));
+		List<OfferEvent> mostRecentFirst = new ArrayList<>();
+		for (int i = matchingOffers == null ? -1 : matchingOffers.size() - 1; i > -1 && mostRecentFirst.size() < limit; i--)
+		{
+			mostRecentFirst.add(matchingOffers.get(i));
+		}
+		return mostRecentFirst;
+	}
+
+	private void addCompleteOffer(OfferEvent offer)
+	{
+		if (offer.isComplete())
+		{
+			Map<Long, List<OfferEvent>> completeOffers = offer.isBuy() ? completeBuys : completeSells;
+			completeOffers.computeIfAbsent(priceAndQuantity(offer.getPrice(), offer.getCurrentQuantityInTrade()), key -> new ArrayList<>()).add(offer);
+		}
+	}
+
+	private static long priceAndQuantity(int price, int quantity)
+	{
+		return (long) price << 32 | quantity & 0xFFFFFFFFL;
+	}
+
+	private Map<Integer, List<OfferEvent>> openTrades()
+	{
+		if (openTradesVersion != modCount)
+		{
+			openTrades.clear();
+			for (int i = 0; i < size; i++)
+			{
+				List<OfferEvent> openTrade = openTrades.computeIfAbsent(tradeKey(offers[i].getSlot(), offers[i].isBuy()), key -> new ArrayList<>());
+				if (offers[i].isComplete())
+				{
+					openTrade.clear();
+				}
+				else
+				{
+					openTrade.add(offers[i]);
+				}
+			}
+			openTradesVersion = modCount;
+		}
+		return openTrades;
+	}
+
+	private static int tradeKey(int slot, boolean buy)
+	{
+		return slot * 2 + (buy ? 1 : 0);
+	}
+
+	//finds the offer itself rather than an equal one, among the offers with its time
+	private int indexOf(OfferEvent offer)
+	{
+		Instant time = offer.getTime();
+		for (int i = firstIndexAfter(time) - 1; i > -1 && Objects.equals(offers[i].getTime(), time); i--)
+		{
+			if (offers[i] == offer)
+			{
+				return i;
+			}
+		}
+		//its time changed since it was added
+		for (int i = 0; i < size; i++)
+		{
+			if (offers[i] == offer)
+			{
+				return i;
+			}
+		}
+		throw new IllegalStateException("offer isn't in the list");
+	}
+
+	/**
+	 * Adds the offers in the order of their times, merging them in with the offers already in the list if they
+	 * don't all come after them.
+	 */
+	@Override
+	public synchronized boolean addAll(Collection<? extends OfferEvent> c)
+	{
+		if (c.isEmpty())
+		{
+			return false;
+		}
+		OfferEvent[] added = c.toArray(new OfferEvent[0]);
+		if (!isSorted(added))
+		{
+			Arrays.sort(added, BY_TIME);
+		}
+
+		if (size == 0 || BY_TIME.compare(offers[size - 1], added[0]) <= 0)
+		{
+			if (size + added.length > offers.length)
+			{
+				offers = Arrays.copyOf(offers, newCapacity(size + added.length));
+				shared = false;
+			}
+			System.arraycopy(added, 0, offers, size, added.length);
+		}
+		else
+		{
+			OfferEvent[] merged = new OfferEvent[newCapacity(size + added.length)];
+			int i = 0;
+			int j = 0;
+			for (int k = 0; k < size + added.length; k++)
+			{
+				//on equal times the offers already in the list go first
+				merged[k] = j == added.length || (i < size && BY_TIME.compare(offers[i], added[j]) <= 0) ? offers[i++] : added[j++];
+			}
+			offers = merged;
+			shared = false;
+			aggregatedCount = 0;
+		}
+		size += added.length;
+		modCount++;
+		countInvalidOffers();
+		return true;
+	}
+
+	@Override
+	public synchronized OfferEvent remove(int index)
+	{
+		OfferEvent removed = get(index);
+		OfferEvent[] newOffers = shared ? new OfferEvent[offers.length] : offers;
+		if (newOffers != offers)
+		{
+			System.arraycopy(offers, 0, newOffers, 0, index);
+		}
+		System.arraycopy(offers, index + 1, newOffers, index, size - index - 1);
+		offers = newOffers;
+		shared = false;
+		offers[--size] = null;
+		aggregatedCount = Math.min(aggregatedCount, index);
+		modCount++;
+		if (!removed.isValidOfferEvent())
+		{
+			invalidCount--;
+		}
+		return removed;
+	}
+
+	/**
+	 * Also recounts the invalid offers and the totals, as offers are invalidated in place right before the invalid
+	 * ones are removed, and some of them are kept.
+	 */
+	@Override
+	public synchronized boolean removeIf(Predicate<? super OfferEvent> filter)
+	{
+		countInvalidOffers();
+		aggregatedCount = 0;
+		//counts as a change even if nothing is removed, as the offers that are kept could have been invalidated
+		modCount++;
+		OfferEvent[] kept = new OfferEvent[offers.length];
+		int keptCount = 0;
+		for (int i = 0; i < size; i++)
+		{
+			if (!filter.test(offers[i]))
+			{
+				kept[keptCount++] = offers[i];
+			}
+		}
+		if (keptCount == size)
+		{
+			return false;
+		}
+		offers = kept;
+		size = keptCount;
+		shared = false;
+		countInvalidOffers();
+		return true;
+	}
+
+	@Override
+	public Object[] toArray()
+	{
+		return Arrays.copyOf(offers, size);
+	}
+
+	/**
+	 * Gets the offers made after the given time.
+	 *
+	 * @return an unmodifiable view of the offers, which doesn't change when the list does
+	 */
+	synchronized List<OfferEvent> after(Instant time)
+	{
+		int index = firstIndexAfter(time);
+		shared = true;
+		return new View(this, offers, index, size);
+	}
+
+	/**
+	 * @return the totals of the offers, if they're an OfferList or a view of one made since the list last changed
+	 * anywhere but the end, otherwise null
+	 */
+	static Totals totalsOf(List<OfferEvent> offers)
+	{
+		if (offers instanceof OfferList)
+		{
+			OfferList list = (OfferList) offers;
+			synchronized (list)
+			{
+				return list.new Totals(0, list.size);
+			}
+		}
+		if (offers instanceof View)
+		{
+			View view = (View) offers;
+			synchronized (view.list)
+			{
+				if (view.list.offers == view.offers && view.to <= view.list.size)
+				{
+					return view.list.new Totals(view.from, view.to);
+				}
+			}
+		}
+		return null;
+	}
+
+	private void aggregateUpTo(int count)
+	{
+		if (quantityBought.length < count + 1)
+		{
+			int length = Math.max(count, offers.length) + 1;
+			quantityBought = Arrays.copyOf(quantityBought, length);
+			quantitySold = Arrays.copyOf(quantitySold, length);
+			valueBought = Arrays.copyOf(valueBought, length);
+			valueSold = Arrays.copyOf(valueSold, length);
+		}
+		for (int i = aggregatedCount; i < count; i++)
+		{
+			OfferEvent offer = offers[i];
+			long quantity = offer.isValidOfferEvent() ? offer.getCurrentQuantityInTrade() : 0;
+			long value = quantity * offer.getPrice();
+			quantityBought[i + 1] = quantityBought[i] + (offer.isBuy() ? quantity : 0);
+			quantitySold[i + 1] = quantitySold[i] + (offer.isBuy() ? 0 : quantity);
+			valueBought[i + 1] = valueBought[i] + (offer.isBuy() ? value : 0);
+			valueSold[i + 1] = valueSold[i] + (offer.isBuy() ? 0 : value);
+		}
+		aggregatedCount = Math.max(aggregatedCount, count);
+	}
+
+	/**
+	 * @return a number that changes whenever the offers change, or which of them are valid does
+	 */
+	int getVersion()
+	{
+		return modCount;
+	}
+
+	boolean hasInvalidOffers()
+	{
+		return invalidCount > 0;
+	}
+
+	//the index of the first offer made after the given time, where offers without a time are made before any other
+	private int firstIndexAfter(Instant time)
+	{
+		int low = 0;
+		int high = size;
+		while (low < high)
+		{
+			int mid = (low + high) >>> 1;
+			Instant offerTime = offers[mid].getTime();
+			if (offerTime != null && (time == null || offerTime.isAfter(time)))
+			{
+				high = mid;
+			}
+			else
+			{
+				low = mid + 1;
+			}
+		}
+		return low;
+	}
+
+	private void countInvalidOffers()
+	{
+		invalidCount = 0;
+		for (int i = 0; i < size; i++)
+		{
+			if (!offers[i].isValidOfferEvent())
+			{
+				invalidCount++;
+			}
+		}
+	}
+
+	private static boolean isSorted(OfferEvent[] offers)
+	{
+		for (int i = 1; i < offers.length; i++)
+		{
+			if (BY_TIME.compare(offers[i - 1], offers[i]) > 0)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	//only grows the array if the offers don't fit in it already
+	private int newCapacity(int minCapacity)
+	{
+		return minCapacity <= offers.length ? offers.length : Math.max(minCapacity, offers.length + (offers.length >> 1));
+	}
+
+	/**
+	 * The totals of the valid offers between two indexes of the list. They're only meant to be used right away, as
+	 * they read the list's running totals rather than copying them.
+	 */
+	class Totals
+	{
+		private final int from;
+		private final int to;
+		private final long[] quantityBought;
+		private final long[] quantitySold;
+		private final long[] valueBought;
+		private final long[] valueSold;
+		private final OfferEvent[] offers;
+
+		//only made while holding the list's lock
+		private Totals(int from, int to)
+		{
+			aggregateUpTo(to);
+			this.from = from;
+			this.to = to;
+			this.quantityBought = OfferList.this.quantityBought;
+			this.quantitySold = OfferList.this.quantitySold;
+			this.valueBought = OfferList.this.valueBought;
+			this.valueSold = OfferList.this.valueSold;
+			this.offers = OfferList.this.offers;
+		}
+
+		long quantity(boolean buy)
+		{
+			long[] quantities = buy ? quantityBought : quantitySold;
+			return quantities[to] - quantities[from];
+		}
+
+		long value(boolean buy)
+		{
+			long[] values = buy ? valueBought : valueSold;
+			return values[to] - values[from];
+		}
+
+		long itemsFlipped()
+		{
+			return Math.min(quantity(true), quantity(false));
+		}
+
+		/**
+		 * Gets the value of the first items bought or sold, going through the offers in order. The offer the last of
+		 * the items are from is found with a binary search on the quantities.
+		 */
+		long valueOfFirst(boolean buy, long items)
+		{
+			long[] quantities = buy ? quantityBought : quantitySold;
+			long[] values = buy ? valueBought : valueSold;
+			if (items <= 0)
+			{
+				return 0;
+			}
+			long target = quantities[from] + items;
+			if (quantities[to] <= target)
+			{
+				return values[to] - values[from];
+			}
+
+			//the first index the totals reach the target at is just after the offer they reach it with
+			int low = from + 1;
+			int high = to;
+			while (low < high)
+			{
+				int mid = (low + high) >>> 1;
+				if (quantities[mid] >= target)
+				{
+					high = mid;
+				}
+				else
+				{
+					low = mid + 1;
+				}
+			}
+			return values[low - 1] - values[from] + (target - quantities[low - 1]) * offers[low - 1].getPrice();
+		}
+	}
+
+	private static class View extends AbstractList<OfferEvent> implements RandomAccess
+	{
+		private final OfferList list;
+		private final OfferEvent[] offers;
+		private final int from;
+		private final int to;
+
+		private View(OfferList list, OfferEvent[] offers, int from, int to)
+		{
+			this.list = list;
+			this.offers = offers;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public OfferEvent get(int index)
+		{
+			if (index < 0 || index >= to - from)
+			{
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + (to - from));
+			}
+			return offers[from + index];
+		}
+
+		@Override
+		public int size()
+		{
+			return to - from;
+		}
+	}
+}
@@ -0,0 +1,327 @@
+package com.flippingutilities.model;
+
+import java.util.AbstractSequentialList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * An account's items, the most recently traded first, which can be looked up by their item id and moved to the front
+ * without going through the list. The items are kept in a linked list, with a map from each item id to the node of
+ * the first item with that id, so finding an item and moving it to the front are both constant time.
+ * <p>
+ * An account should only have one item for each item id, but if it has more, looking an id up finds the first of
+ * them, like going through the list would.
+ */
+class TradeList extends AbstractSequentialList<FlippingItem>
+{
+	private final Node header = new Node(null);
+	private final Map<Integer, Node> firstNodes = new HashMap<>();
+	private int size;
+	//how many items have the same item id as an item before them, which are the ones not in firstNodes
+	private int duplicateCount;
+
+	TradeList()
+	{
+		header.next = header;
+		header.previous = header;
+	}
+
+	TradeList(Collection<FlippingItem> items)
+	{
+		this();
+		for (FlippingItem item : items)
+		{
+			linkBefore(header, item);
+		}
+	}
+
+	/**
+	 * @return the first item with the given item id, or null if there isn't one
+	 */
+	FlippingItem findItem(int itemId)
+	{
+		Node node = firstNodes.get(itemId);
+		return node == null ? null : node.item;
+	}
+
+	/**
+	 * Moves the item to the front of the list, if it's in it.
+	 */
+	void moveToFront(FlippingItem item)
+	{
+		Node node = firstNodes.get(item.getItemId());
+		if (node == null || node.item != item)
+		{
+			node = findNode(item);
+			if (node == null)
+			{
+				return;
+			}
+		}
+		if (node != header.next)
+		{
+			unlink(node);
+			linkBefore(header.next, item);
+		}
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public boolean add(FlippingItem item)
+	{
+		linkBefore(header, item);
+		return true;
+	}
+
+	@Override
+	public void clear()
+	{
+		header.next = header;
+		header.previous = header;
+		firstNodes.clear();
+		size = 0;
+		duplicateCount = 0;
+		modCount++;
+	}
+
+	@Override
+	public ListIterator<FlippingItem> listIterator(int index)
+	{
+		if (index < 0 || index > size)
+		{
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		return new NodeIterator(index);
+	}
+
+	private void linkBefore(Node successor, FlippingItem item)
+	{
+		Node node = new Node(item);
+		node.previous = successor.previous;
+		node.next = successor;
+		successor.previous.next = node;
+		successor.previous = node;
+		size++;
+		modCount++;
+
+		Node first = firstNodes.get(item.getItemId());
+		if (first == null)
+		{
+			firstNodes.put(item.getItemId(), node);
+			return;
+		}
+		duplicateCount++;
+		if (comesBefore(node, first))
+		{
+			firstNodes.put(item.getItemId(), node);
+		}
+	}
+
+	private void unlink(Node node)
+	{
+		node.previous.next = node.next;
+		node.next.previous = node.previous;
+		size--;
+		modCount++;
+
+		int itemId = node.item.getItemId();
+		if (firstNodes.get(itemId) != node)
+		{
+			duplicateCount--;
+			return;
+		}
+		firstNodes.remove(itemId);
+		if (duplicateCount > 0)
+		{
+			//the item was the first with its id, so the next one with it is after it
+			for (Node next = node.next; next != header; next = next.next)
+			{
+				if (next.item.getItemId() == itemId)
+				{
+					firstNodes.put(itemId, next);
+					duplicateCount--;
+					return;
+				}
+			}
+		}
+	}
+
+	//only needed when an account has more than one item with the same id
+	private boolean comesBefore(Node node, Node other)
+	{
+		if (node.previous == header)
+		{
+			return true;
+		}
+		for (Node next = node.next; next != header; next = next.next)
+		{
+			if (next == other)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private Node findNode(FlippingItem item)
+	{
+		for (Node node = header.next; node != header; node = node.next)
+		{
+			if (node.item == item)
+			{
+				return node;
+			}
+		}
+		return null;
+	}
+
+	private static class Node
+	{
+		private FlippingItem item;
+		private Node previous;
+		private Node next;
+
+		private Node(FlippingItem item)
+		{
+			this.item = item;
+		}
+	}
+
+	private class NodeIterator implements ListIterator<FlippingItem>
+	{
+		private Node next;
+		private int nextIndex;
+		private Node lastReturned;
+		private int expectedModCount = modCount;
+
+		private NodeIterator(int index)
+		{
+			next = header.next;
+			for (nextIndex = 0; nextIndex < index; nextIndex++)
+			{
+				next = next.next;
+			}
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return nextIndex < size;
+		}
+
+		@Override
+		public FlippingItem next()
+		{
+			checkForComodification();
+			if (!hasNext())
+			{
+				throw new NoSuchElementException();
+			}
+			lastReturned = next;
+			next = next.next;
+			nextIndex++;
+			return lastReturned.item;
+		}
+
+		@Override
+		public boolean hasPrevious()
+		{
+			return nextIndex > 0;
+		}
+
+		@Override
+		public FlippingItem previous()
+		{
+			checkForComodification();
+			if (!hasPrevious())
+			{
+				throw new NoSuchElementException();
+			}
+			next = next.previous;
+			lastReturned = next;
+			nextIndex--;
+			return lastReturned.item;
+		}
+
+		@Override
+		public int nextIndex()
+		{
+			return nextIndex;
+		}
+
+		@Override
+		public int previousIndex()
+		{
+			return nextIndex - 1;
+		}
+
+		@Override
+		public void remove()
+		{
+			checkForComodification();
+			if (lastReturned == null)
+			{
+				throw new IllegalStateException();
+			}
+			if (next == lastReturned)
+			{
+				next = lastReturned.next;
+			}
+			else
+			{
+				nextIndex--;
+			}
+			unlink(lastReturned);
+			lastReturned = null;
+			expectedModCount = modCount;
+		}
+
+		@Override
+		public void set(FlippingItem item)
+		{
+			checkForComodification();
+			if (lastReturned == null)
+			{
+				throw new IllegalStateException();
+			}
+			//the item gets a new node so the id index is kept right when the new item has a different id
+			boolean returnedByPrevious = next == lastReturned;
+			Node successor = lastReturned.next;
+			unlink(lastReturned);
+			linkBefore(successor, item);
+			lastReturned = successor.previous;
+			if (returnedByPrevious)
+			{
+				next = lastReturned;
+			}
+			expectedModCount = modCount;
+		}
+
+		@Override
+		public void add(FlippingItem item)
+		{
+			checkForComodification();
+			linkBefore(next, item);
+			nextIndex++;
+			lastReturned = null;
+			expectedModCount = modCount;
+		}
+
+		private void checkForComodification()
+		{
+			if (modCount != expectedModCount)
+			{
+				throw new ConcurrentModificationException();
+			}
+		}
+	}
+}
@@ -46,6 +46,8 @@ import javax.swing.*;
 import javax.swing.border.CompoundBorder;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.MatteBorder;
+import javax.swing.event.PopupMenuEvent;
+import javax.swing.event.PopupMenuListener;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
@@ -108,11 +110,13 @@ public class FlippingItemPanel extends JPanel
 	WikiRequest wikiRequest;
 	Instant timeOfRequestCompletion;
 
+	//shows the times of the wiki prices, which only have to be kept up to date while it's visible
+	private JPopupMenu wikiTimePopup;
+
 	FlippingItemPanel(final FlippingPlugin plugin, AsyncBufferedImage itemImage, final FlippingItem flippingItem)
 	{
 		this.flippingItem = flippingItem;
 		this.plugin = plugin;
-		flippingItem.validateGeProperties();
 		setBackground(CustomColors.DARK_GRAY);
 		setLayout(new BorderLayout());
 		setBorder(new CompoundBorder(
@@ -124,7 +128,7 @@ public class FlippingItemPanel extends JPanel
 		styleDescriptionLabels();
 		styleValueLabels();
 		setValueLabels();
-		updateTimerDisplays();
+		updateTimerDisplays(Instant.now());
 
 		JPanel titlePanel = createTitlePanel(createItemIcon(itemImage), createItemNameLabel(), createFavoriteIcon());
 		itemInfo = createItemInfoPanel();
@@ -540,10 +544,25 @@ public class FlippingItemPanel extends JPanel
 		wikiRequestCountDownTimer.setAlignmentY(JLabel.TOP);
 		wikiRequestCountDownTimer.setFont(new Font(Font.SERIF, Font.PLAIN, 9));
 
-		JPopupMenu popup = new JPopupMenu();
-		popup.add(createWikiHoverTimePanel());
-		UIUtilities.addPopupOnHover(wikiBuyVal, popup, true);
-		UIUtilities.addPopupOnHover(wikiSellVal, popup, true);
+		wikiTimePopup = new JPopupMenu();
+		wikiTimePopup.add(createWikiHoverTimePanel());
+		wikiTimePopup.addPopupMenuListener(new PopupMenuListener() {
+			@Override
+			public void popupMenuWillBecomeVisible(PopupMenuEvent e) {
+				updateWikiTimeLabels();
+				plugin.getFlippingPanel().scheduleTimerDisplays(FlippingItemPanel.this);
+			}
+
+			@Override
+			public void popupMenuWillBecomeInvisible(PopupMenuEvent e) {
+			}
+
+			@Override
+			public void popupMenuCanceled(PopupMenuEvent e) {
+			}
+		});
+		UIUtilities.addPopupOnHover(wikiBuyVal, wikiTimePopup, true);
+		UIUtilities.addPopupOnHover(wikiSellVal, wikiTimePopup, true);
 	}
 
 	private void styleDescriptionLabels() {
@@ -817,12 +836,28 @@ public class FlippingItemPanel extends JPanel
 		updateWikiLabels(plugin.getLastWikiRequest(), plugin.getTimeOfLastWikiRequest());
 	}
 
-	public void updateTimerDisplays() {
-		flippingItem.validateGeProperties();
+	/**
+	 * @return when one of the times shown on the panel changes next, or null if none of them change until something
+	 * else does, like the ge limit refreshing or new wiki prices coming in
+	 */
+	Instant nextTimerUpdate(Instant now) {
+		Instant geLimitResetTime = flippingItem.getGeLimitResetTime();
+		boolean geLimitCountingDown = geLimitResetTime != null && now.isBefore(geLimitResetTime);
+		boolean wikiRequestCountingDown = wikiRequest != null && timeOfRequestCompletion != null &&
+				now.getEpochSecond() - timeOfRequestCompletion.getEpochSecond() < 60;
+		if (geLimitCountingDown || wikiRequestCountingDown || wikiTimePopup.isVisible()) {
+			//the times are all shown in whole seconds of the clock, so they change when the next second starts
+			return Instant.ofEpochSecond(now.getEpochSecond() + 1);
+		}
+		return null;
+	}
 
+	public void updateTimerDisplays(Instant now) {
+		//counts down in whole seconds of the clock so it changes at the same time as the other times shown. Once the
+		//refresh time passed it stays at zero until the GeLimitTracker resets the item's limit.
 		geRefreshCountdownLabel.setText(flippingItem.getGeLimitResetTime() == null?
 				TimeFormatters.formatDuration(Duration.ZERO):
-				TimeFormatters.formatDuration(Instant.now(), flippingItem.getGeLimitResetTime()));
+				TimeFormatters.formatDuration(Duration.ofSeconds(Math.max(0, flippingItem.getGeLimitResetTime().getEpochSecond() - now.getEpochSecond()))));
 
 		//need to update this so it can be reset when the timer runs down.
 		if (flippingItem.getTotalGELimit() > 0) {
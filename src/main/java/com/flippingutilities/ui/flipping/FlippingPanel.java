@@ -34,6 +34,7 @@ import com.flippingutilities.ui.uiutilities.Paginator;
 import com.flippingutilities.ui.uiutilities.UIUtilities;
 import com.flippingutilities.utilities.WikiRequest;
 import com.google.common.base.Strings;
+import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
@@ -45,6 +46,7 @@ import net.runelite.http.api.item.ItemPrice;
 import net.runelite.http.api.item.ItemStats;
 
 import javax.swing.*;
+import javax.swing.Timer;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
@@ -81,6 +83,12 @@ public class FlippingPanel extends JPanel
 	//Keeps track of all items currently displayed on the panel.
 	private ArrayList<FlippingItemPanel> activePanels = new ArrayList<>();
 
+	//when the times shown on the active panels next change. The times only change while something is counting down,
+	//so rather than updating every panel every second, the timer wakes up when the earliest of them changes and
+	//updates the panels whose times changed together. Only used on the event dispatch thread.
+	private final PriorityQueue<TimerDisplay> timerDisplays = new PriorityQueue<>(Comparator.comparing((TimerDisplay timerDisplay) -> timerDisplay.time));
+	private final Timer timerDisplayTimer = new Timer(0, e -> updateTimerDisplays());
+
 	@Getter
 	@Setter
 	private boolean itemHighlighted = false;
@@ -101,6 +109,7 @@ public class FlippingPanel extends JPanel
 
 		this.plugin = plugin;
 		this.itemManager = itemManager;
+		timerDisplayTimer.setRepeats(false);
 
 		setLayout(new BorderLayout());
 		setBackground(ColorScheme.DARK_GRAY_COLOR);
@@ -180,6 +189,7 @@ public class FlippingPanel extends JPanel
 			UIUtilities.stackPanelsVertically((List) newPanels, flippingItemsPanel, vGap);
 			flippingItemsPanel.add(Box.createVerticalStrut(vGap));
 			activePanels.addAll(newPanels);
+			rescheduleTimerDisplays();
 
 			if (isItemHighlighted()) {
 				offerEditorContainerPanel = new OfferEditorContainerPanel(plugin);
@@ -347,20 +357,92 @@ public class FlippingPanel extends JPanel
 	}
 
 	/**
-	 * Checks if a FlippingItem's margins (buy and sell price) are outdated and updates the tooltip.
-	 * This method is called in FlippingPlugin every second by the scheduler.
+	 * Updates the times shown on the panels whose times changed, such as the ge limit refresh countdowns and how long
+	 * ago the wiki prices were fetched, and schedules the next update.
 	 */
-	public void updateTimerDisplays()
+	private void updateTimerDisplays()
 	{
-		for (FlippingItemPanel activePanel : activePanels)
+		Instant now = Instant.now();
+		Set<FlippingItemPanel> updatedPanels = Collections.newSetFromMap(new IdentityHashMap<>());
+		while (!timerDisplays.isEmpty() && !timerDisplays.peek().time.isAfter(now))
 		{
-			activePanel.updateTimerDisplays();
-			activePanel.updateWikiTimeLabels();
+			FlippingItemPanel panel = timerDisplays.poll().panel;
+			//panels can be in the queue more than once, and panels that were replaced since are still in it
+			if (activePanels.contains(panel) && updatedPanels.add(panel))
+			{
+				panel.updateTimerDisplays(now);
+				panel.updateWikiTimeLabels();
+			}
 		}
+		updatedPanels.forEach(panel -> addTimerDisplay(panel, now));
+		startTimerDisplayTimer(now);
+	}
+
+	/**
+	 * Schedules the next update of the times shown on the panel after something made them start changing, like the
+	 * popup with the wiki price times being opened. Has to be called on the event dispatch thread.
+	 */
+	void scheduleTimerDisplays(FlippingItemPanel panel)
+	{
+		Instant now = Instant.now();
+		addTimerDisplay(panel, now);
+		startTimerDisplayTimer(now);
+	}
+
+	private void rescheduleTimerDisplays()
+	{
+		Instant now = Instant.now();
+		timerDisplays.clear();
+		activePanels.forEach(panel -> addTimerDisplay(panel, now));
+		startTimerDisplayTimer(now);
+	}
+
+	private void addTimerDisplay(FlippingItemPanel panel, Instant now)
+	{
+		Instant nextUpdate = panel.nextTimerUpdate(now);
+		if (nextUpdate != null)
+		{
+			timerDisplays.add(new TimerDisplay(nextUpdate, panel));
+		}
+	}
+
+	private void startTimerDisplayTimer(Instant now)
+	{
+		if (timerDisplays.isEmpty())
+		{
+			timerDisplayTimer.stop();
+			return;
+		}
+		long delay = Math.max(0, timerDisplays.peek().time.toEpochMilli() - now.toEpochMilli());
+		timerDisplayTimer.setInitialDelay((int) Math.min(delay, Integer.MAX_VALUE));
+		timerDisplayTimer.restart();
+	}
+
+	/**
+	 * Updates the ge limits shown on the panels of the given items after their limits refreshed.
+	 */
+	public void refreshGeLimits(Collection<Integer> itemIds)
+	{
+		SwingUtilities.invokeLater(() ->
+		{
+			Instant now = Instant.now();
+			for (FlippingItemPanel panel : activePanels)
+			{
+				if (itemIds.contains(panel.getFlippingItem().getItemId()))
+				{
+					panel.setValueLabels();
+					panel.updateTimerDisplays(now);
+				}
+			}
+		});
 	}
 
 	public void updateWikiDisplays(WikiRequest wikiRequest, Instant timeOfRequestCompletion) {
-		activePanels.forEach(panel -> panel.updateWikiLabels(wikiRequest, timeOfRequestCompletion));
+		SwingUtilities.invokeLater(() -> {
+			activePanels.forEach(panel -> panel.updateWikiLabels(wikiRequest, timeOfRequestCompletion));
+			//the wiki request countdowns started again
+			rescheduleTimerDisplays();
+		});
 	}
 
 
@@ -412,12 +494,20 @@ public class FlippingPanel extends JPanel
 		rebuild(allMatches);
 	}
 
-	public void refreshPricesForFlippingItemPanel(int itemId) {
-		for (FlippingItemPanel panel:activePanels) {
-			if (panel.getFlippingItem().getItemId() == itemId) {
-				panel.setValueLabels();
+	/**
+	 * Updates the panels of the given items after offers came in for them, all at once on the event dispatch thread.
+	 */
+	public void refreshPricesForFlippingItemPanels(Collection<Integer> itemIds) {
+		SwingUtilities.invokeLater(() -> {
+			for (FlippingItemPanel panel:activePanels) {
+				if (itemIds.contains(panel.getFlippingItem().getItemId())) {
+					panel.setValueLabels();
+					//the offers might have started the item's ge limit window
+					panel.updateTimerDisplays(Instant.now());
+					scheduleTimerDisplays(panel);
+				}
 			}
-		}
+		});
 	}
 
 	private JLabel createResetButton() {
@@ -440,10 +530,10 @@ public class FlippingPanel extends JPanel
 					//If the user pressed "Yes"
 					if (result == JOptionPane.YES_OPTION)
 					{
+						//the panels are rebuilt once the items are hidden
 						plugin.setAllFlippingItemsAsHidden();
 						setItemHighlighted(false);
 						cardLayout.show(flippingItemContainer, WELCOME_PANEL);
-						rebuild(plugin.viewTradesForCurrentView());
 					}
 				}
 			}
@@ -463,4 +553,11 @@ public class FlippingPanel extends JPanel
 
 		return resetIcon;
 	}
+
+	@AllArgsConstructor
+	private static class TimerDisplay
+	{
+		private final Instant time;
+		private final FlippingItemPanel panel;
+	}
 }
@@ -99,7 +99,7 @@ public class GeHistoryTabPanel extends JPanel
 		List<OfferEvent> selectedOffers = selectedOfferIds.stream().map(idx -> offersFromHistoryTab.get(idx)).collect(Collectors.toList());
 		highlightedPanels.addAll(selectedOfferIds);
 		plugin.addSelectedGeTabOffers(selectedOffers);
-		matchingOffers = offersFromHistoryTab.stream().map(o -> plugin.findOfferMatches(o,5)).collect(Collectors.toList());
+		matchingOffers = plugin.findOfferMatches(offersFromHistoryTab, 5);
 		rebuild(offersFromHistoryTab, matchingOffers, geHistoryTabWidgets, true);
 	}
 
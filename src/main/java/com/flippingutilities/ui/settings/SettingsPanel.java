@@ -199,8 +199,7 @@ public class SettingsPanel extends JPanel
 
 					if (result == JOptionPane.YES_OPTION)
 					{
-						plugin.deleteAccount(selectedAccountName);
-						rebuild();
+						plugin.deleteAccount(selectedAccountName, () -> rebuild());
 					}
 				}
 			}
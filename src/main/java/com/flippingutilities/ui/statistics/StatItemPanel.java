@@ -71,7 +71,7 @@ public class StatItemPanel extends JPanel
 	private StatsPanel statsPanel;
 
 	private Instant startOfInterval;
-	private ArrayList<OfferEvent> tradeHistory;
+	private List<OfferEvent> tradeHistory;
 	private List<Flip> flips;
 
 	//Shows the item's profit
@@ -180,6 +180,20 @@ public class StatItemPanel extends JPanel
 		repaint();
 	}
 
+	/**
+	 * Updates everything shown on this panel after new offers were added to the item's history.
+	 */
+	public void refresh()
+	{
+		tradeHistory = flippingItem.getIntervalHistory(startOfInterval);
+		flips = flippingItem.getFlips(startOfInterval);
+		offerPaginator.updateTotalPages(tradeHistory.size());
+		flipPaginator.updateTotalPages(flips.size());
+		buildAllFlipsPanel();
+		buildAllOffersPanels();
+		updateLabels();
+	}
+
 	public void buildAllOffersPanels() {
 		SwingUtilities.invokeLater(() -> {
 			List<OfferEvent> reversedHistory = new ArrayList<>(tradeHistory);
@@ -28,7 +28,6 @@ package com.flippingutilities.ui.statistics;
 
 import com.flippingutilities.controller.FlippingPlugin;
 import com.flippingutilities.model.FlippingItem;
-import com.flippingutilities.model.OfferEvent;
 import com.flippingutilities.ui.uiutilities.*;
 import com.google.common.base.Strings;
 import lombok.Getter;
@@ -55,7 +54,10 @@ import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -133,6 +135,9 @@ public class StatsPanel extends JPanel
 	private Paginator paginator;
 	private ScheduledExecutorService executor;
 
+	//bumped every time a snapshot is asked for, so only the latest one is shown
+	private final AtomicInteger snapshotGeneration = new AtomicInteger();
+
 	/**
 	 * The statistics panel shows various stats about trades the user has made over a selectable time interval.
 	 * This represents the front-end Statistics Tab.
@@ -172,25 +177,90 @@ public class StatsPanel extends JPanel
 		//Remove old stats
 		activePanels = new ArrayList<>();
 
-		SwingUtilities.invokeLater(() ->
+		computeSnapshot(flippingItems, snapshot ->
 		{
-			rebuildStatItemContainer(flippingItems);
-			updateDisplays(flippingItems);
+			rebuildStatItemContainer(snapshot);
+			updateDisplays(snapshot);
 			revalidate();
 			repaint();
 		});
 	}
 
-	public void rebuildStatItemContainer(List<FlippingItem> flippingItems)
+	/**
+	 * Refreshes the panels of the given items and the totals, without rebuilding the panels of all the other items.
+	 * Falls back to rebuilding them all if the items that belong on the current page changed, for example because
+	 * one of the given items moved up in the sort order.
+	 *
+	 * @param itemIds       the items that changed
+	 * @param flippingItems the list of flipping items that get shown on the stat panel
+	 */
+	public void refreshItemPanels(Collection<Integer> itemIds, List<FlippingItem> flippingItems)
+	{
+		computeSnapshot(flippingItems, snapshot ->
+		{
+			List<FlippingItem> itemsOnCurrentPage = snapshot.getItemsOnPage();
+			boolean samePanels = itemsOnCurrentPage.size() == activePanels.size();
+			for (int i = 0; samePanels && i < itemsOnCurrentPage.size(); i++)
+			{
+				samePanels = itemsOnCurrentPage.get(i) == activePanels.get(i).getFlippingItem();
+			}
+
+			if (samePanels)
+			{
+				paginator.updateTotalPages(snapshot.getItemsWithOffers());
+				activePanels.stream().filter(panel -> itemIds.contains(panel.getFlippingItem().getItemId())).forEach(StatItemPanel::refresh);
+			}
+			else
+			{
+				rebuildStatItemContainer(snapshot);
+			}
+			updateDisplays(snapshot);
+			revalidate();
+			repaint();
+		});
+	}
+
+	/**
+	 * Works out the totals and the items on the current page from a copy of the trade list on the common fork join
+	 * pool, then hands them to the given callback on the event dispatch thread. If the panel is rebuilt again before
+	 * they're worked out, they're dropped, so an older snapshot never replaces a newer one.
+	 *
+	 * @param flippingItems the list of flipping items that get shown on the stat panel
+	 * @param onComputed    called on the event dispatch thread with the snapshot
+	 */
+	private void computeSnapshot(List<FlippingItem> flippingItems, Consumer<StatsSnapshot> onComputed)
+	{
+		int generation = snapshotGeneration.incrementAndGet();
+		List<FlippingItem> items = new ArrayList<>(flippingItems);
+		Instant start = startOfInterval;
+		String sort = selectedSort;
+		int pageNumber = paginator.getPageNumber();
+		int pageSize = paginator.getPageSize();
+
+		CompletableFuture.supplyAsync(() -> StatsSnapshot.of(items, start, sort, pageNumber, pageSize)).whenComplete((snapshot, exception) ->
+		{
+			if (exception != null)
+			{
+				log.warn("couldn't compute the stats of the statistics tab", exception);
+				return;
+			}
+			SwingUtilities.invokeLater(() ->
+			{
+				if (generation == snapshotGeneration.get())
+				{
+					onComputed.accept(snapshot);
+				}
+			});
+		});
+	}
+
+	public void rebuildStatItemContainer(StatsSnapshot snapshot)
 	{
 		activePanels.clear();
 		statItemPanelsContainer.removeAll();
-		List<FlippingItem> sortedItems = sortTradeList(flippingItems);
-		List<FlippingItem> itemsThatShouldHavePanels = sortedItems.stream().filter(item -> item.getIntervalHistory(startOfInterval).stream().anyMatch(OfferEvent::isValidOfferEvent)).collect(Collectors.toList());
-		sortDropdown.setVisible(itemsThatShouldHavePanels.size() > 0);
-		paginator.updateTotalPages(itemsThatShouldHavePanels.size());
-		List<FlippingItem> itemsOnCurrentPage = paginator.getCurrentPageItems(itemsThatShouldHavePanels);
-		List<StatItemPanel> newPanels = itemsOnCurrentPage.stream().map(item -> new StatItemPanel(plugin, itemManager, item)).collect(Collectors.toList());
+		sortDropdown.setVisible(snapshot.getItemsWithOffers() > 0);
+		paginator.updateTotalPages(snapshot.getItemsWithOffers());
+		List<StatItemPanel> newPanels = snapshot.getItemsOnPage().stream().map(item -> new StatItemPanel(plugin, itemManager, item)).collect(Collectors.toList());
 		UIUtilities.stackPanelsVertically((List) newPanels, statItemPanelsContainer, 5);
 		activePanels.addAll(newPanels);
 	}
@@ -266,9 +336,9 @@ public class StatsPanel extends JPanel
 	/**
 	 * Updates the display of the total profit value along with the display of sub panels
 	 *
-	 * @param tradesList
+	 * @param snapshot the totals worked out by {@link #computeSnapshot}
 	 */
-	public void updateDisplays(List<FlippingItem> tradesList)
+	public void updateDisplays(StatsSnapshot snapshot)
 	{
 		subInfoPanel.removeAll();
 		for (JPanel panel : subInfoPanelArray)
@@ -284,29 +354,11 @@ public class StatsPanel extends JPanel
 			subInfoPanel.remove(hourlyProfitPanel);
 		}
 
-		totalProfit = 0;
-		totalExpenses = 0;
-		totalFlips = 0;
-		mostCommonItemName = null;
-		mostFlips = 0;
-
-		for (FlippingItem item : tradesList)
-		{
-			List<OfferEvent> intervalHistory = item.getIntervalHistory(startOfInterval);
-			if (intervalHistory.isEmpty())
-			{
-				continue;
-			}
-			totalProfit += item.currentProfit(intervalHistory);
-			totalExpenses += item.getFlippedCashFlow(startOfInterval, true);
-			int flips = item.getFlips(startOfInterval).size();
-			totalFlips += flips;
-			if (mostCommonItemName == null || mostFlips < flips)
-			{
-				mostFlips = flips;
-				mostCommonItemName = item.getItemName();
-			}
-		}
+		totalProfit = snapshot.getTotalProfit();
+		totalExpenses = snapshot.getTotalExpenses();
+		totalFlips = snapshot.getTotalFlips();
+		mostCommonItemName = snapshot.getMostCommonItemName();
+		mostFlips = snapshot.getMostFlips();
 
 		updateTotalProfitDisplay();
 		updateSubInfoFont();
@@ -517,6 +569,7 @@ public class StatsPanel extends JPanel
 			}
 		}
 		paginator.setPageNumber(1);
+		plugin.loadHistorySince(startOfInterval);
 		rebuild(plugin.viewTradesForCurrentView());
 	}
 
@@ -532,114 +585,6 @@ public class StatsPanel extends JPanel
 		}
 	}
 
-	/**
-	 * Clones and sorts the to-be-built tradeList items according to the selectedSort string.
-	 *
-	 * @param tradeList The soon-to-be drawn tradeList whose items are getting sorted.
-	 * @return Returns a cloned and sorted tradeList as specified by the selectedSort string.
-	 */
-	public List<FlippingItem> sortTradeList(List<FlippingItem> tradeList)
-	{
-		List<FlippingItem> result = new ArrayList<>(tradeList);
-
-		if (selectedSort == null || result.isEmpty())
-		{
-			return result;
-		}
-
-		switch (selectedSort)
-		{
-			case "Most Recent":
-				result.sort(Comparator.comparing(FlippingItem::getLatestActivityTime));
-				break;
-
-			case "Most Total Profit":
-				result.sort((item1, item2) -> {
-					ArrayList<OfferEvent> intervalHistory1 = item1.getIntervalHistory(startOfInterval);
-					ArrayList<OfferEvent> intervalHistory2 = item2.getIntervalHistory(startOfInterval);
-
-					long totalExpense1 = item1.getFlippedCashFlow(intervalHistory1, true);
-					long totalRevenue1 = item1.getFlippedCashFlow(intervalHistory1, false);
-
-					long totalExpense2 = item2.getFlippedCashFlow(intervalHistory2, true);
-					long totalRevenue2 = item2.getFlippedCashFlow(intervalHistory2, false);
-
-					if ((totalExpense1 != 0 && totalRevenue1 != 0) && (totalExpense2 == 0 || totalRevenue2 == 0))
-					{
-						return 1;
-					}
-
-					if ((totalExpense1 == 0 || totalRevenue1 == 0) && (totalExpense2 != 0 && totalRevenue2 != 0))
-					{
-						return -1;
-					}
-
-					if ((totalExpense1 == 0 || totalRevenue1 == 0) && (totalExpense2 == 0 || totalRevenue2 == 0))
-					{
-						return 0;
-					}
-
-					return Long.compare(item1.currentProfit(intervalHistory1), item2.currentProfit(intervalHistory2));
-				});
-				break;
-
-			case "Most Profit Each":
-				result.sort(Comparator.comparing(item ->
-				{
-					ArrayList<OfferEvent> intervalHistory = item.getIntervalHistory(startOfInterval);
-					int quantity = item.countItemsFlipped(intervalHistory);
-
-					if (quantity == 0)
-					{
-						return 0;
-					}
-
-					return (int) item.currentProfit(intervalHistory) / quantity;
-				}));
-				break;
-			case "Highest ROI":
-				result.sort((item1, item2) ->
-				{
-					ArrayList<OfferEvent> intervalHistory1 = item1.getIntervalHistory(startOfInterval);
-					ArrayList<OfferEvent> intervalHistory2 = item2.getIntervalHistory(startOfInterval);
-
-					long totalExpense1 = item1.getFlippedCashFlow(intervalHistory1, true);
-					long totalRevenue1 = item1.getFlippedCashFlow(intervalHistory1, false);
-
-					long totalExpense2 = item2.getFlippedCashFlow(intervalHistory2, true);
-					long totalRevenue2 = item2.getFlippedCashFlow(intervalHistory2, false);
-
-					if ((totalExpense1 != 0 && totalRevenue1 != 0) && (totalExpense2 == 0 || totalRevenue2 == 0))
-					{
-						return 1;
-					}
-
-					if ((totalExpense1 == 0 || totalRevenue1 == 0) && (totalExpense2 != 0 && totalRevenue2 != 0))
-					{
-						return -1;
-					}
-
-					if ((totalExpense1 == 0 || totalRevenue1 == 0) && (totalExpense2 == 0 || totalRevenue2 == 0))
-					{
-						return 0;
-					}
-
-					return Float.compare((float) item1.currentProfit(intervalHistory1) / totalExpense1, (float) item2.currentProfit(intervalHistory2) / totalExpense2);
-				});
-				break;
-
-			case "Highest Quantity":
-				result.sort(Comparator.comparing(item -> item.countItemsFlipped(item.getIntervalHistory(startOfInterval))));
-				break;
-
-			default:
-				throw new IllegalStateException("Unexpected value: " + selectedSort);
-		}
-		Collections.reverse(result);
-
-		return result;
-	}
-
 	private JLabel createResetButton() {
 		JLabel resetIcon = new JLabel(Icons.TRASH_ICON_OFF);
 		resetIcon.setPreferredSize(Icons.ICON_SIZE);
@@ -660,8 +605,8 @@ public class StatsPanel extends JPanel
 					//If the user pressed "Yes"
 					if (result == JOptionPane.YES_OPTION)
 					{
+						//the panels are rebuilt once the offers are invalidated
 						plugin.invalidateOffers(startOfInterval);
-						rebuild(plugin.viewTradesForCurrentView());
 					}
 				}
 			}
@@ -943,13 +888,15 @@ public class StatsPanel extends JPanel
 	}
 
 	private Paginator createPaginator() {
-		paginator = new Paginator(() -> SwingUtilities.invokeLater(() -> {
+		paginator = new Paginator(() -> {
 			Instant rebuildStart = Instant.now();
-			rebuildStatItemContainer(plugin.viewTradesForCurrentView());
-			revalidate();
-			repaint();
-			log.info("page change took {}", Duration.between(rebuildStart, Instant.now()).toMillis());
-		}));
+			computeSnapshot(plugin.viewTradesForCurrentView(), snapshot -> {
+				rebuildStatItemContainer(snapshot);
+				revalidate();
+				repaint();
+				log.info("page change took {}", Duration.between(rebuildStart, Instant.now()).toMillis());
+			});
+		});
 		paginator.setBackground(ColorScheme.DARKER_GRAY_COLOR.darker());
 		paginator.setBorder(new EmptyBorder(0, 0, 0, 10));
 		return paginator;
@@ -0,0 +1,63 @@
+package com.flippingutilities.ui.statistics;
+
+import com.flippingutilities.model.FlippingItem;
+import com.flippingutilities.model.IntervalStats;
+import lombok.Value;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The totals shown at the top of the statistics tab and the items on the page being shown, worked out from a copy of
+ * the trade list off the event dispatch thread. The items' stats are worked out in parallel, so the tab stays
+ * responsive even for the account wide trade list of someone who has flipped on many accounts for a long time.
+ */
+@Value
+public class StatsSnapshot
+{
+	//how many of the items have offers in the interval, which are the ones that get panels
+	int itemsWithOffers;
+	List<FlippingItem> itemsOnPage;
+	long totalProfit;
+	long totalExpenses;
+	int totalFlips;
+	String mostCommonItemName;
+	int mostFlips;
+
+	public static StatsSnapshot of(List<FlippingItem> items, Instant startOfInterval, String selectedSort, int pageNumber, int pageSize)
+	{
+		//the items cache their stats, so only the ones that changed since they were last worked out take any time
+		List<IntervalStats> itemStats = items.parallelStream().map(item -> item.getIntervalStats(startOfInterval)).collect(Collectors.toList());
+
+		List<FlippingItem> itemsWithOffers = new ArrayList<>();
+		long totalProfit = 0;
+		long totalExpenses = 0;
+		int totalFlips = 0;
+		String mostCommonItemName = null;
+		int mostFlips = 0;
+		for (int i = 0; i < items.size(); i++)
+		{
+			IntervalStats stats = itemStats.get(i);
+			if (stats.getOfferCount() == 0)
+			{
+				continue;
+			}
+			FlippingItem item = items.get(i);
+			itemsWithOffers.add(item);
+			totalProfit += stats.getProfit();
+			totalExpenses += stats.getExpense();
+			totalFlips += stats.getFlipCount();
+			if (mostCommonItemName == null || mostFlips < stats.getFlipCount())
+			{
+				mostFlips = stats.getFlipCount();
+				mostCommonItemName = item.getItemName();
+			}
+		}
+
+		List<FlippingItem> itemsUpToPage = TradeListSorter.sort(itemsWithOffers, selectedSort, startOfInterval, pageNumber * pageSize);
+		List<FlippingItem> itemsOnPage = new ArrayList<>(itemsUpToPage.subList(Math.min((pageNumber - 1) * pageSize, itemsUpToPage.size()), itemsUpToPage.size()));
+		return new StatsSnapshot(itemsWithOffers.size(), itemsOnPage, totalProfit, totalExpenses, totalFlips, mostCommonItemName, mostFlips);
+	}
+}
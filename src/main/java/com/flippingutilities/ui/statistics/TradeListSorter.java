@@ -0,0 +1,87 @@
+package com.flippingutilities.ui.statistics;
+
+import com.flippingutilities.model.FlippingItem;
+import com.flippingutilities.model.IntervalStats;
+import com.flippingutilities.utilities.ListUtils;
+import com.google.common.collect.Lists;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Sorts the items shown in the statistics tab. Each item's sort key is worked out once from its cached interval stats,
+ * rather than from its offers in every comparison, and only the items up to the page being shown are put in order.
+ */
+public class TradeListSorter
+{
+	/**
+	 * @param items           the items to sort
+	 * @param selectedSort    one of the sorts in the sort dropdown of the statistics tab, or null to not sort
+	 * @param startOfInterval the start of the interval the stats are sorted by
+	 * @param limit           how many of the items are needed, from the top
+	 * @return the first limit items, the ones that should be shown first coming first
+	 */
+	public static List<FlippingItem> sort(List<FlippingItem> items, String selectedSort, Instant startOfInterval, int limit)
+	{
+		if (selectedSort == null || items.isEmpty())
+		{
+			return new ArrayList<>(items.subList(0, Math.min(limit, items.size())));
+		}
+
+		switch (selectedSort)
+		{
+			case "Most Recent":
+				return sortByKey(items, FlippingItem::getLatestActivityTime, Comparator.<Instant>naturalOrder(), limit);
+
+			case "Most Total Profit":
+				return sortByKey(items, item ->
+				{
+					IntervalStats stats = item.getIntervalStats(startOfInterval);
+					return hasFlips(stats) ? stats.getProfit() : null;
+				}, Comparator.nullsFirst(Comparator.<Long>naturalOrder()), limit);
+
+			case "Most Profit Each":
+				return sortByKey(items, item ->
+				{
+					IntervalStats stats = item.getIntervalStats(startOfInterval);
+					if (stats.getItemsFlipped() == 0)
+					{
+						return 0;
+					}
+					return (int) stats.getProfit() / stats.getItemsFlipped();
+				}, Comparator.<Integer>naturalOrder(), limit);
+
+			case "Highest ROI":
+				return sortByKey(items, item ->
+				{
+					IntervalStats stats = item.getIntervalStats(startOfInterval);
+					return hasFlips(stats) ? (float) stats.getProfit() / stats.getExpense() : null;
+				}, Comparator.nullsFirst(Comparator.<Float>naturalOrder()), limit);
+
+			case "Highest Quantity":
+				return sortByKey(items, item -> item.getIntervalStats(startOfInterval).getItemsFlipped(), Comparator.<Integer>naturalOrder(), limit);
+
+			default:
+				throw new IllegalStateException("Unexpected value: " + selectedSort);
+		}
+	}
+
+	//items with nothing bought or nothing sold go after the ones that were flipped, no matter their profit
+	private static boolean hasFlips(IntervalStats stats)
+	{
+		long revenue = stats.getProfit() + stats.getExpense();
+		return stats.getExpense() != 0 && revenue != 0;
+	}
+
+	/**
+	 * The items with the highest keys come first. Items with equal keys come in the opposite order to the one they
+	 * were in, as the panel has always sorted them in ascending order and then reversed the list.
+	 */
+	private static <K> List<FlippingItem> sortByKey(List<FlippingItem> items, Function<FlippingItem, K> key, Comparator<K> comparator, int limit)
+	{
+		return ListUtils.firstSortedByKey(Lists.reverse(items), key, comparator.reversed(), limit);
+	}
+}
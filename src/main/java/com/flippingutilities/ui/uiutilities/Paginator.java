@@ -28,6 +28,7 @@ public class Paginator extends JPanel
 	@Setter
 	private JLabel arrowLeft;
 	Runnable onPageChange;
+	@Getter
 	@Setter
 	private int pageSize = 20;
 
@@ -88,6 +88,20 @@ public class SlotActivityTimer
 		slotStateString = slotStateWidget.getText();
 	}
 
+	/**
+	 * Creates a copy of the persisted part of this timer, so it can be written to disk while this one keeps getting
+	 * updated.
+	 */
+	public SlotActivityTimer copyForStorage()
+	{
+		SlotActivityTimer copy = new SlotActivityTimer(plugin, client, slotIndex);
+		copy.lastUpdate = lastUpdate;
+		copy.tradeStartTime = tradeStartTime;
+		copy.currentOffer = currentOffer;
+		copy.offerOccurredAtUnknownTime = offerOccurredAtUnknownTime;
+		return copy;
+	}
+
 	public void setCurrentOffer(OfferEvent offer)
 	{
 		if (offer.isBeforeLogin()) {
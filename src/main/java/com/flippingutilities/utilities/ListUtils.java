@@ -1,8 +1,14 @@
 package com.flippingutilities.utilities;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 public class ListUtils {
@@ -33,4 +39,134 @@ public class ListUtils {
         }
         return subLists;
     }
+
+    /**
+     * Gets the first items of the list when sorted by a key, working out the key of every item once rather than in
+     * every comparison. Items with equal keys stay in the order they were in, like in a stable sort. When only some
+     * of the items are needed they're picked out with a heap, without sorting the rest.
+     *
+     * @param items      to sort
+     * @param key        gets the key to sort an item by
+     * @param comparator orders the keys
+     * @param limit      how many of the items are needed
+     * @return the first limit items, in order
+     */
+    public static <T, K> List<T> firstSortedByKey(List<T> items, Function<T, K> key, Comparator<? super K> comparator, int limit)
+    {
+        List<Keyed<T, K>> keyedItems = new ArrayList<>(items.size());
+        for (T item : items)
+        {
+            keyedItems.add(new Keyed<>(item, key.apply(item), keyedItems.size()));
+        }
+        Comparator<Keyed<T, K>> order = (a, b) ->
+        {
+            int result = comparator.compare(a.key, b.key);
+            return result != 0 ? result : Integer.compare(a.index, b.index);
+        };
+
+        if (limit < keyedItems.size())
+        {
+            //the first items seen so far, with the one that comes last at the head so it's the one replaced
+            PriorityQueue<Keyed<T, K>> firstItems = new PriorityQueue<>(Math.max(limit, 1), order.reversed());
+            for (Keyed<T, K> keyedItem : keyedItems)
+            {
+                if (firstItems.size() < limit)
+                {
+                    firstItems.add(keyedItem);
+                }
+                else if (limit > 0 && order.compare(keyedItem, firstItems.peek()) < 0)
+                {
+                    firstItems.poll();
+                    firstItems.add(keyedItem);
+                }
+            }
+            keyedItems = new ArrayList<>(firstItems);
+        }
+        keyedItems.sort(order);
+        return keyedItems.stream().map(keyedItem -> keyedItem.item).collect(Collectors.toList());
+    }
+
+    /**
+     * Merges lists that are each already sorted into one sorted sequence, going through them at the same time with a
+     * heap of each list's next item, so merging k lists of n items in total takes n log k comparisons. The items are
+     * handed out one at a time as they're needed, so the merged sequence is never held in memory unless the caller
+     * collects it. Items that compare equal come in the order of the lists they're from.
+     *
+     * @param lists      the sorted lists to merge, which shouldn't change while the iterator is used
+     * @param comparator the order the lists are sorted in
+     * @return an iterator over the items of every list, in order
+     */
+    public static <T> Iterator<T> mergeSorted(List<? extends List<? extends T>> lists, Comparator<? super T> comparator)
+    {
+        PriorityQueue<Cursor<T>> cursors = new PriorityQueue<>(Math.max(lists.size(), 1), (a, b) ->
+        {
+            int result = comparator.compare(a.current(), b.current());
+            return result != 0 ? result : Integer.compare(a.listIndex, b.listIndex);
+        });
+        for (int i = 0; i < lists.size(); i++)
+        {
+            if (!lists.get(i).isEmpty())
+            {
+                cursors.add(new Cursor<>(lists.get(i), i));
+            }
+        }
+
+        return new Iterator<T>()
+        {
+            @Override
+            public boolean hasNext()
+            {
+                return !cursors.isEmpty();
+            }
+
+            @Override
+            public T next()
+            {
+                Cursor<T> cursor = cursors.poll();
+                if (cursor == null)
+                {
+                    throw new NoSuchElementException();
+                }
+                T item = cursor.current();
+                cursor.index++;
+                if (cursor.index < cursor.list.size())
+                {
+                    cursors.add(cursor);
+                }
+                return item;
+            }
+        };
+    }
+
+    private static class Cursor<T>
+    {
+        private final List<? extends T> list;
+        private final int listIndex;
+        private int index;
+
+        private Cursor(List<? extends T> list, int listIndex)
+        {
+            this.list = list;
+            this.listIndex = listIndex;
+        }
+
+        private T current()
+        {
+            return list.get(index);
+        }
+    }
+
+    private static class Keyed<T, K>
+    {
+        private final T item;
+        private final K key;
+        private final int index;
+
+        private Keyed(T item, K key, int index)
+        {
+            this.item = item;
+            this.key = key;
+            this.index = index;
+        }
+    }
 }
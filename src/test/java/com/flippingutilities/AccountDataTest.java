@@ -0,0 +1,148 @@
+package com.flippingutilities;
+
+import com.flippingutilities.model.AccountData;
+import com.flippingutilities.model.FlippingItem;
+import com.flippingutilities.model.OfferEvent;
+import net.runelite.api.GrandExchangeOfferState;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class AccountDataTest
+{
+	private static final int ITEM_IDS = 12;
+
+	@Test
+	public void marginChecksMoveItemsToTheFront()
+	{
+		AccountData account = new AccountData();
+		FlippingItem item1 = addOffer(account, 1, false);
+		FlippingItem item2 = addOffer(account, 2, false);
+		FlippingItem item3 = addOffer(account, 3, false);
+		assertEquals(Arrays.asList(item3, item2, item1), account.getTrades());
+
+		assertSame(item1, addOffer(account, 1, true));
+		assertEquals(Arrays.asList(item1, item3, item2), account.getTrades());
+		//offers that aren't margin checks leave the order alone
+		assertSame(item2, addOffer(account, 2, false));
+		assertEquals(Arrays.asList(item1, item3, item2), account.getTrades());
+
+		assertSame(item2, account.findItem(2).get());
+		assertFalse(account.findItem(4).isPresent());
+	}
+
+	@Test
+	public void findItemMatchesSearchingTrades()
+	{
+		Random random = new Random(7);
+		AccountData account = new AccountData();
+		//what the trades list would be if it were an ArrayList searched on every lookup
+		List<FlippingItem> expected = new ArrayList<>();
+		for (int i = 0; i < 3000; i++)
+		{
+			int itemId = random.nextInt(ITEM_IDS);
+			int operation = random.nextInt(10);
+			if (operation < 5)
+			{
+				boolean marginCheck = random.nextBoolean();
+				FlippingItem expectedItem = find(expected, itemId);
+				boolean deleted = expectedItem != null && !expectedItem.getValidFlippingPanelItem();
+				FlippingItem item = addOffer(account, itemId, marginCheck);
+				if (expectedItem == null)
+				{
+					expected.add(0, item);
+				}
+				else
+				{
+					assertSame(expectedItem, item);
+					if (marginCheck || deleted)
+					{
+						expected.remove(item);
+						expected.add(0, item);
+					}
+				}
+			}
+			else if (operation == 5 && !expected.isEmpty())
+			{
+				//deleted items are shown again, at the front, when they're traded
+				expected.get(random.nextInt(expected.size())).setValidFlippingPanelItem(false);
+			}
+			else if (operation == 6)
+			{
+				account.getTrades().removeIf(item -> item.getItemId() == itemId);
+				expected.removeIf(item -> item.getItemId() == itemId);
+			}
+			else if (operation == 7)
+			{
+				int index = random.nextInt(expected.size() + 1);
+				FlippingItem item = new FlippingItem(itemId, "item " + itemId, 100, "account");
+				item.setValidFlippingPanelItem(true);
+				account.getTrades().listIterator(index).add(item);
+				expected.add(index, item);
+			}
+			else if (operation == 8 && !expected.isEmpty())
+			{
+				int index = random.nextInt(expected.size());
+				FlippingItem item = new FlippingItem(itemId, "item " + itemId, 100, "account");
+				item.setValidFlippingPanelItem(true);
+				ListIterator<FlippingItem> iterator = account.getTrades().listIterator(index);
+				iterator.next();
+				iterator.set(item);
+				expected.set(index, item);
+			}
+			else if (operation == 9)
+			{
+				//like loading trades that were saved with duplicates
+				List<FlippingItem> trades = new ArrayList<>(expected);
+				trades.addAll(expected.subList(0, Math.min(3, expected.size())));
+				account.setTrades(trades);
+				expected = trades;
+			}
+
+			assertEquals(expected, account.getTrades());
+			for (int id = 0; id < ITEM_IDS; id++)
+			{
+				assertSame(find(expected, id), account.findItem(id).orElse(null));
+			}
+		}
+	}
+
+	@Test
+	public void snapshotDoesNotChangeWithTheAccount()
+	{
+		AccountData account = new AccountData();
+		OfferEvent offer = Utils.offer(true, 5, 100, Instant.now(), 0, GrandExchangeOfferState.BOUGHT, 5);
+		FlippingItem item = account.addOffer(offer, () -> new FlippingItem(1, "item 1", 100, "account"));
+		account.getLastOffers().put(0, offer);
+		AccountData snapshot = account.snapshot();
+
+		//offers are invalidated and have their trade's start time set in place
+		item.getHistory().invalidateOffers(item.getHistory().getCompressedOfferEvents());
+		account.getLastOffers().get(0).setTradeStartedAt(Instant.now());
+
+		assertTrue(snapshot.getTrades().get(0).getHistory().getCompressedOfferEvents().get(0).isValidOfferEvent());
+		assertNull(snapshot.getLastOffers().get(0).getTradeStartedAt());
+	}
+
+	private static FlippingItem find(List<FlippingItem> items, int itemId)
+	{
+		return items.stream().filter(item -> item.getItemId() == itemId).findFirst().orElse(null);
+	}
+
+	private static FlippingItem addOffer(AccountData account, int itemId, boolean marginCheck)
+	{
+		OfferEvent offer = OfferEvent.dummyOffer(true, marginCheck, 100, itemId, "item " + itemId);
+		return account.addOffer(offer, () -> new FlippingItem(itemId, "item " + itemId, 100, "account"));
+	}
+}
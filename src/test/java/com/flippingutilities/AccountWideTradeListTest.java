@@ -0,0 +1,135 @@
+package com.flippingutilities;
+
+import com.flippingutilities.model.AccountData;
+import com.flippingutilities.model.AccountWideTradeList;
+import com.flippingutilities.model.FlippingItem;
+import com.flippingutilities.model.OfferEvent;
+import net.runelite.api.GrandExchangeOfferState;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class AccountWideTradeListTest
+{
+	private static final Instant BASE_TIME = Instant.now();
+
+	@Test
+	public void mergesItemsOfEveryAccount()
+	{
+		AccountData account1 = new AccountData();
+		AccountData account2 = new AccountData();
+		addOffer(account1, 1, true, 0);
+		addOffer(account2, 1, false, 1);
+		addOffer(account2, 2, true, 2);
+
+		List<FlippingItem> trades = new AccountWideTradeList().getTrades(Arrays.asList(account1, account2));
+
+		assertEquals(2, trades.size());
+		//most recently traded first
+		assertEquals(2, trades.get(0).getItemId());
+		assertEquals(1, trades.get(1).getItemId());
+		assertEquals(2, trades.get(1).getHistory().getCompressedOfferEvents().size());
+	}
+
+	@Test
+	public void mergedHistoryIsInTimeOrder()
+	{
+		AccountData account1 = new AccountData();
+		AccountData account2 = new AccountData();
+		AccountData account3 = new AccountData();
+		for (int minutes = 0; minutes < 9; minutes++)
+		{
+			addOffer(Arrays.asList(account1, account2, account3).get(minutes % 3), 1, minutes % 2 == 0, minutes);
+		}
+
+		FlippingItem merged = new AccountWideTradeList().getTrades(Arrays.asList(account1, account2, account3)).get(0);
+
+		List<OfferEvent> offers = merged.getHistory().getCompressedOfferEvents();
+		assertEquals(9, offers.size());
+		for (int minutes = 0; minutes < 9; minutes++)
+		{
+			assertEquals(BASE_TIME.plus(minutes, ChronoUnit.MINUTES), offers.get(minutes).getTime());
+		}
+		//the properties of the latest active account's item are kept
+		assertSame(account3.getTrades().get(0).getLatestBuy().get(), merged.getLatestBuy().get());
+	}
+
+	@Test
+	public void onlyChangedItemsAreMergedAgain()
+	{
+		AccountData account1 = new AccountData();
+		AccountData account2 = new AccountData();
+		addOffer(account1, 1, true, 0);
+		addOffer(account2, 1, false, 1);
+		addOffer(account2, 2, true, 2);
+		List<AccountData> accounts = Arrays.asList(account1, account2);
+		AccountWideTradeList accountWideTradeList = new AccountWideTradeList();
+		List<FlippingItem> trades = accountWideTradeList.getTrades(accounts);
+		FlippingItem item1 = trades.get(1);
+		FlippingItem item2 = trades.get(0);
+
+		//nothing changed, so the same list is handed out
+		assertSame(trades, accountWideTradeList.getTrades(accounts));
+
+		addOffer(account1, 1, false, 3);
+		addOffer(account1, 3, true, 4);
+		accountWideTradeList.itemsChanged(Arrays.asList(1, 3));
+		trades = accountWideTradeList.getTrades(accounts);
+
+		assertEquals(3, trades.size());
+		assertEquals(3, trades.get(0).getItemId());
+		//the items are updated in place, so the panels showing them keep showing them
+		assertSame(item1, trades.get(1));
+		assertSame(item2, trades.get(2));
+		assertEquals(3, item1.getHistory().getCompressedOfferEvents().size());
+		assertEquals(1, item2.getHistory().getCompressedOfferEvents().size());
+	}
+
+	@Test
+	public void changingMergedItemsDoesNotChangeAccounts()
+	{
+		AccountData account1 = new AccountData();
+		AccountData account2 = new AccountData();
+		addOffer(account1, 1, true, 0);
+		addOffer(account2, 1, false, 1);
+
+		FlippingItem merged = new AccountWideTradeList().getTrades(Arrays.asList(account1, account2)).get(0);
+		merged.invalidateOffers(merged.getHistory().getCompressedOfferEvents());
+
+		assertEquals(true, account1.getTrades().get(0).hasValidOffers());
+		assertEquals(true, account2.getTrades().get(0).hasValidOffers());
+	}
+
+	@Test
+	public void itemsNoLongerTradedAreRemoved()
+	{
+		AccountData account1 = new AccountData();
+		addOffer(account1, 1, true, 0);
+		addOffer(account1, 2, true, 1);
+		AccountWideTradeList accountWideTradeList = new AccountWideTradeList();
+		List<AccountData> accounts = Collections.singletonList(account1);
+		accountWideTradeList.getTrades(accounts);
+
+		account1.getTrades().removeIf(item -> item.getItemId() == 2);
+		accountWideTradeList.itemsChanged(Collections.singleton(2));
+
+		List<FlippingItem> trades = accountWideTradeList.getTrades(accounts);
+		assertEquals(1, trades.size());
+		assertEquals(1, trades.get(0).getItemId());
+	}
+
+	private static void addOffer(AccountData account, int itemId, boolean buy, int minutes)
+	{
+		OfferEvent offer = Utils.offer(buy, 10, 100, BASE_TIME.plus(minutes, ChronoUnit.MINUTES), minutes,
+			buy ? GrandExchangeOfferState.BOUGHT : GrandExchangeOfferState.SOLD, 10);
+		offer.setItemId(itemId);
+		account.addOffer(offer, () -> new FlippingItem(itemId, "item " + itemId, 100, "account"));
+	}
+}
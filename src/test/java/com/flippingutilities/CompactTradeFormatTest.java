@@ -0,0 +1,102 @@
+package com.flippingutilities;
+
+import com.flippingutilities.db.CompactTradeFormat;
+import com.flippingutilities.model.AccountData;
+import com.flippingutilities.model.FlippingItem;
+import com.flippingutilities.model.OfferEvent;
+import com.google.gson.Gson;
+import net.runelite.api.GrandExchangeOfferState;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Whatever is stored in the compact format has to come back exactly as it would from JSON, so converting an account
+ * between the two formats never changes its data.
+ */
+public class CompactTradeFormatTest
+{
+	private final Gson gson = new Gson();
+
+	private final CompactTradeFormat format = new CompactTradeFormat(gson);
+
+	private AccountData accountData;
+
+	@Before
+	public void setUp()
+	{
+		//not a whole number of millis, which offers normally are
+		Instant baseTime = Instant.ofEpochSecond(1600000000L, 123456789);
+		accountData = new AccountData();
+		accountData.setJournalSequence(42);
+		accountData.setSegmentedBefore("2020-08");
+
+		FlippingItem item = new FlippingItem(560, "Death rune", 25000, "acc");
+		item.setValidFlippingPanelItem(false);
+		item.setFavorite(true);
+		item.setFavoriteCode("dr");
+		item.updateHistory(Utils.offer(true, 10, 200, baseTime.minus(30, ChronoUnit.MINUTES), 1, GrandExchangeOfferState.BUYING, 100));
+		item.updateHistory(Utils.offer(true, 100, 200, Instant.ofEpochMilli(1600000000123L), 7, GrandExchangeOfferState.BOUGHT, 100));
+		OfferEvent sell = Utils.offer(false, 40, Integer.MAX_VALUE, baseTime.minus(5, ChronoUnit.MINUTES), 2, GrandExchangeOfferState.CANCELLED_SELL, 100);
+		sell.setTradeStartedAt(baseTime.minus(10, ChronoUnit.MINUTES));
+		sell.setBeforeLogin(true);
+		item.updateHistory(sell);
+		//added from the ge history, so it has no slot or time
+		item.getHistory().getCompressedOfferEvents().add(Utils.offer(false, 5, 210, null, -1, null, 5));
+		accountData.getTrades().add(item);
+
+		FlippingItem oddSlotItem = new FlippingItem(2, "Cannonball", 11000, "acc");
+		oddSlotItem.getHistory().getCompressedOfferEvents().add(Utils.offer(true, 1, 1, baseTime, 20, GrandExchangeOfferState.SOLD, 1));
+		accountData.getTrades().add(oddSlotItem);
+
+		//an item with nothing but the defaults
+		accountData.getTrades().add(new FlippingItem(3, null, 0, null));
+		accountData.getLastOffers().put(1, sell);
+	}
+
+	@Test
+	public void accountRoundTrips() throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		format.writeAccount(new DataOutputStream(bytes), accountData);
+		AccountData loaded = format.readAccount(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+		assertEquals(gson.toJson(accountData), gson.toJson(loaded));
+	}
+
+	@Test
+	public void itemListRoundTrips() throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		format.writeItemList(new DataOutputStream(bytes), accountData.getTrades());
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		assertEquals(gson.toJson(accountData.getTrades()), gson.toJson(format.readItemList(in)));
+	}
+
+	@Test
+	public void compactFilesAreToldApartFromJson() throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		format.writeAccount(new DataOutputStream(bytes), accountData);
+		BufferedInputStream compact = new BufferedInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		assertTrue(CompactTradeFormat.isCompact(compact));
+		//checking doesn't consume anything
+		assertEquals(bytes.toByteArray()[0], compact.read());
+
+		byte[] json = gson.toJson(accountData).getBytes(StandardCharsets.UTF_8);
+		assertFalse(CompactTradeFormat.isCompact(new BufferedInputStream(new ByteArrayInputStream(json))));
+		assertFalse(CompactTradeFormat.isCompact(new BufferedInputStream(new ByteArrayInputStream(new byte[0]))));
+	}
+}
@@ -0,0 +1,91 @@
+package com.flippingutilities;
+
+import com.flippingutilities.db.FileFingerprint;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+public class FileFingerprintTest
+{
+	//bigger than the buffer the file is read with
+	private static final int LARGE_FILE_SIZE = 1024 * 1024;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void sameContentsHaveTheSameFingerprint() throws IOException
+	{
+		byte[] contents = contents(LARGE_FILE_SIZE);
+		assertEquals(fingerprint("a", contents), fingerprint("b", contents));
+		assertEquals(LARGE_FILE_SIZE, fingerprint("a", contents).getSize());
+	}
+
+	@Test
+	public void changedStartChangesFingerprint() throws IOException
+	{
+		byte[] contents = contents(LARGE_FILE_SIZE);
+		FileFingerprint before = fingerprint("a", contents);
+		contents[10]++;
+		assertNotEquals(before, fingerprint("a", contents));
+	}
+
+	@Test
+	public void changedEndChangesFingerprint() throws IOException
+	{
+		byte[] contents = contents(LARGE_FILE_SIZE);
+		FileFingerprint before = fingerprint("a", contents);
+		contents[LARGE_FILE_SIZE - 10]++;
+		assertNotEquals(before, fingerprint("a", contents));
+	}
+
+	@Test
+	public void changedSizeChangesFingerprint() throws IOException
+	{
+		byte[] contents = contents(LARGE_FILE_SIZE);
+		FileFingerprint before = fingerprint("a", contents);
+		assertNotEquals(before, fingerprint("a", Arrays.copyOf(contents, LARGE_FILE_SIZE + 1)));
+	}
+
+	@Test
+	public void changedMiddleChangesFingerprint() throws IOException
+	{
+		//like a favorite being toggled or a price changed in the middle of an account's file
+		byte[] contents = contents(LARGE_FILE_SIZE);
+		FileFingerprint before = fingerprint("a", contents);
+		contents[LARGE_FILE_SIZE / 2]++;
+		assertNotEquals(before, fingerprint("a", contents));
+	}
+
+	@Test
+	public void missingFileHasNoFingerprint()
+	{
+		assertNull(FileFingerprint.of(new File(folder.getRoot(), "missing")));
+	}
+
+	private FileFingerprint fingerprint(String name, byte[] contents) throws IOException
+	{
+		File file = new File(folder.getRoot(), name);
+		Files.write(file.toPath(), contents);
+		return FileFingerprint.of(file);
+	}
+
+	private static byte[] contents(int size)
+	{
+		byte[] contents = new byte[size];
+		for (int i = 0; i < size; i++)
+		{
+			contents[i] = (byte) (i * 31);
+		}
+		return contents;
+	}
+}
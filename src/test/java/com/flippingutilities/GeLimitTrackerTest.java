@@ -0,0 +1,80 @@
+package com.flippingutilities;
+
+import com.flippingutilities.model.FlippingItem;
+import com.flippingutilities.model.GeLimitTracker;
+import com.flippingutilities.model.OfferEvent;
+import net.runelite.api.GrandExchangeOfferState;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class GeLimitTrackerTest
+{
+	private static final Instant BASE_TIME = Instant.now();
+
+	@Test
+	public void windowsAreResetOnceTheyRunOut()
+	{
+		FlippingItem item1 = buy(new FlippingItem(1, "item 1", 100, "account"), 0, 10);
+		FlippingItem item2 = buy(new FlippingItem(2, "item 2", 100, "account"), 60, 20);
+		GeLimitTracker tracker = new GeLimitTracker();
+		tracker.trackAll(Arrays.asList(item1, item2));
+
+		assertEquals(Collections.emptyList(), tracker.expire(BASE_TIME.plus(239, ChronoUnit.MINUTES)));
+		assertEquals(Collections.singletonList(item1), tracker.expire(BASE_TIME.plus(240, ChronoUnit.MINUTES)));
+		assertEquals(0, item1.getItemsBoughtThisLimitWindow());
+		assertNull(item1.getGeLimitResetTime());
+		assertEquals(20, item2.getItemsBoughtThisLimitWindow());
+
+		assertEquals(Collections.singletonList(item2), tracker.expire(BASE_TIME.plus(300, ChronoUnit.MINUTES)));
+		assertEquals(0, item2.getItemsBoughtThisLimitWindow());
+	}
+
+	@Test
+	public void renewedWindowsAreNotResetEarly()
+	{
+		FlippingItem item = buy(new FlippingItem(1, "item 1", 100, "account"), 0, 10);
+		GeLimitTracker tracker = new GeLimitTracker();
+		tracker.track(item);
+
+		//the item is bought again after the window ran out but before the tracker got to it, and isn't tracked again
+		buy(item, 250, 5);
+		assertEquals(Collections.emptyList(), tracker.expire(BASE_TIME.plus(260, ChronoUnit.MINUTES)));
+		assertEquals(5, item.getItemsBoughtThisLimitWindow());
+
+		assertEquals(Collections.singletonList(item), tracker.expire(BASE_TIME.plus(490, ChronoUnit.MINUTES)));
+		assertEquals(0, item.getItemsBoughtThisLimitWindow());
+	}
+
+	@Test
+	public void untrackedItemsAreNotReset()
+	{
+		FlippingItem item1 = buy(new FlippingItem(1, "item 1", 100, "account"), 0, 10);
+		FlippingItem item2 = buy(new FlippingItem(2, "item 2", 100, "account"), 0, 20);
+		GeLimitTracker tracker = new GeLimitTracker();
+		tracker.trackAll(Arrays.asList(item1, item2));
+
+		//like item 1's account being deleted or loaded again
+		tracker.untrackAll(Collections.singletonList(item1));
+		assertEquals(Collections.singletonList(item2), tracker.expire(BASE_TIME.plus(240, ChronoUnit.MINUTES)));
+		assertEquals(10, item1.getItemsBoughtThisLimitWindow());
+
+		tracker.track(item1);
+		assertEquals(Collections.singletonList(item1), tracker.expire(BASE_TIME.plus(240, ChronoUnit.MINUTES)));
+	}
+
+	private static FlippingItem buy(FlippingItem item, int minutes, int quantity)
+	{
+		OfferEvent offer = Utils.offer(true, quantity, 100, BASE_TIME.plus(minutes, ChronoUnit.MINUTES), minutes % 8,
+			GrandExchangeOfferState.BOUGHT, quantity);
+		offer.setItemId(item.getItemId());
+		item.updateHistory(offer);
+		return item;
+	}
+}
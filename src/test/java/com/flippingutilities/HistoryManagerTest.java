@@ -29,18 +29,28 @@ package com.flippingutilities;
 
 import com.flippingutilities.model.Flip;
 import com.flippingutilities.model.HistoryManager;
+import com.flippingutilities.model.IntervalStats;
 import com.flippingutilities.model.OfferEvent;
 import net.runelite.api.GrandExchangeOfferState;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class HistoryManagerTest
 {
@@ -122,6 +132,41 @@ public class HistoryManagerTest
 		assertEquals(0, historyManager.currentProfit(tradesList));
 	}
 
+	@Test
+	public void partialBuysInSeveralSlotsAreAllCounted()
+	{
+		HistoryManager historyManager = new HistoryManager();
+		Instant start = baseTime.minus(1, ChronoUnit.HOURS);
+
+		historyManager.updateHistory(Utils.offer(true, 5, 100, start, 1, GrandExchangeOfferState.BUYING, 20, 0));
+		historyManager.updateHistory(Utils.offer(true, 3, 100, start.plusSeconds(10), 2, GrandExchangeOfferState.BUYING, 20, 0));
+		historyManager.updateHistory(Utils.offer(true, 8, 100, start.plusSeconds(20), 1, GrandExchangeOfferState.BUYING, 20, 0));
+		assertEquals(11, historyManager.getItemsBoughtThisLimitWindow());
+
+		historyManager.updateHistory(Utils.offer(true, 6, 100, start.plusSeconds(30), 2, GrandExchangeOfferState.CANCELLED_BUY, 20, 0));
+		historyManager.updateHistory(Utils.offer(true, 20, 100, start.plusSeconds(40), 1, GrandExchangeOfferState.BOUGHT, 20, 0));
+		assertEquals(26, historyManager.getItemsBoughtThisLimitWindow());
+		assertEquals(start.plus(4, ChronoUnit.HOURS), historyManager.getNextGeLimitRefresh());
+	}
+
+	@Test
+	public void tradeInProgressWhenLimitRefreshesOnlyCountsWhatItBuysAfter()
+	{
+		HistoryManager historyManager = new HistoryManager();
+		Instant start = baseTime.minus(5, ChronoUnit.HOURS);
+
+		historyManager.updateHistory(Utils.offer(true, 10, 100, start, 1, GrandExchangeOfferState.BUYING, 50, 0));
+		historyManager.updateHistory(Utils.offer(true, 25, 100, baseTime, 1, GrandExchangeOfferState.BUYING, 50, 0));
+		assertEquals(15, historyManager.getItemsBoughtThisLimitWindow());
+		assertEquals(baseTime.plus(4, ChronoUnit.HOURS), historyManager.getNextGeLimitRefresh());
+
+		//the window only starts once something is bought after the limit refreshed
+		historyManager.validateGeProperties(baseTime.plus(5, ChronoUnit.HOURS));
+		historyManager.updateHistory(Utils.offer(true, 0, 100, baseTime.plus(5, ChronoUnit.HOURS), 2, GrandExchangeOfferState.BUYING, 50, 0));
+		assertEquals(0, historyManager.getItemsBoughtThisLimitWindow());
+		assertEquals(null, historyManager.getNextGeLimitRefresh());
+	}
+
 	@Test
 	public void gePropertiesCorrectnessTest()
 	{
@@ -389,4 +434,349 @@ public class HistoryManagerTest
 
 		assertEquals(historyManager.getCompressedOfferEvents(), expectedCompressedEvents);
 	}
+
+	//getFlips keeps its matching up to date as offers come in, so it has to come up with the same flips as matching
+	//all the offers from scratch, including while a sell is still partway through.
+	@Test
+	public void getFlipsMatchesCreateFlipsAsOffersComeIn()
+	{
+		HistoryManager historyManager = new HistoryManager();
+		List<OfferEvent> offers = new ArrayList<>();
+		offers.add(Utils.offer(true, 10, 100, baseTime.minus(30, ChronoUnit.MINUTES), 1, GrandExchangeOfferState.BOUGHT, 10));
+		//a margin check that isn't paired until the sell margin check comes in
+		offers.add(Utils.offer(true, 1, 110, baseTime.minus(25, ChronoUnit.MINUTES), 2, GrandExchangeOfferState.BOUGHT, 0, 1, 1));
+		offers.add(Utils.offer(false, 4, 105, baseTime.minus(25, ChronoUnit.MINUTES).plusSeconds(10), 3, GrandExchangeOfferState.SELLING, 15));
+		offers.add(Utils.offer(false, 1, 95, baseTime.minus(25, ChronoUnit.MINUTES).plusSeconds(20), 2, GrandExchangeOfferState.SOLD, 0, 1, 1));
+		offers.add(Utils.offer(false, 12, 105, baseTime.minus(20, ChronoUnit.MINUTES), 3, GrandExchangeOfferState.SELLING, 15));
+		offers.add(Utils.offer(true, 5, 90, baseTime.minus(15, ChronoUnit.MINUTES), 1, GrandExchangeOfferState.BOUGHT, 5));
+		offers.add(Utils.offer(false, 15, 105, baseTime.minus(10, ChronoUnit.MINUTES), 3, GrandExchangeOfferState.SOLD, 15));
+
+		for (OfferEvent offer : offers)
+		{
+			historyManager.updateHistory(offer);
+			List<Flip> expectedFlips = HistoryManager.createFlips(historyManager.getCompressedOfferEvents());
+			expectedFlips.sort(Comparator.comparing(Flip::getTime).reversed());
+			assertEquals(expectedFlips, historyManager.getFlips(Instant.EPOCH));
+		}
+
+		//only the offers in the interval are matched, like for the rest of the interval's stats
+		assertEquals(Collections.emptyList(), historyManager.getFlips(baseTime.minus(12, ChronoUnit.MINUTES)));
+		List<Flip> expectedFlips = new ArrayList<>();
+		expectedFlips.add(new Flip(90, 105, 5, baseTime.minus(10, ChronoUnit.MINUTES), false, true));
+		assertEquals(expectedFlips, historyManager.getFlips(baseTime.minus(16, ChronoUnit.MINUTES)));
+	}
+
+	//whatever order offers come in, get removed or get invalidated in, and whichever interval is asked for, getFlips
+	//has to come up with the same flips as matching the interval's offers of each account from scratch
+	@Test
+	public void getFlipsMatchesCreateFlipsForTheInterval()
+	{
+		GrandExchangeOfferState[] buyStates = {GrandExchangeOfferState.BUYING, GrandExchangeOfferState.BOUGHT, GrandExchangeOfferState.CANCELLED_BUY};
+		GrandExchangeOfferState[] sellStates = {GrandExchangeOfferState.SELLING, GrandExchangeOfferState.SOLD, GrandExchangeOfferState.CANCELLED_SELL};
+		String[] accounts = {"gooby", "dooby"};
+		Random random = new Random(0);
+		for (int run = 0; run < 300; run++)
+		{
+			HistoryManager historyManager = new HistoryManager();
+			Instant time = baseTime;
+			Instant earliestTime = Instant.EPOCH;
+			for (int i = 0; i < 150; i++)
+			{
+				int action = random.nextInt(25);
+				List<OfferEvent> offers = historyManager.getCompressedOfferEvents();
+				if (action == 0 && !offers.isEmpty())
+				{
+					historyManager.invalidateOffers(Collections.singletonList(offers.get(random.nextInt(offers.size()))));
+				}
+				else if (action == 1)
+				{
+					//offers added from the ge history, which can be from before the interval
+					OfferEvent offer = Utils.offer(random.nextBoolean(), 1 + random.nextInt(10), 90 + random.nextInt(20), time.minus(random.nextInt(600), ChronoUnit.SECONDS), -1, GrandExchangeOfferState.BOUGHT, 10);
+					offer.setMadeBy(accounts[random.nextInt(accounts.length)]);
+					historyManager.getCompressedOfferEvents().addAll(Collections.singletonList(offer));
+				}
+				else
+				{
+					boolean buy = random.nextBoolean();
+					//mostly in order and close enough together for margin checks to be paired, but sometimes late
+					time = time.plusSeconds(random.nextInt(40));
+					Instant offerTime = random.nextInt(15) == 0 ? time.minus(random.nextInt(100), ChronoUnit.SECONDS) : time;
+					int slot = random.nextInt(15) == 0 ? -1 : random.nextInt(3);
+					OfferEvent offer;
+					if (random.nextInt(4) == 0)
+					{
+						offer = Utils.offer(buy, 1, 90 + random.nextInt(20), offerTime, slot, buy ? GrandExchangeOfferState.BOUGHT : GrandExchangeOfferState.SOLD, 0, random.nextInt(4), 1);
+					}
+					else
+					{
+						offer = Utils.offer(buy, 1 + random.nextInt(10), 90 + random.nextInt(20), offerTime, slot, (buy ? buyStates : sellStates)[random.nextInt(3)], 10);
+					}
+					offer.setMadeBy(accounts[random.nextInt(accounts.length)]);
+					historyManager.updateHistory(offer);
+				}
+
+				//the same interval is mostly asked for again, like the statistics tab does until another one is picked
+				if (random.nextInt(10) == 0)
+				{
+					earliestTime = random.nextBoolean() ? Instant.EPOCH : baseTime.plusSeconds(random.nextInt((int) Duration.between(baseTime, time).getSeconds() + 1));
+				}
+				List<Flip> flips = historyManager.getFlips(earliestTime);
+				for (int j = 1; j < flips.size(); j++)
+				{
+					assertFalse(flips.get(j).getTime().isAfter(flips.get(j - 1).getTime()));
+				}
+				assertEquals(inCanonicalOrder(createIntervalFlips(historyManager.getCompressedOfferEvents(), earliestTime)), inCanonicalOrder(flips));
+			}
+		}
+	}
+
+	//the statistics tab gets the flips on other threads while offers come in on the client thread, which changes the
+	//offers while holding their lock
+	@Test
+	public void getFlipsWaitsForOffersBeingChanged() throws InterruptedException
+	{
+		historyManager.getFlips(Instant.EPOCH);
+		List<OfferEvent> offers = historyManager.getCompressedOfferEvents();
+		AtomicReference<List<Flip>> flips = new AtomicReference<>();
+		Thread statsThread = new Thread(() -> flips.set(historyManager.getFlips(Instant.EPOCH)));
+		synchronized (offers)
+		{
+			statsThread.start();
+			for (int i = 0; i < 500 && statsThread.getState() != Thread.State.BLOCKED; i++)
+			{
+				Thread.sleep(10);
+			}
+			assertEquals(Thread.State.BLOCKED, statsThread.getState());
+			historyManager.updateHistory(Utils.offer(false, 5, 120, baseTime.plusSeconds(1), 9, GrandExchangeOfferState.SOLD, 5));
+		}
+		statsThread.join();
+
+		assertEquals(historyManager.getFlips(Instant.EPOCH), flips.get());
+	}
+
+	//how getFlips used to match the offers of an interval
+	private static List<Flip> createIntervalFlips(List<OfferEvent> offers, Instant earliestTime)
+	{
+		Map<String, List<OfferEvent>> groupedOffers = offers.stream()
+			.filter(offer -> offer.isValidOfferEvent() && offer.getTime().isAfter(earliestTime))
+			.collect(Collectors.groupingBy(OfferEvent::getMadeBy));
+		List<Flip> flips = new ArrayList<>();
+		groupedOffers.values().forEach(accountOffers -> flips.addAll(HistoryManager.createFlips(accountOffers)));
+		return flips;
+	}
+
+	//flips with the same time can come in either order
+	private static List<Flip> inCanonicalOrder(List<Flip> flips)
+	{
+		List<Flip> sorted = new ArrayList<>(flips);
+		sorted.sort(Comparator.comparing(Flip::getTime)
+			.thenComparing(Flip::getBuyPrice)
+			.thenComparing(Flip::getSellPrice)
+			.thenComparing(Flip::getQuantity)
+			.thenComparing(Flip::isMarginCheck)
+			.thenComparing(Flip::isOngoing));
+		return sorted;
+	}
+
+	//interval queries are answered with views of the offers, which shouldn't change as offers are added or removed
+	@Test
+	public void getIntervalsHistoryTest()
+	{
+		Instant startOfInterval = baseTime.minus(11, ChronoUnit.MINUTES);
+		List<OfferEvent> expectedHistory = new ArrayList<>();
+		for (OfferEvent offer : historyManager.getCompressedOfferEvents())
+		{
+			if (offer.getTime().isAfter(startOfInterval))
+			{
+				expectedHistory.add(offer);
+			}
+		}
+		List<OfferEvent> intervalHistory = historyManager.getIntervalsHistory(startOfInterval);
+		assertEquals(expectedHistory, intervalHistory);
+
+		//an offer that comes in late is still put in order of its time
+		OfferEvent lateOffer = Utils.offer(true, 2, 100, baseTime.minus(8, ChronoUnit.MINUTES), 5, GrandExchangeOfferState.BOUGHT, 2);
+		historyManager.updateHistory(lateOffer);
+		historyManager.updateHistory(Utils.offer(true, 1, 100, baseTime, 6, GrandExchangeOfferState.BOUGHT, 1));
+		assertEquals(expectedHistory, intervalHistory);
+
+		List<OfferEvent> newIntervalHistory = historyManager.getIntervalsHistory(startOfInterval);
+		assertEquals(expectedHistory.size() + 2, newIntervalHistory.size());
+		for (int i = 1; i < newIntervalHistory.size(); i++)
+		{
+			assertTrue(!newIntervalHistory.get(i).getTime().isBefore(newIntervalHistory.get(i - 1).getTime()));
+		}
+
+		historyManager.invalidateOffers(Collections.singletonList(lateOffer));
+		assertEquals(expectedHistory.size() + 2, newIntervalHistory.size());
+		assertEquals(expectedHistory.size() + 1, historyManager.getIntervalsHistory(startOfInterval).size());
+		assertFalse(historyManager.getIntervalsHistory(startOfInterval).contains(lateOffer));
+	}
+
+	//the totals of an interval come from running totals, which have to match going through the interval's offers
+	@Test
+	public void intervalTotalsMatchGoingThroughOffers()
+	{
+		historyManager.updateHistory(Utils.offer(true, 2, 100, baseTime.minus(8, ChronoUnit.MINUTES), 5, GrandExchangeOfferState.BOUGHT, 2));
+		for (int minutes = 45; minutes >= 0; minutes--)
+		{
+			List<OfferEvent> intervalHistory = historyManager.getIntervalsHistory(baseTime.minus(minutes, ChronoUnit.MINUTES));
+			List<OfferEvent> offers = new ArrayList<>(intervalHistory);
+			assertEquals(HistoryManager.countItemsFlipped(offers), HistoryManager.countItemsFlipped(intervalHistory));
+			assertEquals(HistoryManager.currentProfit(offers), HistoryManager.currentProfit(intervalHistory));
+			assertEquals(HistoryManager.getFlippedCashFlow(offers, true), HistoryManager.getFlippedCashFlow(intervalHistory, true));
+			assertEquals(HistoryManager.getTotalCashFlow(offers, true), HistoryManager.getTotalCashFlow(intervalHistory, true));
+			assertEquals(HistoryManager.getTotalCashFlow(offers, false), HistoryManager.getTotalCashFlow(intervalHistory, false));
+		}
+		assertEquals(7 * 5 + 3 * 5 + 30 * 5, HistoryManager.currentProfit(historyManager.getIntervalsHistory(Instant.EPOCH)));
+	}
+
+	@Test
+	public void intervalStatsKeptUntilOffersChange()
+	{
+		Instant startOfInterval = baseTime.minus(11, ChronoUnit.MINUTES);
+		IntervalStats stats = historyManager.getIntervalStats(startOfInterval);
+		List<OfferEvent> intervalHistory = historyManager.getIntervalsHistory(startOfInterval);
+		assertEquals(intervalHistory.size(), stats.getOfferCount());
+		assertEquals(HistoryManager.currentProfit(intervalHistory), stats.getProfit());
+		assertEquals(HistoryManager.getFlippedCashFlow(intervalHistory, true), stats.getExpense());
+		assertEquals(historyManager.getFlips(startOfInterval).size(), stats.getFlipCount());
+		assertSame(stats, historyManager.getIntervalStats(startOfInterval));
+
+		//the buy finishes matching the interval's last sell, and what's left of it is matched with the new sell
+		historyManager.updateHistory(Utils.offer(true, 12, 100, baseTime.minus(1, ChronoUnit.MINUTES), 6, GrandExchangeOfferState.BOUGHT, 12));
+		historyManager.updateHistory(Utils.offer(false, 5, 110, baseTime, 7, GrandExchangeOfferState.SOLD, 5));
+		IntervalStats updatedStats = historyManager.getIntervalStats(startOfInterval);
+		assertEquals(stats.getOfferCount() + 2, updatedStats.getOfferCount());
+		assertEquals(stats.getFlipCount() + 1, updatedStats.getFlipCount());
+
+		//invalidating offers changes the stats even if the offers are kept for the ge limit
+		historyManager.invalidateOffers(historyManager.getIntervalsHistory(startOfInterval));
+		assertEquals(0, historyManager.getIntervalStats(startOfInterval).getOfferCount());
+	}
+
+	//the offers of each slot's trade in progress are kept track of rather than searched for, which has to remove the
+	//same offers as searching back through the history did, however the offers come in
+	@Test
+	public void deletePreviousOffersMatchesSearchingHistory()
+	{
+		GrandExchangeOfferState[] buyStates = {GrandExchangeOfferState.BUYING, GrandExchangeOfferState.BOUGHT, GrandExchangeOfferState.CANCELLED_BUY};
+		GrandExchangeOfferState[] sellStates = {GrandExchangeOfferState.SELLING, GrandExchangeOfferState.SOLD, GrandExchangeOfferState.CANCELLED_SELL};
+		Random random = new Random(0);
+		for (int run = 0; run < 200; run++)
+		{
+			HistoryManager historyManager = new HistoryManager();
+			List<OfferEvent> expectedOffers = new ArrayList<>();
+			Instant time = baseTime;
+			for (int i = 0; i < 150; i++)
+			{
+				int action = random.nextInt(20);
+				if (action == 0 && !expectedOffers.isEmpty())
+				{
+					historyManager.invalidateOffers(Collections.singletonList(expectedOffers.get(random.nextInt(expectedOffers.size()))));
+					expectedOffers = new ArrayList<>(historyManager.getCompressedOfferEvents());
+					continue;
+				}
+				if (action == 1)
+				{
+					//offers added from the ge history all at once, rather than one at a time
+					List<OfferEvent> addedOffers = new ArrayList<>();
+					for (int j = 0; j < 3; j++)
+					{
+						addedOffers.add(Utils.offer(random.nextBoolean(), 1, 100, time.minus(random.nextInt(100), ChronoUnit.SECONDS), random.nextInt(3), GrandExchangeOfferState.BOUGHT, 1));
+					}
+					historyManager.getCompressedOfferEvents().addAll(addedOffers);
+					expectedOffers = new ArrayList<>(historyManager.getCompressedOfferEvents());
+					continue;
+				}
+
+				boolean buy = random.nextBoolean();
+				//mostly in order, but sometimes late or at the same time as the previous offer
+				time = time.plusSeconds(random.nextInt(3));
+				Instant offerTime = random.nextInt(10) == 0 ? time.minus(random.nextInt(100), ChronoUnit.SECONDS) : time;
+				int slot = random.nextInt(10) == 0 ? -1 : random.nextInt(3);
+				OfferEvent offer = Utils.offer(buy, random.nextInt(10), 100, offerTime, slot, (buy ? buyStates : sellStates)[random.nextInt(3)], 10);
+
+				if (slot != -1)
+				{
+					for (int j = expectedOffers.size() - 1; j > -1; j--)
+					{
+						OfferEvent aPreviousOffer = expectedOffers.get(j);
+						if (aPreviousOffer.getSlot() == slot && aPreviousOffer.isBuy() == buy)
+						{
+							if (aPreviousOffer.isComplete())
+							{
+								break;
+							}
+							expectedOffers.remove(j);
+						}
+					}
+				}
+				int index = expectedOffers.size();
+				while (index > 0 && expectedOffers.get(index - 1).getTime().isAfter(offerTime))
+				{
+					index--;
+				}
+				expectedOffers.add(index, offer);
+
+				historyManager.updateHistory(offer);
+				List<OfferEvent> offers = historyManager.getCompressedOfferEvents();
+				assertEquals(expectedOffers.size(), offers.size());
+				for (int j = 0; j < offers.size(); j++)
+				{
+					assertSame(expectedOffers.get(j), offers.get(j));
+				}
+			}
+		}
+	}
+
+	//the complete offers are kept by price, quantity and side once they're asked for, which has to find the same
+	//offers as searching back through the history did
+	@Test
+	public void getOfferMatchesMatchesSearchingHistory()
+	{
+		GrandExchangeOfferState[] states = {GrandExchangeOfferState.BUYING, GrandExchangeOfferState.BOUGHT, GrandExchangeOfferState.CANCELLED_BUY,
+			GrandExchangeOfferState.SELLING, GrandExchangeOfferState.SOLD, GrandExchangeOfferState.CANCELLED_SELL};
+		Random random = new Random(0);
+		for (int run = 0; run < 100; run++)
+		{
+			HistoryManager historyManager = new HistoryManager();
+			Instant time = baseTime;
+			for (int i = 0; i < 150; i++)
+			{
+				int state = random.nextInt(states.length);
+				time = time.plusSeconds(random.nextInt(3));
+				Instant offerTime = random.nextInt(10) == 0 ? time.minus(random.nextInt(100), ChronoUnit.SECONDS) : time;
+				OfferEvent offer = Utils.offer(state < 3, 1 + random.nextInt(3), 100 + random.nextInt(3), offerTime, random.nextInt(3), states[state], 3);
+				if (random.nextInt(20) == 0)
+				{
+					historyManager.getCompressedOfferEvents().addAll(Collections.singletonList(offer));
+				}
+				else
+				{
+					historyManager.updateHistory(offer);
+				}
+
+				OfferEvent scrapedOffer = Utils.offer(random.nextBoolean(), 1 + random.nextInt(3), 100 + random.nextInt(3), baseTime, 0, GrandExchangeOfferState.BOUGHT, 3);
+				int limit = random.nextInt(4);
+				List<OfferEvent> expectedMatches = new ArrayList<>();
+				List<OfferEvent> offers = historyManager.getCompressedOfferEvents();
+				for (int j = offers.size() - 1; j > -1 && (limit == 0 || expectedMatches.size() < limit); j--)
+				{
+					OfferEvent pastOffer = offers.get(j);
+					if (scrapedOffer.getPrice() == pastOffer.getPrice() && scrapedOffer.getCurrentQuantityInTrade() == pastOffer.getCurrentQuantityInTrade()
+						&& scrapedOffer.isBuy() == pastOffer.isBuy() && pastOffer.isComplete())
+					{
+						expectedMatches.add(pastOffer);
+					}
+				}
+				List<OfferEvent> matches = historyManager.getOfferMatches(scrapedOffer, limit);
+				assertEquals(expectedMatches.size(), matches.size());
+				for (int j = 0; j < matches.size(); j++)
+				{
+					assertSame(expectedMatches.get(j), matches.get(j));
+				}
+			}
+		}
+	}
 }
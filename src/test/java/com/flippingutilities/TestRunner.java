@@ -26,6 +26,9 @@
 
 package com.flippingutilities;
 
+import com.flippingutilities.db.TypeAdaptersTest;
+import com.flippingutilities.jobs.CacheUpdaterJobTest;
+import com.flippingutilities.model.FlipMatcherTest;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
@@ -36,7 +39,16 @@ import org.junit.runners.Suite;
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
 	HistoryManagerTest.class,
-	FlippingPluginTest.class
+	FlippingPluginTest.class,
+	TypeAdaptersTest.class,
+	CompactTradeFormatTest.class,
+	CacheUpdaterJobTest.class,
+	FileFingerprintTest.class,
+	AccountWideTradeListTest.class,
+	AccountDataTest.class,
+	GeLimitTrackerTest.class,
+	TradePersisterTest.class,
+	FlipMatcherTest.class
 })
 public class TestRunner {
 
@@ -0,0 +1,140 @@
+package com.flippingutilities;
+
+import com.flippingutilities.db.JournalEntry;
+import com.flippingutilities.db.TradePersister;
+import com.flippingutilities.model.AccountData;
+import com.flippingutilities.model.FlippingItem;
+import com.flippingutilities.model.OfferEvent;
+import net.runelite.api.GrandExchangeOfferState;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TradePersisterTest
+{
+	private static final String DISPLAY_NAME = "trade persister test";
+
+	private final YearMonth oldMonth = YearMonth.now(ZoneOffset.UTC).minusMonths(4);
+
+	private AccountData accountData;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		TradePersister.setup();
+		Instant oldTime = oldMonth.atDay(15).atStartOfDay().toInstant(ZoneOffset.UTC);
+		Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+		FlippingItem item = new FlippingItem(1, "item", 100, DISPLAY_NAME);
+		item.getHistory().getCompressedOfferEvents().add(Utils.offer(true, 5, 100, oldTime, 1, GrandExchangeOfferState.BOUGHT, 5));
+		item.getHistory().getCompressedOfferEvents().add(Utils.offer(false, 5, 110, oldTime.plusSeconds(60), 1, GrandExchangeOfferState.SOLD, 5));
+		item.getHistory().getCompressedOfferEvents().add(Utils.offer(true, 5, 100, now.minusSeconds(60), 1, GrandExchangeOfferState.BOUGHT, 5));
+		item.getHistory().getCompressedOfferEvents().add(Utils.offer(false, 5, 110, now, 1, GrandExchangeOfferState.SOLD, 5));
+
+		accountData = new AccountData();
+		accountData.getTrades().add(item);
+		//the old month's segment wasn't loaded, but the offers from it still are, like offers that were the latest ones
+		//when the account was loaded
+		accountData.setHistoryLoadedFrom(oldMonth.plusMonths(1));
+	}
+
+	@After
+	public void tearDown()
+	{
+		TradePersister.deleteSegments(DISPLAY_NAME);
+		TradePersister.deleteFile(DISPLAY_NAME + ".dat");
+		TradePersister.deleteFile(DISPLAY_NAME + ".json");
+		TradePersister.deleteFile(DISPLAY_NAME + TradePersister.JOURNAL_EXTENSION);
+	}
+
+	@Test
+	public void savingAgainDoesNotChangeSegments() throws IOException
+	{
+		File segmentFile = new File(TradePersister.PARENT_DIRECTORY, DISPLAY_NAME + "." + oldMonth + ".segment");
+
+		TradePersister.storeAccount(DISPLAY_NAME, accountData);
+		assertTrue(segmentFile.exists());
+		byte[] segment = Files.readAllBytes(segmentFile.toPath());
+
+		TradePersister.storeAccount(DISPLAY_NAME, accountData);
+		assertArrayEquals(segment, Files.readAllBytes(segmentFile.toPath()));
+
+		List<FlippingItem> segmentItems = TradePersister.loadSegments(DISPLAY_NAME, oldMonth, oldMonth.plusMonths(1));
+		assertEquals(1, segmentItems.size());
+		assertEquals(2, segmentItems.get(0).getHistory().getCompressedOfferEvents().size());
+	}
+
+	@Test
+	public void checkpointsBetweenNewOffersDoNotChangeSegments() throws IOException
+	{
+		File segmentFile = new File(TradePersister.PARENT_DIRECTORY, DISPLAY_NAME + "." + oldMonth + ".segment");
+		TradePersister.storeAccount(DISPLAY_NAME, accountData);
+		byte[] segment = Files.readAllBytes(segmentFile.toPath());
+
+		//the account is stored every few minutes while it's trading
+		FlippingItem item = accountData.getTrades().get(0);
+		Instant time = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+		for (int i = 1; i <= 5; i++)
+		{
+			item.getHistory().getCompressedOfferEvents().add(Utils.offer(true, 5, 100, time.plusSeconds(i), 2, GrandExchangeOfferState.BOUGHT, 5));
+			TradePersister.storeAccount(DISPLAY_NAME, accountData);
+			assertArrayEquals(segment, Files.readAllBytes(segmentFile.toPath()));
+		}
+	}
+
+	@Test
+	public void trimmingTheJournalKeepsEntriesAfterTheSnapshot() throws IOException
+	{
+		OfferEvent offer = Utils.offer(true, 5, 100, Instant.now(), 1, GrandExchangeOfferState.BOUGHT, 5);
+		TradePersister.appendToJournal(DISPLAY_NAME, Arrays.asList(
+			JournalEntry.offer(1, "item", offer),
+			JournalEntry.offer(2, "item", offer)));
+		//appended by another client after the snapshot up to entry 2 was taken
+		TradePersister.appendToJournal(DISPLAY_NAME, Collections.singletonList(JournalEntry.offer(3, "item", offer)));
+
+		TradePersister.trimJournal(DISPLAY_NAME, 2);
+
+		List<Long> sequences = new ArrayList<>();
+		TradePersister.readJournal(DISPLAY_NAME, 0, entry -> sequences.add(entry.getSequence()));
+		assertEquals(Collections.singletonList(3L), sequences);
+	}
+
+	@Test
+	public void loadingSegmentsDoesNotDuplicateLoadedOffers() throws IOException
+	{
+		TradePersister.storeAccount(DISPLAY_NAME, accountData);
+
+		accountData.addOlderHistory(TradePersister.loadSegments(DISPLAY_NAME, oldMonth, oldMonth.plusMonths(1)));
+		assertEquals(4, accountData.getTrades().get(0).getHistory().getCompressedOfferEvents().size());
+	}
+
+	@Test
+	public void removedItemsStayRemovedOnceAllHistoryIsLoaded() throws IOException
+	{
+		TradePersister.storeAccount(DISPLAY_NAME, accountData);
+
+		//what DataHandler.loadAllHistory does before items are removed
+		accountData.addOlderHistory(TradePersister.loadSegments(DISPLAY_NAME, oldMonth, oldMonth.plusMonths(1)));
+		accountData.setHistoryLoadedFrom(oldMonth);
+		accountData.getTrades().removeIf(item -> true);
+		TradePersister.storeAccount(DISPLAY_NAME, accountData);
+
+		assertTrue(TradePersister.loadSegments(DISPLAY_NAME, oldMonth, YearMonth.now().plusMonths(1)).isEmpty());
+	}
+}
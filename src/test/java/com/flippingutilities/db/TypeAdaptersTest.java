@@ -0,0 +1,65 @@
+package com.flippingutilities.db;
+
+import com.flippingutilities.Utils;
+import com.flippingutilities.model.AccountData;
+import com.flippingutilities.model.FlippingItem;
+import com.flippingutilities.model.OfferEvent;
+import com.google.gson.Gson;
+import com.google.gson.JsonParser;
+import net.runelite.api.GrandExchangeOfferState;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The hand written type adapters have to produce and accept exactly what gson does reflectively, otherwise
+ * existing trade files would stop loading.
+ */
+public class TypeAdaptersTest
+{
+	private final Gson reflectiveGson = new Gson();
+	private final Gson adapterGson = TradePersister.gson();
+
+	private AccountData accountData;
+
+	@Before
+	public void setUp()
+	{
+		Instant baseTime = Instant.now();
+		accountData = new AccountData();
+
+		FlippingItem item = new FlippingItem(560, "Death rune", 25000, "acc");
+		item.setValidFlippingPanelItem(true);
+		item.setFavorite(true);
+		item.updateHistory(Utils.offer(true, 10, 200, baseTime.minus(30, ChronoUnit.MINUTES), 1, GrandExchangeOfferState.BUYING, 100));
+		item.updateHistory(Utils.offer(true, 100, 200, baseTime.minus(20, ChronoUnit.MINUTES), 1, GrandExchangeOfferState.BOUGHT, 100));
+		OfferEvent sell = Utils.offer(false, 40, 210, baseTime.minus(5, ChronoUnit.MINUTES), 2, GrandExchangeOfferState.CANCELLED_SELL, 100);
+		sell.setTradeStartedAt(baseTime.minus(10, ChronoUnit.MINUTES));
+		item.updateHistory(sell);
+		accountData.getTrades().add(item);
+
+		//an item with nothing but the defaults
+		accountData.getTrades().add(new FlippingItem(2, null, 0, null));
+		accountData.getLastOffers().put(1, sell);
+	}
+
+	@Test
+	public void adaptersWriteSameJsonAsReflection()
+	{
+		assertEquals(
+			new JsonParser().parse(reflectiveGson.toJson(accountData)),
+			new JsonParser().parse(adapterGson.toJson(accountData)));
+	}
+
+	@Test
+	public void adaptersReadReflectiveJson()
+	{
+		String json = reflectiveGson.toJson(accountData);
+		AccountData loaded = adapterGson.fromJson(json, AccountData.class);
+		assertEquals(json, reflectiveGson.toJson(loaded));
+	}
+}
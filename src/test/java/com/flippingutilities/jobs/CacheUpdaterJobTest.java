@@ -0,0 +1,87 @@
+package com.flippingutilities.jobs;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks which file events the cache updater fires its callbacks for, without watching the directory. Every other
+ * client reloads an account when they fire, so rewriting a file with the same contents shouldn't fire them.
+ */
+public class CacheUpdaterJobTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private CacheUpdaterJob cacheUpdaterJob;
+	private File file;
+
+	@Before
+	public void setUp()
+	{
+		cacheUpdaterJob = new CacheUpdaterJob(folder.getRoot());
+		file = new File(folder.getRoot(), "acc.dat");
+	}
+
+	@Test
+	public void rewritingTheSameContentsIsDuplicate() throws IOException
+	{
+		write("trades");
+		assertFalse(cacheUpdaterJob.isDuplicateEvent(file.getName()));
+		//writing a file usually causes several events
+		assertTrue(cacheUpdaterJob.isDuplicateEvent(file.getName()));
+
+		for (int i = 0; i < 5; i++)
+		{
+			write("trades");
+			file.setLastModified(System.currentTimeMillis() + i * 1000);
+			assertTrue(cacheUpdaterJob.isDuplicateEvent(file.getName()));
+		}
+	}
+
+	@Test
+	public void changedContentsAreNotDuplicate() throws IOException
+	{
+		for (int i = 0; i < 5; i++)
+		{
+			//same size and same modification time every time, which timestamps alone can't tell apart
+			write("entry" + (char) ('a' + i));
+			file.setLastModified(1600000000000L);
+			assertFalse(cacheUpdaterJob.isDuplicateEvent(file.getName()));
+		}
+	}
+
+	@Test
+	public void changingBackIsNotDuplicate() throws IOException
+	{
+		write("trades");
+		assertFalse(cacheUpdaterJob.isDuplicateEvent(file.getName()));
+		write("traded");
+		assertFalse(cacheUpdaterJob.isDuplicateEvent(file.getName()));
+		write("trades");
+		assertFalse(cacheUpdaterJob.isDuplicateEvent(file.getName()));
+	}
+
+	@Test
+	public void emptyAndMissingFilesAreDuplicate() throws IOException
+	{
+		//files are truncated before being rewritten
+		write("");
+		assertTrue(cacheUpdaterJob.isDuplicateEvent(file.getName()));
+		assertTrue(cacheUpdaterJob.isDuplicateEvent("missing.dat"));
+	}
+
+	private void write(String contents) throws IOException
+	{
+		Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+	}
+}
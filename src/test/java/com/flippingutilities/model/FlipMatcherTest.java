@@ -0,0 +1,171 @@
+package com.flippingutilities.model;
+
+import com.flippingutilities.Utils;
+import net.runelite.api.GrandExchangeOfferState;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Whatever order offers come in and get removed in, and however many of them come in between getting the flips, the
+ * flips the matcher keeps up to date have to be the same as the ones from matching each account's offers in the
+ * interval from scratch.
+ */
+public class FlipMatcherTest
+{
+	private static final GrandExchangeOfferState[] BUY_STATES = {GrandExchangeOfferState.BUYING, GrandExchangeOfferState.BOUGHT, GrandExchangeOfferState.CANCELLED_BUY};
+	private static final GrandExchangeOfferState[] SELL_STATES = {GrandExchangeOfferState.SELLING, GrandExchangeOfferState.SOLD, GrandExchangeOfferState.CANCELLED_SELL};
+	private static final String[] ACCOUNTS = {"gooby", "dooby", "scooby"};
+
+	private final Instant baseTime = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+	@Test
+	public void flipsMatchCreateFlipsFromScratch()
+	{
+		Random random = new Random(0);
+		for (int run = 0; run < 300; run++)
+		{
+			List<OfferEvent> offers = new ArrayList<>();
+			//the interval starts before any offer, partway through them, or after most of them
+			List<Instant> earliestTimes = new ArrayList<>();
+			earliestTimes.add(Instant.EPOCH);
+			earliestTimes.add(baseTime.plusSeconds(random.nextInt(1500)));
+			earliestTimes.add(baseTime.plusSeconds(2500 + random.nextInt(1500)));
+			List<FlipMatcher> matchers = earliestTimes.stream().map(earliestTime -> new FlipMatcher(offers, earliestTime)).collect(Collectors.toList());
+
+			Instant time = baseTime;
+			for (int i = 0; i < 150; i++)
+			{
+				if (random.nextInt(8) == 0)
+				{
+					removeOpenOffer(offers, random.nextInt(offers.size() + 1), matchers);
+				}
+				else
+				{
+					time = time.plusSeconds(random.nextInt(40));
+					OfferEvent offer = randomOffer(random, time);
+					//like HistoryManager.updateHistory, a trade's previous offer is replaced by its next one
+					if (offer.getSlot() != -1)
+					{
+						removePreviousOffersForTrade(offers, offer, matchers);
+					}
+					addInTimeOrder(offers, offer);
+					matchers.forEach(FlipMatcher::update);
+				}
+
+				//several offers usually come in before the flips are needed again
+				if (random.nextInt(5) == 0)
+				{
+					for (int m = 0; m < matchers.size(); m++)
+					{
+						List<Flip> flips = matchers.get(m).getFlips();
+						for (int j = 1; j < flips.size(); j++)
+						{
+							assertFalse(flips.get(j).getTime().isAfter(flips.get(j - 1).getTime()));
+						}
+						assertEquals(inCanonicalOrder(createFlips(offers, earliestTimes.get(m))), inCanonicalOrder(flips));
+					}
+				}
+			}
+		}
+	}
+
+	private OfferEvent randomOffer(Random random, Instant time)
+	{
+		boolean buy = random.nextBoolean();
+		//mostly in order and close enough together for margin checks to be paired, but sometimes late
+		Instant offerTime = random.nextInt(15) == 0 ? time.minus(random.nextInt(100), ChronoUnit.SECONDS) : time;
+		int slot = random.nextInt(15) == 0 ? -1 : random.nextInt(3);
+		OfferEvent offer;
+		if (random.nextInt(4) == 0)
+		{
+			offer = Utils.offer(buy, 1, 90 + random.nextInt(20), offerTime, slot, buy ? GrandExchangeOfferState.BOUGHT : GrandExchangeOfferState.SOLD, 0, random.nextInt(4), 1);
+		}
+		else
+		{
+			offer = Utils.offer(buy, 1 + random.nextInt(10), 90 + random.nextInt(20), offerTime, slot, (buy ? BUY_STATES : SELL_STATES)[random.nextInt(3)], 10);
+		}
+		offer.setMadeBy(ACCOUNTS[random.nextInt(ACCOUNTS.length)]);
+		return offer;
+	}
+
+	//the offers are kept in the order of their times, with offers made at the same time in the order they came in
+	private static void addInTimeOrder(List<OfferEvent> offers, OfferEvent offer)
+	{
+		int index = offers.size();
+		while (index > 0 && offers.get(index - 1).getTime().isAfter(offer.getTime()))
+		{
+			index--;
+		}
+		offers.add(index, offer);
+	}
+
+	private static void removePreviousOffersForTrade(List<OfferEvent> offers, OfferEvent offer, List<FlipMatcher> matchers)
+	{
+		for (int i = offers.size() - 1; i > -1; i--)
+		{
+			OfferEvent previousOffer = offers.get(i);
+			if (previousOffer.getSlot() == offer.getSlot() && previousOffer.isBuy() == offer.isBuy())
+			{
+				if (previousOffer.isComplete())
+				{
+					return;
+				}
+				removeOffer(offers, i, matchers);
+			}
+		}
+	}
+
+	//removes the first offer from the given index on that isn't complete, as only those are ever removed
+	private static void removeOpenOffer(List<OfferEvent> offers, int fromIndex, List<FlipMatcher> matchers)
+	{
+		for (int i = fromIndex; i < offers.size(); i++)
+		{
+			if (!offers.get(i).isComplete())
+			{
+				removeOffer(offers, i, matchers);
+				return;
+			}
+		}
+	}
+
+	private static void removeOffer(List<OfferEvent> offers, int index, List<FlipMatcher> matchers)
+	{
+		offers.remove(index);
+		matchers.forEach(matcher -> matcher.offerRemoved(index));
+	}
+
+	//matches each account's offers in the interval from scratch
+	private static List<Flip> createFlips(List<OfferEvent> offers, Instant earliestTime)
+	{
+		Map<String, List<OfferEvent>> groupedOffers = offers.stream()
+			.filter(offer -> offer.isValidOfferEvent() && offer.getTime().isAfter(earliestTime))
+			.collect(Collectors.groupingBy(OfferEvent::getMadeBy));
+		List<Flip> flips = new ArrayList<>();
+		groupedOffers.values().forEach(accountOffers -> flips.addAll(HistoryManager.createFlips(accountOffers)));
+		return flips;
+	}
+
+	//flips with the same time can come in either order
+	private static List<Flip> inCanonicalOrder(List<Flip> flips)
+	{
+		List<Flip> sorted = new ArrayList<>(flips);
+		sorted.sort(Comparator.comparing(Flip::getTime)
+			.thenComparing(Flip::getBuyPrice)
+			.thenComparing(Flip::getSellPrice)
+			.thenComparing(Flip::getQuantity)
+			.thenComparing(Flip::isMarginCheck)
+			.thenComparing(Flip::isOngoing));
+		return sorted;
+	}
+}